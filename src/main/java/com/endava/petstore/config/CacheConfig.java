@@ -0,0 +1,38 @@
+package com.endava.petstore.config;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.User;
+import com.endava.petstore.service.EntityCache;
+import com.endava.petstore.storage.EntityStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Value("${petstore.entity-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+    @Value("${petstore.entity-cache.negative-ttl-seconds:5}")
+    private long negativeTtlSeconds;
+
+    @Bean
+    public EntityCache<Pet> petCache(EntityStore<Pet> petStore, MeterRegistry meterRegistry,
+                                     @Value("${petstore.entity-cache.pets.max-entries:10000}") int maxEntries) {
+        return new EntityCache<>("pets", petStore, maxEntries, ttlSeconds, negativeTtlSeconds, meterRegistry);
+    }
+
+    @Bean
+    public EntityCache<Order> orderCache(EntityStore<Order> orderStore, MeterRegistry meterRegistry,
+                                         @Value("${petstore.entity-cache.orders.max-entries:10000}") int maxEntries) {
+        return new EntityCache<>("orders", orderStore, maxEntries, ttlSeconds, negativeTtlSeconds, meterRegistry);
+    }
+
+    @Bean
+    public EntityCache<User> userCache(EntityStore<User> userStore, MeterRegistry meterRegistry,
+                                       @Value("${petstore.entity-cache.users.max-entries:10000}") int maxEntries) {
+        return new EntityCache<>("users", userStore, maxEntries, ttlSeconds, negativeTtlSeconds, meterRegistry);
+    }
+}
@@ -0,0 +1,31 @@
+package com.endava.petstore.config;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.User;
+import com.endava.petstore.storage.EntityStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StorageConfig {
+
+    @Value("${petstore.storage.stripes:64}")
+    private int stripes;
+
+    @Bean
+    public EntityStore<Pet> petStore() {
+        return new EntityStore<>(stripes);
+    }
+
+    @Bean
+    public EntityStore<Order> orderStore() {
+        return new EntityStore<>(stripes);
+    }
+
+    @Bean
+    public EntityStore<User> userStore() {
+        return new EntityStore<>(stripes);
+    }
+}
@@ -0,0 +1,12 @@
+package com.endava.petstore.config;
+
+import com.endava.petstore.model.StreamFormat;
+import org.springframework.core.convert.converter.Converter;
+
+public class StringToEnumStreamFormatConverter implements Converter<String, StreamFormat> {
+
+    @Override
+    public StreamFormat convert(String source) {
+        return StreamFormat.valueOf(source.toUpperCase());
+    }
+}
@@ -2,6 +2,7 @@ package com.endava.petstore.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.WebRequest;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -21,6 +22,7 @@ public class SwaggerConfig {
                     .description("This is a sample REST API documentation of a pet store server.")
                     .version("1.0")
                     .build())
+              .ignoredParameterTypes(WebRequest.class)
               .select()
               .apis(RequestHandlerSelectors.basePackage("com.endava.petstore"))
               .paths(PathSelectors.any())
@@ -11,5 +11,6 @@ public class WebConfig implements WebMvcConfigurer {
     public void addFormatters(FormatterRegistry registry) {
         registry.addConverter(new StringToEnumPetStatusConverter());
         registry.addConverter(new StringToEnumOrderStatusConverter());
+        registry.addConverter(new StringToEnumStreamFormatConverter());
     }
 }
@@ -9,9 +9,23 @@ public class Constants {
     public static final String PET_NOT_FOUND = "There is no pet with id %s";
     public static final String PET_UPDATED = "Updated pet with id %s";
     public static final String TAGS_NOT_FOUND = "No tags were provided";
-    public static final String IMAGE_UPLOADED = "additionalMetadata: %s%nFile uploaded to %s (%s bytes)";
+    public static final String INVALID_IMPORT_RECORD = "Line does not contain a pet object";
+    public static final String IMAGE_NOT_FOUND = "There is no image %s for pet with id %s";
+    public static final String THUMBNAIL_NOT_FOUND = "There is no thumbnail of size %s for image %s";
+    public static final String IMAGE_UPLOADED = "additionalMetadata: %s%nFile stored as image %s (%s bytes)";
     public static final String ORDER_NOT_FOUND = "There is no order with id %s";
     public static final String USER_NOT_FOUND = "There is no user with id %s";
     public static final String USERNAME_NOT_FOUND = "There is no user with username %s";
-    public static final String INVALID_USER_CREDENTIALS = "There is no user with username %s and password %s";
+    public static final String USERNAME_ALREADY_EXISTS = "There is already a user with username %s";
+    public static final String INVALID_BATCH_USER = "Element does not contain a user object";
+    public static final String DUPLICATE_BATCH_USER_ID = "User id %s appears more than once in the request";
+    public static final String INVALID_PAGE_LIMIT = "The page limit must be between 1 and %s";
+    public static final String NEXT_PAGE_HEADER = "X-Next-After";
+    public static final int MAX_PAGE_LIMIT = 1000;
+    public static final String INVALID_CREDENTIALS = "Invalid username or password";
+    public static final String INVALID_SESSION = "The session token is missing, expired or revoked";
+    public static final String LOGGED_IN = "Logged in successfully";
+    public static final String LOGGED_OUT = "Logged out successfully";
+    public static final String PASSWORD_HASHING_BUSY = "Too many password checks are in progress, please try again later";
+    public static final String TOO_MANY_FAILED_LOGINS = "Too many failed logins, please try again later";
 }
@@ -0,0 +1,57 @@
+package com.endava.petstore.controller;
+
+import com.endava.petstore.model.StreamFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a lazily produced stream of entities straight to the response, one entity at a time, either as a JSON array or as newline-delimited JSON.
+ * Nothing is collected up front: the first entity goes out as soon as it is read and memory use does not depend on the number of entities.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityStreamWriter {
+
+    private static final int FLUSH_INTERVAL = 256;
+
+    private final ObjectMapper objectMapper;
+
+    public <T> ResponseEntity<StreamingResponseBody> write(Stream<T> entities, StreamFormat format) {
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = output -> {
+            try(Stream<T> source = entities; JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                if(format == StreamFormat.JSON) {
+                    generator.writeStartArray();
+                } else {
+                    generator.setRootValueSeparator(null);
+                }
+                int written = 0;
+                for(Iterator<T> iterator = source.iterator(); iterator.hasNext(); ) {
+                    writer.writeValue(generator, iterator.next());
+                    if(format == StreamFormat.NDJSON) {
+                        generator.writeRaw('\n');
+                    }
+                    // the first entity is flushed right away for a short time to first byte, later ones in batches
+                    if(++written % FLUSH_INTERVAL == 1) {
+                        generator.flush();
+                    }
+                }
+                if(format == StreamFormat.JSON) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+        return ResponseEntity.ok()
+              .contentType(format == StreamFormat.NDJSON ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+              .body(body);
+    }
+}
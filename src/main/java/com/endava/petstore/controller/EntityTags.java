@@ -0,0 +1,37 @@
+package com.endava.petstore.controller;
+
+import java.util.function.Supplier;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Turns entity and store versions into ETags and answers conditional GETs with 304 before the body is produced or serialized.
+ * Versions restart when the stores are rebuilt on startup, so every tag also carries the time this process started
+ * and tags handed out by an earlier run never match.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class EntityTags {
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    static String of(long version) {
+        return "\"" + EPOCH + "-" + version + "\"";
+    }
+
+    /**
+     * Returns 304 if the request's If-None-Match matches the tag, otherwise 200 with the tag and the supplied body.
+     */
+    static <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<T> body) {
+        if(request.checkNotModified(etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).body(body.get());
+    }
+
+    static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.endava.petstore.controller;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves a stored image file without copying it through the heap.
+ * When the servlet container supports sendfile (Tomcat's NIO connector does by default), the file and byte range are handed to the connector,
+ * which lets the kernel copy the file to the socket; otherwise the bytes are moved with {@link FileChannel#transferTo}.
+ * Image files never change once stored, so the image id is a strong ETag and responses may be cached indefinitely;
+ * a matching If-None-Match is answered with 304, and a single byte range (honouring If-Range) with 206. A range that is invalid, including
+ * one with a position too large to parse, is ignored and the whole file is served; only a range starting at or beyond the end gets 416.
+ */
+@Component
+public class ImageResponseWriter {
+
+    static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    public void write(Path file, String imageId, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + imageId + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if(matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        long size = Files.size(file);
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if(range != null && (ifRange == null || ifRange.equals(etag))) {
+            // multiple ranges are not supported; the whole file is a valid answer to them
+            long[] bounds = bounds(range.trim(), size);
+            if(bounds != null) {
+                if(bounds[0] >= size) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = bounds[0];
+                end = Math.min(bounds[1], size - 1);
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        long length = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(imageId).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(length);
+        if("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel output = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while(position <= end) {
+                position += channel.transferTo(position, end + 1 - position, output);
+            }
+        }
+        response.flushBuffer();
+    }
+
+    /**
+     * Returns the first and last position of a single byte range, or null when the header is not one valid range and is to be ignored.
+     */
+    private static long[] bounds(String range, long size) {
+        Matcher matcher = SINGLE_RANGE.matcher(range);
+        if(!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            if(matcher.group(1).isEmpty()) {
+                return new long[] {Math.max(size - Long.parseLong(matcher.group(2)), 0), size - 1};
+            }
+            long first = Long.parseLong(matcher.group(1));
+            long last = matcher.group(2).isEmpty() ? Long.MAX_VALUE : Long.parseLong(matcher.group(2));
+            return last < first ? null : new long[] {first, last};
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if(ifNoneMatch == null) {
+            return false;
+        }
+        for(String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if(value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
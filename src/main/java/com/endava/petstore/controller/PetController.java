@@ -2,17 +2,25 @@ package com.endava.petstore.controller;
 
 import com.endava.petstore.exception.InvalidResourceException;
 import com.endava.petstore.model.HttpResponse;
+import com.endava.petstore.model.ImportReport;
 import com.endava.petstore.model.ModelRequestUpdatePet;
 import com.endava.petstore.model.ModelRequestUploadImage;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
+import com.endava.petstore.model.StreamFormat;
 import com.endava.petstore.service.PetService;
+import com.endava.petstore.storage.Versioned;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -28,10 +36,17 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import static com.endava.petstore.constants.Constants.INVALID_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.MAX_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static com.endava.petstore.constants.Constants.TAGS_NOT_FOUND;
+import static org.springframework.http.MediaType.ALL_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 
@@ -42,25 +57,61 @@ import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
 public class PetController {
 
     private final PetService petService;
+    private final EntityStreamWriter entityStreamWriter;
+    private final ImageResponseWriter imageResponseWriter;
 
-    @ApiOperation(value = "Get all pets", response = List.class)
+    @ApiOperation(value = "Get all pets", notes = "Returns one page of pets in ascending id order. When the page is full, the X-Next-After header holds the id to pass as after for the next page. "
+          + "Set all to get every pet in a single unpaginated response. The ETag changes with every change to any pet; send it as If-None-Match to get 304 while nothing changed", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
+          @ApiResponse(code = 400, message = "Invalid page limit"),
           @ApiResponse(code = 404, message = "No pets found"),
           @ApiResponse(code = 500, message = "Internal server error")})
     @GetMapping
-    public ResponseEntity<List<Pet>> getAllPets() {
-        return ResponseEntity.ok(petService.getAllPets());
+    public ResponseEntity<List<Pet>> getAllPets(@ApiParam(value = "Only return pets with a greater id", example = "1") @RequestParam(required = false) Long after,
+                                                @ApiParam(value = "Maximum number of pets to return", example = "100") @RequestParam(defaultValue = "100") int limit,
+                                                @ApiParam(value = "Whether to return every pet without pagination") @RequestParam(defaultValue = "false") boolean all,
+                                                WebRequest request) {
+        String etag = EntityTags.of(petService.getPetsVersion());
+        if(all) {
+            return EntityTags.conditional(request, etag, petService::getAllPets);
+        }
+        if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new InvalidResourceException(String.format(INVALID_PAGE_LIMIT, MAX_PAGE_LIMIT));
+        }
+        if(request.checkNotModified(etag)) {
+            return EntityTags.notModified(etag);
+        }
+        List<Pet> page = petService.getPetsPage(after, limit);
+        if(page.size() < limit) {
+            return ResponseEntity.ok().eTag(etag).body(page);
+        }
+        return ResponseEntity.ok()
+              .eTag(etag)
+              .header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+              .body(page);
     }
 
-    @ApiOperation(value = "Find pet by ID", notes = "Returns a single pet", response = Pet.class)
+    @ApiOperation(value = "Stream all pets", notes = "Writes every pet in ascending id order as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation")})
+    @GetMapping(params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAllPets(@ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        return entityStreamWriter.write(petService.streamAllPets(), stream);
+    }
+
+    @ApiOperation(value = "Find pet by ID", notes = "Returns a single pet. The ETag changes with every change to the pet; send it as If-None-Match to get 304 while the pet is unchanged", response = Pet.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 400, message = "Invalid ID supplied"),
           @ApiResponse(code = 404, message = "Pet not found")})
     @GetMapping("/{petId}")
-    public ResponseEntity<Pet> getPetById(@ApiParam(value = "ID of pet to return", example = "1", required = true) @PathVariable Long petId) {
-        return ResponseEntity.ok(petService.getPetById(petId));
+    public ResponseEntity<Pet> getPetById(@ApiParam(value = "ID of pet to return", example = "1", required = true) @PathVariable Long petId,
+                                          WebRequest request) {
+        Versioned<Pet> pet = petService.getVersionedPetById(petId);
+        return EntityTags.conditional(request, EntityTags.of(pet.version()), pet::value);
     }
 
     @ApiOperation(value = "Add a new pet to the store", response = Pet.class)
@@ -72,6 +123,15 @@ public class PetController {
         return ResponseEntity.status(HttpStatus.CREATED).body(petService.savePet(pet));
     }
 
+    @ApiOperation(value = "Import pets in bulk", notes = "Accepts one pet per line (newline-delimited JSON). Valid pets are added or replaced, "
+          + "a later line winning over an earlier one with the same id; the report lists the rejected lines with the reason", response = ImportReport.class)
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation")})
+    @PostMapping(value = "/import", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportReport> importPets(@ApiParam(value = "Pet objects, one per line", required = true) InputStream body) throws IOException {
+        return ResponseEntity.ok(petService.importPets(body));
+    }
+
     @ApiOperation(value = "Update an existing pet", response = Pet.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
@@ -97,24 +157,57 @@ public class PetController {
     @ApiOperation(value = "Finds pets by status", notes = "Multiple status values can be provided with comma separated string", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 400, message = "Invalid status value")})
     @GetMapping("/findByStatus")
     public ResponseEntity<List<Pet>> getPetsByStatus(
           @ApiParam(value = "Status values that need to be considered for filter", allowableValues = "available, pending, sold", allowMultiple = true, required = true)
-          @RequestParam @Valid Status[] status) {
-        return ResponseEntity.ok(petService.getPetsByStatus(status));
+          @RequestParam @Valid Status[] status,
+          WebRequest request) {
+        return EntityTags.conditional(request, EntityTags.of(petService.getPetsVersion()), () -> petService.getPetsByStatus(status));
+    }
+
+    @ApiOperation(value = "Streams pets by status", notes = "Writes the pets having any of the given statuses as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 400, message = "Invalid status value")})
+    @GetMapping(value = "/findByStatus", params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamPetsByStatus(
+          @ApiParam(value = "Status values that need to be considered for filter", allowableValues = "available, pending, sold", allowMultiple = true, required = true)
+          @RequestParam @Valid Status[] status,
+          @ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        return entityStreamWriter.write(petService.streamPetsByStatus(status), stream);
     }
 
-    @ApiOperation(value = "Finds pets by tags", notes = "Multiple tags can be provided with comma separated strings. Use test_tag1, test_tag2, test_tag3 for testing", response = List.class)
+    @ApiOperation(value = "Finds pets by tags", notes = "Multiple tags can be provided with comma separated strings. Use test_tag1, test_tag2, test_tag3 for testing. "
+          + "By default pets having any of the tags are returned; set matchAll to only return pets having all of them", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 400, message = "Invalid tag value")})
     @GetMapping("/findByTags")
-    public ResponseEntity<List<Pet>> getPetsByTags(@ApiParam(value = "Tags to filter by", allowMultiple = true, required = true) @RequestParam @Valid List<String> tags) {
+    public ResponseEntity<List<Pet>> getPetsByTags(@ApiParam(value = "Tags to filter by", allowMultiple = true, required = true) @RequestParam @Valid List<String> tags,
+                                                   @ApiParam(value = "Whether pets must have all of the given tags") @RequestParam(defaultValue = "false") boolean matchAll,
+                                                   WebRequest request) {
         if(tags.isEmpty()) {
             throw new InvalidResourceException(TAGS_NOT_FOUND);
         }
-        return ResponseEntity.ok(petService.getPetsByTags(tags));
+        return EntityTags.conditional(request, EntityTags.of(petService.getPetsVersion()),
+              () -> matchAll ? petService.getPetsByAllTags(tags) : petService.getPetsByTags(tags));
+    }
+
+    @ApiOperation(value = "Streams pets by tags", notes = "Writes the pets having any (or, with matchAll, all) of the given tags as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 400, message = "Invalid tag value")})
+    @GetMapping(value = "/findByTags", params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamPetsByTags(@ApiParam(value = "Tags to filter by", allowMultiple = true, required = true) @RequestParam @Valid List<String> tags,
+                                                                 @ApiParam(value = "Whether pets must have all of the given tags") @RequestParam(defaultValue = "false") boolean matchAll,
+                                                                 @ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        if(tags.isEmpty()) {
+            throw new InvalidResourceException(TAGS_NOT_FOUND);
+        }
+        return entityStreamWriter.write(petService.streamPetsByTags(tags, matchAll), stream);
     }
 
     @ApiOperation(value = "Updates a pet in the store with form data", response = Pet.class)
@@ -127,14 +220,49 @@ public class PetController {
         return ResponseEntity.ok(petService.updatePetFormData(petId, modelRequestUpdatePet.getName(), modelRequestUpdatePet.getStatus()));
     }
 
-    @ApiOperation(value = "Uploads an image", response = Pet.class)
+    @ApiOperation(value = "Uploads an image", notes = "Stores the file and adds its image id to the pet's imageIds", response = HttpResponse.class)
     @ApiResponses(value =  {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 404, message = "Pet not found"),
           @ApiResponse(code = 405, message = "Invalid input")})
     @PostMapping(value = "/{petId}/uploadImage", consumes = MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<HttpResponse> uploadPetImage(@ModelAttribute ModelRequestUploadImage modelRequestUploadImage,
                                                        @ApiParam(value = "ID of pet to update", example = "1", required = true) @PathVariable Long petId,
-                                                       @ApiParam(value = "File to upload") @RequestPart MultipartFile file) {
+                                                       @ApiParam(value = "File to upload") @RequestPart MultipartFile file) throws IOException {
         return ResponseEntity.ok(petService.uploadPetImage(petId, modelRequestUploadImage.getAdditionalMetadata(), file));
     }
+
+    @ApiOperation(value = "Downloads an image", notes = "Serves an image uploaded for the pet. Supports single byte ranges (Range, If-Range) and conditional requests (If-None-Match); "
+          + "the ETag is strong and the response may be cached indefinitely because stored images never change")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 206, message = "Partial content"),
+          @ApiResponse(code = 304, message = "Not modified"),
+          @ApiResponse(code = 404, message = "Pet or image not found"),
+          @ApiResponse(code = 416, message = "Range not satisfiable")})
+    @GetMapping(value = "/{petId}/images/{imageId}", produces = ALL_VALUE)
+    public void getPetImage(@ApiParam(value = "ID of the pet", example = "1", required = true) @PathVariable Long petId,
+                            @ApiParam(value = "ID of the image", required = true) @PathVariable String imageId,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        imageResponseWriter.write(petService.getPetImage(petId, imageId), imageId, request, response);
+    }
+
+    @ApiOperation(value = "Downloads an image thumbnail", notes = "Serves a PNG thumbnail of an image uploaded for the pet, scaled to the given longest edge. "
+          + "Thumbnails are generated in the background after the upload, so a 404 right after uploading means the thumbnail is not ready yet")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 206, message = "Partial content"),
+          @ApiResponse(code = 304, message = "Not modified"),
+          @ApiResponse(code = 404, message = "Pet, image or thumbnail not found"),
+          @ApiResponse(code = 416, message = "Range not satisfiable")})
+    @GetMapping(value = "/{petId}/images/{imageId}/thumbnails/{size}", produces = ALL_VALUE)
+    public void getPetThumbnail(@ApiParam(value = "ID of the pet", example = "1", required = true) @PathVariable Long petId,
+                                @ApiParam(value = "ID of the image", required = true) @PathVariable String imageId,
+                                @ApiParam(value = "Longest edge of the thumbnail in pixels", example = "128", required = true) @PathVariable int size,
+                                HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        Path thumbnail = petService.getPetThumbnail(petId, imageId, size);
+        imageResponseWriter.write(thumbnail, thumbnail.getFileName().toString(), request, response);
+    }
 }
@@ -1,9 +1,13 @@
 package com.endava.petstore.controller;
 
+import com.endava.petstore.exception.InvalidResourceException;
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.StreamFormat;
 import com.endava.petstore.service.StoreService;
+import com.endava.petstore.storage.Versioned;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -23,8 +27,14 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import static com.endava.petstore.constants.Constants.INVALID_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.MAX_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 
 @Api(value = "Store Rest Controller", description = "Access to Petstore orders", tags = "store")
@@ -34,25 +44,61 @@ import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 public class StoreController {
 
     private final StoreService storeService;
+    private final EntityStreamWriter entityStreamWriter;
 
-    @ApiOperation(value = "Get all orders", response = List.class)
+    @ApiOperation(value = "Get all orders", notes = "Returns one page of orders in ascending id order. When the page is full, the X-Next-After header holds the id to pass as after for the next page. "
+          + "Set all to get every order in a single unpaginated response. The ETag changes with every change to any order; send it as If-None-Match to get 304 while nothing changed", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
+          @ApiResponse(code = 400, message = "Invalid page limit"),
           @ApiResponse(code = 404, message = "No orders found"),
           @ApiResponse(code = 500, message = "Internal server error")})
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
-        return ResponseEntity.ok(storeService.getAllOrders());
+    public ResponseEntity<List<Order>> getAllOrders(@ApiParam(value = "Only return orders with a greater id", example = "1") @RequestParam(required = false) Long after,
+                                                    @ApiParam(value = "Maximum number of orders to return", example = "100") @RequestParam(defaultValue = "100") int limit,
+                                                    @ApiParam(value = "Whether to return every order without pagination") @RequestParam(defaultValue = "false") boolean all,
+                                                    WebRequest request) {
+        String etag = EntityTags.of(storeService.getOrdersVersion());
+        if(all) {
+            return EntityTags.conditional(request, etag, storeService::getAllOrders);
+        }
+        if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new InvalidResourceException(String.format(INVALID_PAGE_LIMIT, MAX_PAGE_LIMIT));
+        }
+        if(request.checkNotModified(etag)) {
+            return EntityTags.notModified(etag);
+        }
+        List<Order> page = storeService.getOrdersPage(after, limit);
+        if(page.size() < limit) {
+            return ResponseEntity.ok().eTag(etag).body(page);
+        }
+        return ResponseEntity.ok()
+              .eTag(etag)
+              .header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+              .body(page);
     }
 
-    @ApiOperation(value = "Find purchase order by ID", notes = "For valid response try integer IDs with value >= 1 and <= 3. Other values will generate exceptions.", response = Order.class)
+    @ApiOperation(value = "Stream all orders", notes = "Writes every order in ascending id order as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation")})
+    @GetMapping(params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAllOrders(@ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        return entityStreamWriter.write(storeService.streamAllOrders(), stream);
+    }
+
+    @ApiOperation(value = "Find purchase order by ID", notes = "For valid response try integer IDs with value >= 1 and <= 3. Other values will generate exceptions. "
+          + "The ETag changes with every change to the order; send it as If-None-Match to get 304 while the order is unchanged", response = Order.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 400, message = "Invalid ID supplied"),
           @ApiResponse(code = 404, message = "Order not found")})
     @GetMapping("/{orderId}")
-    public ResponseEntity<Order> getOrderById(@ApiParam(value = "ID of order that needs to be fetched", example = "1", required = true) @PathVariable Long orderId) {
-        return ResponseEntity.ok(storeService.getOrderById(orderId));
+    public ResponseEntity<Order> getOrderById(@ApiParam(value = "ID of order that needs to be fetched", example = "1", required = true) @PathVariable Long orderId,
+                                              WebRequest request) {
+        Versioned<Order> order = storeService.getVersionedOrderById(orderId);
+        return EntityTags.conditional(request, EntityTags.of(order.version()), order::value);
     }
 
     @ApiOperation(value = "Place an order for a pet", response = Order.class)
@@ -86,15 +132,38 @@ public class StoreController {
         return ResponseEntity.noContent().build();
     }
 
-    @ApiOperation(value = "Returns pet inventories by status", notes = "Returns pets by order status (Returns a map of status codes to quantities)", response = List.class)
+    @ApiOperation(value = "Returns pet inventories by status", notes = "Returns pets by order status (Returns a map of status codes to quantities). "
+          + "The ETag changes with every change to any order or pet; send it as If-None-Match to get 304 while nothing changed", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 404, message = "No orders found"),
           @ApiResponse(code = 500, message = "Internal server error")})
     @GetMapping("/inventory")
     public ResponseEntity<List<Pet>> getPetsByOrderStatus(
           @ApiParam(value = "Order status value that need to be considered for filter", allowableValues = "placed, approved, delivered", required = true)
-          @RequestParam @Valid OrderStatus orderStatus) {
-        return ResponseEntity.ok(storeService.getPetsByOrderStatus(orderStatus));
+          @RequestParam @Valid OrderStatus orderStatus,
+          WebRequest request) {
+        return EntityTags.conditional(request, EntityTags.of(storeService.getInventoryVersion()), () -> storeService.getPetsByOrderStatus(orderStatus));
+    }
+
+    @ApiOperation(value = "Streams pet inventories by status", notes = "Writes the pets having an order with the given status as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation")})
+    @GetMapping(value = "/inventory", params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamPetsByOrderStatus(
+          @ApiParam(value = "Order status value that need to be considered for filter", allowableValues = "placed, approved, delivered", required = true)
+          @RequestParam @Valid OrderStatus orderStatus,
+          @ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        return entityStreamWriter.write(storeService.streamPetsByOrderStatus(orderStatus), stream);
+    }
+
+    @ApiOperation(value = "Returns inventory counters", notes = "Returns a map of pet status to number of pets and a map of order status to number of orders", response = InventorySummary.class)
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 500, message = "Internal server error")})
+    @GetMapping("/inventory/summary")
+    public ResponseEntity<InventorySummary> getInventorySummary() {
+        return ResponseEntity.ok(storeService.getInventorySummary());
     }
 }
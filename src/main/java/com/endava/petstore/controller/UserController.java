@@ -1,7 +1,11 @@
 package com.endava.petstore.controller;
 
+import com.endava.petstore.exception.InvalidResourceException;
+import com.endava.petstore.model.StreamFormat;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.service.UserService;
+import com.endava.petstore.storage.Versioned;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -9,8 +13,10 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import java.util.List;
 import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -19,11 +25,20 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import static com.endava.petstore.constants.Constants.INVALID_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.LOGGED_IN;
+import static com.endava.petstore.constants.Constants.LOGGED_OUT;
+import static com.endava.petstore.constants.Constants.MAX_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 
 @Api(value = "User Rest Controller", description = "Operations about user", tags = "user")
@@ -32,26 +47,63 @@ import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
 @RequestMapping(value = "/user", produces = {APPLICATION_JSON_VALUE, APPLICATION_XML_VALUE})
 public class UserController {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final UserService userService;
+    private final EntityStreamWriter entityStreamWriter;
 
-    @ApiOperation(value = "Get all users", response = List.class)
+    @ApiOperation(value = "Get all users", notes = "Returns one page of users in ascending id order. When the page is full, the X-Next-After header holds the id to pass as after for the next page. "
+          + "Set all to get every user in a single unpaginated response. The ETag changes with every change to any user; send it as If-None-Match to get 304 while nothing changed", response = List.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
+          @ApiResponse(code = 400, message = "Invalid page limit"),
           @ApiResponse(code = 404, message = "No users found"),
           @ApiResponse(code = 500, message = "Internal server error")})
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<List<User>> getAllUsers(@ApiParam(value = "Only return users with a greater id", example = "1") @RequestParam(required = false) Long after,
+                                                  @ApiParam(value = "Maximum number of users to return", example = "100") @RequestParam(defaultValue = "100") int limit,
+                                                  @ApiParam(value = "Whether to return every user without pagination") @RequestParam(defaultValue = "false") boolean all,
+                                                  WebRequest request) {
+        String etag = EntityTags.of(userService.getUsersVersion());
+        if(all) {
+            return EntityTags.conditional(request, etag, userService::getAllUsers);
+        }
+        if(limit < 1 || limit > MAX_PAGE_LIMIT) {
+            throw new InvalidResourceException(String.format(INVALID_PAGE_LIMIT, MAX_PAGE_LIMIT));
+        }
+        if(request.checkNotModified(etag)) {
+            return EntityTags.notModified(etag);
+        }
+        List<User> page = userService.getUsersPage(after, limit);
+        if(page.size() < limit) {
+            return ResponseEntity.ok().eTag(etag).body(page);
+        }
+        return ResponseEntity.ok()
+              .eTag(etag)
+              .header(NEXT_PAGE_HEADER, String.valueOf(page.get(page.size() - 1).getId()))
+              .body(page);
+    }
+
+    @ApiOperation(value = "Stream all users", notes = "Writes every user in ascending id order as a JSON array (stream=json) or as newline-delimited JSON (stream=ndjson), without collecting them first")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation")})
+    @GetMapping(params = "stream", produces = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@ApiParam(value = "Output format", allowableValues = "json, ndjson", required = true) @RequestParam StreamFormat stream) {
+        return entityStreamWriter.write(userService.streamAllUsers(), stream);
     }
 
-    @ApiOperation(value = "Find user by ID", notes = "Returns a single user", response = User.class)
+    @ApiOperation(value = "Find user by ID", notes = "Returns a single user. The ETag changes with every change to the user; send it as If-None-Match to get 304 while the user is unchanged", response = User.class)
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 304, message = "Not modified"),
           @ApiResponse(code = 400, message = "Invalid ID supplied"),
           @ApiResponse(code = 404, message = "User not found")})
     @GetMapping("/{userId}")
-    public ResponseEntity<User> getUserById(@ApiParam(value = "ID of user to return", example = "1", required = true) @PathVariable Long userId) {
-        return ResponseEntity.ok(userService.getUserById(userId));
+    public ResponseEntity<User> getUserById(@ApiParam(value = "ID of user to return", example = "1", required = true) @PathVariable Long userId,
+                                            WebRequest request) {
+        Versioned<User> user = userService.getVersionedUserById(userId);
+        return EntityTags.conditional(request, EntityTags.of(user.version()), user::value);
     }
 
     @ApiOperation(value = "Create user", notes = "This can only be done by the logged in user", response = User.class)
@@ -85,22 +137,24 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
-    @ApiOperation(value = "Creates list of users with given input array", response = List.class)
+    @ApiOperation(value = "Creates list of users with given input array", notes = "Valid elements are stored as one batch; invalid ones and ones whose id or username is already taken are listed in the report with the reason", response = UserBatchReport.class)
     @ApiResponses(value = {
-          @ApiResponse(code = 201, message = "Successful operation"),
+          @ApiResponse(code = 201, message = "Successful operation, rejected elements are listed in the report"),
+          @ApiResponse(code = 400, message = "No element of the batch was stored"),
           @ApiResponse(code = 405, message = "Invalid input")})
     @PostMapping(value = "/createWithArray", consumes = {APPLICATION_JSON_VALUE, APPLICATION_XML_VALUE})
-    public ResponseEntity<List<User>> saveUsersArray(@ApiParam(value = "List of user object", required = true) @RequestBody @Valid User[] users) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(userService.saveUsersArray(users));
+    public ResponseEntity<UserBatchReport> saveUsersArray(@ApiParam(value = "List of user object", required = true) @RequestBody User[] users) {
+        return batchResponse(userService.saveUsersArray(users));
     }
 
-    @ApiOperation(value = "Creates list of users with given input array", response = List.class)
+    @ApiOperation(value = "Creates list of users with given input array", notes = "Valid elements are stored as one batch; invalid ones and ones whose id or username is already taken are listed in the report with the reason", response = UserBatchReport.class)
     @ApiResponses(value = {
-          @ApiResponse(code = 201, message = "Successful operation"),
+          @ApiResponse(code = 201, message = "Successful operation, rejected elements are listed in the report"),
+          @ApiResponse(code = 400, message = "No element of the batch was stored"),
           @ApiResponse(code = 405, message = "Invalid input")})
     @PostMapping(value = "/createWithList", consumes = {APPLICATION_JSON_VALUE, APPLICATION_XML_VALUE})
-    public ResponseEntity<List<User>> saveUsersList(@ApiParam(value = "List of user object", required = true) @RequestBody @Valid List<User> users) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(userService.saveUsersList(users));
+    public ResponseEntity<UserBatchReport> saveUsersList(@ApiParam(value = "List of user object", required = true) @RequestBody List<User> users) {
+        return batchResponse(userService.saveUsersList(users));
     }
 
     @ApiOperation(value = "Get user by user name", response = User.class)
@@ -135,22 +189,44 @@ public class UserController {
         return ResponseEntity.noContent().build();
     }
 
-    @ApiOperation(value = "Logs user into the system")
+    @ApiOperation(value = "Logs user into the system", notes = "Returns a session token; send it as Authorization: Bearer <token> instead of the credentials. "
+          + "After too many failed logins of a username, or from a client address, further logins of it are refused for a while")
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
-          @ApiResponse(code = 400, message = "Invalid username/password supplied")})
+          @ApiResponse(code = 400, message = "Invalid username/password supplied"),
+          @ApiResponse(code = 429, message = "Too many failed logins")})
     @GetMapping("/login")
     public ResponseEntity<Map<String, String>> login(@ApiParam(value = "The user name for login", required = true) @RequestParam String username,
-                                                     @ApiParam(value = "The password for login in clear text", required = true) @RequestParam String password) {
-        return ResponseEntity.ok(Map.of("message", userService.login(username, password)));
+                                                     @ApiParam(value = "The password for login in clear text", required = true) @RequestParam String password,
+                                                     HttpServletRequest request) {
+        return ResponseEntity.ok(Map.of("message", LOGGED_IN, "token", userService.login(username, password, request.getRemoteAddr())));
     }
 
-    @ApiOperation(value = "Logs out current logged in user session")
+    @ApiOperation(value = "Logs out current logged in user session", notes = "Revokes the session token sent as Authorization: Bearer <token>")
     @ApiResponses(value = {
           @ApiResponse(code = 200, message = "Successful operation"),
           @ApiResponse(code = 401, message = "Unauthorized")})
     @GetMapping("/logout")
-    public ResponseEntity<Map<String, String>> logout() {
-        return ResponseEntity.ok(Map.of("message", userService.logout()));
+    public ResponseEntity<Map<String, String>> logout(@ApiParam(value = "Bearer session token returned by login") @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        userService.logout(sessionToken(authorization));
+        return ResponseEntity.ok(Map.of("message", LOGGED_OUT));
+    }
+
+    @ApiOperation(value = "Get the user of the current session", notes = "Validates the session token sent as Authorization: Bearer <token> and extends the session")
+    @ApiResponses(value = {
+          @ApiResponse(code = 200, message = "Successful operation"),
+          @ApiResponse(code = 401, message = "Unauthorized")})
+    @GetMapping("/session")
+    public ResponseEntity<User> getSessionUser(@ApiParam(value = "Bearer session token returned by login") @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        return ResponseEntity.ok(userService.getSessionUser(sessionToken(authorization)));
+    }
+
+    private static String sessionToken(String authorization) {
+        return authorization != null && authorization.startsWith(BEARER_PREFIX) ? authorization.substring(BEARER_PREFIX.length()).trim() : null;
+    }
+
+    private static ResponseEntity<UserBatchReport> batchResponse(UserBatchReport report) {
+        HttpStatus status = report.getCreated().isEmpty() && report.getRejected() > 0 ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+        return ResponseEntity.status(status).body(report);
     }
 }
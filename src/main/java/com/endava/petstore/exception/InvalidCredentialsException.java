@@ -0,0 +1,11 @@
+package com.endava.petstore.exception;
+
+/**
+ * Thrown for every failed login, so it skips filling in the stack trace. Its message names neither the username nor the password.
+ */
+public class InvalidCredentialsException extends InvalidResourceException {
+
+    public InvalidCredentialsException(String message) {
+        super(message, false);
+    }
+}
@@ -5,4 +5,8 @@ public class InvalidResourceException extends RuntimeException {
     public InvalidResourceException(String message) {
         super(message);
     }
+
+    protected InvalidResourceException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
@@ -0,0 +1,11 @@
+package com.endava.petstore.exception;
+
+/**
+ * Thrown for every login attempt of a blocked client, so it skips filling in the stack trace.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message, null, false, false);
+    }
+}
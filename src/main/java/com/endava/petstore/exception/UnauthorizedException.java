@@ -0,0 +1,8 @@
+package com.endava.petstore.exception;
+
+public class UnauthorizedException extends RuntimeException {
+
+    public UnauthorizedException(String message) {
+        super(message);
+    }
+}
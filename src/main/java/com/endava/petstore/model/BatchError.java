@@ -0,0 +1,25 @@
+package com.endava.petstore.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@ApiModel
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BatchError implements Serializable {
+
+    private static final Long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "0-based position of the element in the request body")
+    private int index;
+
+    @ApiModelProperty(notes = "Why the element was rejected")
+    private String message;
+}
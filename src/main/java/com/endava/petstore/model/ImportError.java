@@ -0,0 +1,25 @@
+package com.endava.petstore.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@ApiModel
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportError implements Serializable {
+
+    private static final Long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "1-based line number in the request body")
+    private long line;
+
+    @ApiModelProperty(notes = "Why the line was rejected")
+    private String message;
+}
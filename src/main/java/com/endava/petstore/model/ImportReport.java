@@ -0,0 +1,32 @@
+package com.endava.petstore.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@ApiModel
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportReport implements Serializable {
+
+    private static final Long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "Number of non-blank lines read")
+    private long received;
+
+    @ApiModelProperty(notes = "Number of records that were stored")
+    private long imported;
+
+    @ApiModelProperty(notes = "Number of records that were rejected")
+    private long rejected;
+
+    @ApiModelProperty(notes = "Rejected lines with the reason, in line order (capped, see rejected for the total)")
+    private List<ImportError> errors;
+}
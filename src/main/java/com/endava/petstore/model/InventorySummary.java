@@ -0,0 +1,26 @@
+package com.endava.petstore.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@ApiModel
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class InventorySummary implements Serializable {
+
+    private static final Long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "Number of pets per pet status")
+    private Map<String, Long> pets;
+
+    @ApiModelProperty(notes = "Number of orders per order status")
+    private Map<String, Long> orders;
+}
@@ -15,12 +15,13 @@ import org.springframework.format.annotation.DateTimeFormat;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Order implements Serializable {
 
     private static final Long serialVersionUID = 1L;
 
     @ApiModelProperty(name = "id", dataType = "long")
+    @NotNull(message = "Order id must not be null")
     @Positive(message = "Order id must be positive")
     private Long id;
 
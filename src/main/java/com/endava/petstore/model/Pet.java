@@ -16,12 +16,13 @@ import lombok.NoArgsConstructor;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Pet implements Serializable {
 
     private static final Long serialVersionUID = 1L;
 
     @ApiModelProperty(name = "id", dataType = "long", required = true)
+    @NotNull(message = "Pet id must not be null")
     @Positive(message = "Pet id must be positive")
     private Long id;
 
@@ -46,4 +47,8 @@ public class Pet implements Serializable {
     @ApiModelProperty(name = "status", dataType = "string", value = "pet status in store")
     @NotNull(message = "Pet status must not be null")
     private Status status;
+
+    @JsonProperty(value = "imageIds", access = JsonProperty.Access.READ_ONLY)
+    @ApiModelProperty(name = "imageIds", dataType = "array", value = "ids of the images uploaded for the pet, served at /pet/{petId}/images/{imageId}", readOnly = true)
+    private List<String> imageIds;
 }
@@ -0,0 +1,15 @@
+package com.endava.petstore.model;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public enum StreamFormat {
+    JSON("json"), NDJSON("ndjson");
+
+    private final String streamFormat;
+
+    @Override
+    public String toString() {
+        return streamFormat;
+    }
+}
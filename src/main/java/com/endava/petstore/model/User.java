@@ -1,5 +1,6 @@
 package com.endava.petstore.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.annotations.ApiModelProperty;
 import java.io.Serializable;
 import javax.validation.constraints.Email;
@@ -16,12 +17,13 @@ import lombok.NoArgsConstructor;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class User implements Serializable {
 
     private static final Long serialVersionUID = 1L;
 
     @ApiModelProperty(name = "id", dataType = "long")
+    @NotNull(message = "User id must not be null")
     @Positive(message = "User id must be positive")
     private Long id;
 
@@ -61,8 +63,10 @@ public class User implements Serializable {
      * (?=\\S+$) white spaces don’t allowed in the entire string.
      * .{8, 20} represents at least 8 characters and at most 20 characters.
      * $ represents the end of the string.
+     * The password is stored hashed and only ever read from requests, never written to responses.
      */
     @ApiModelProperty(name = "password", dataType = "string")
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @NotBlank(message = "Password must not be blank")
     @Pattern(regexp = "^(?=.*\\d)(?=.*[a-z])(?=.*[A-Z])(?=.*[@#$%^&+-=()])(?=\\S+$).{8,20}$")
     private String password;
@@ -0,0 +1,32 @@
+package com.endava.petstore.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@ApiModel
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UserBatchReport implements Serializable {
+
+    private static final Long serialVersionUID = 1L;
+
+    @ApiModelProperty(notes = "Number of elements in the request body")
+    private int received;
+
+    @ApiModelProperty(notes = "Users that were stored, in request order")
+    private List<User> created;
+
+    @ApiModelProperty(notes = "Number of elements that were rejected")
+    private int rejected;
+
+    @ApiModelProperty(notes = "Rejected elements with the reason, in request order")
+    private List<BatchError> errors;
+}
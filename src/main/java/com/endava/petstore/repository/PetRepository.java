@@ -3,17 +3,32 @@ package com.endava.petstore.repository;
 import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
+import com.endava.petstore.storage.Versioned;
+import java.util.Collection;
 import java.util.List;
-import org.springframework.web.multipart.MultipartFile;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface PetRepository {
 
     List<Pet> getAllPets();
 
+    List<Pet> getPetsPage(Long afterId, int limit);
+
+    Stream<Pet> streamAllPets();
+
     Pet getPetById(Long petId);
 
+    Versioned<Pet> getVersionedPetById(Long petId);
+
+    long getPetsVersion();
+
+    List<Pet> getPetsByIds(Collection<Long> petIds);
+
     Pet savePet(Pet pet);
 
+    void savePets(Collection<Pet> pets);
+
     Pet updatePet(Pet pet);
 
     void deletePetById(Long petId);
@@ -22,7 +37,15 @@ public interface PetRepository {
 
     List<Pet> getPetsByTags(List<String> tagNames);
 
+    List<Pet> getPetsByAllTags(List<String> tagNames);
+
+    Stream<Pet> streamPetsByStatus(Status[] statuses);
+
+    Stream<Pet> streamPetsByTags(List<String> tagNames, boolean matchAll);
+
+    Map<Status, Long> countPetsByStatus();
+
     HttpResponse updatePetFormData(Long petId, String name, String status);
 
-    HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file);
+    Pet addPetImage(Long petId, String imageId);
 }
@@ -6,28 +6,49 @@ import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.model.Tag;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.EnumCounter;
+import com.endava.petstore.storage.EnumIndex;
+import com.endava.petstore.storage.InvertedIndex;
+import com.endava.petstore.storage.SortedIdIndex;
+import com.endava.petstore.storage.Versioned;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Repository;
-import org.springframework.web.multipart.MultipartFile;
 
-import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
 import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
 
 @Repository
+@RequiredArgsConstructor
 public class PetRepositoryImpl implements PetRepository {
-    
-    private final Map<Long, Pet> pets = new HashMap<>();
-    
+
+    private final EntityStore<Pet> pets;
+    private final EnumIndex<Pet, Status> statusIndex = new EnumIndex<>(Status.class, Pet::getStatus);
+    private final InvertedIndex<Pet, String> tagIndex = new InvertedIndex<>(PetRepositoryImpl::getTagNames);
+    private final EnumCounter<Pet, Status> statusCounter = new EnumCounter<>(Status.class, Pet::getStatus);
+    private final SortedIdIndex<Pet> idIndex = new SortedIdIndex<>();
+
     @PostConstruct
     public void initializePets() {
+        pets.addListener(statusIndex);
+        pets.addListener(tagIndex);
+        pets.addListener(statusCounter);
+        pets.addListener(idIndex);
         Pet pet1 = Pet.builder()
               .id(1L)
               .name("test_pet1")
@@ -62,63 +83,146 @@ public class PetRepositoryImpl implements PetRepository {
     
     @Override
     public List<Pet> getAllPets() {
-        return new ArrayList<>(pets.values());
+        return pets.snapshot();
+    }
+
+    @Override
+    public List<Pet> getPetsPage(Long afterId, int limit) {
+        return idIndex.page(pets, afterId, limit);
+    }
+
+    @Override
+    public Stream<Pet> streamAllPets() {
+        return idIndex.stream(pets);
     }
 
     @Override
     public Pet getPetById(Long petId) {
-        return pets.values().stream()
-              .filter(pet -> Objects.equals(pet.getId(), petId)).findFirst()
-              .orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
+        return pets.get(petId).orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
+    }
+
+    @Override
+    public Versioned<Pet> getVersionedPetById(Long petId) {
+        return pets.getVersioned(petId).orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
+    }
+
+    @Override
+    public long getPetsVersion() {
+        return pets.version();
+    }
+
+    /**
+     * Resolves several pets in one pass. Duplicate ids are returned once, in order of first appearance,
+     * and ids that no longer exist (e.g. pets deleted after an order was placed) are skipped instead of failing the whole batch.
+     */
+    @Override
+    public List<Pet> getPetsByIds(Collection<Long> petIds) {
+        List<Pet> result = new ArrayList<>();
+        for(Long petId : new LinkedHashSet<>(petIds)) {
+            if(petId != null) {
+                pets.get(petId).ifPresent(result::add);
+            }
+        }
+        return result;
     }
 
     @Override
     public Pet savePet(Pet pet) {
-        return pets.compute(pet.getId(), (key, value) -> pet);
+        return pets.put(pet.getId(), pet);
+    }
+
+    /**
+     * Adds or replaces a batch of pets; when the batch holds the same id more than once, the last pet wins.
+     */
+    @Override
+    public void savePets(Collection<Pet> batch) {
+        Map<Long, Pet> petsById = new LinkedHashMap<>();
+        for(Pet pet : batch) {
+            petsById.put(pet.getId(), pet);
+        }
+        pets.putAll(petsById);
     }
 
     @Override
     public Pet updatePet(Pet pet) {
-        Pet updatedPet = getPetById(pet.getId());
-        updatedPet.setName(pet.getName());
-        updatedPet.setCategory(pet.getCategory());
-        updatedPet.setPhotoUrls(pet.getPhotoUrls());
-        updatedPet.setTags(pet.getTags());
-        updatedPet.setStatus(pet.getStatus());
-        return updatedPet;
+        return pets.update(pet.getId(), currentPet -> currentPet.toBuilder()
+              .name(pet.getName())
+              .category(pet.getCategory())
+              .photoUrls(pet.getPhotoUrls())
+              .tags(pet.getTags())
+              .status(pet.getStatus())
+              .build()
+        ).orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, pet.getId())));
     }
 
     @Override
     public void deletePetById(Long petId) {
-        pets.remove(getPetById(petId).getId());
+        pets.remove(petId).orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
     }
 
     @Override
     public List<Pet> getPetsByStatus(Status[] statuses) {
-        List<String> statusList = Arrays.stream(statuses).map(Enum::name).toList();
-        return pets.values().stream().filter(pet -> statusList.stream().anyMatch(status -> pet.getStatus().name().equals(status))).toList();
+        return streamPetsByStatus(statuses).toList();
     }
 
     @Override
     public List<Pet> getPetsByTags(List<String> tagNames) {
-        return pets.values().stream().filter(pet -> pet.getTags().stream().map(Tag::getName).anyMatch(tagNames::contains)).toList();
+        return streamPetsByTags(tagNames, false).toList();
+    }
+
+    @Override
+    public List<Pet> getPetsByAllTags(List<String> tagNames) {
+        return streamPetsByTags(tagNames, true).toList();
+    }
+
+    @Override
+    public Stream<Pet> streamPetsByStatus(Status[] statuses) {
+        EnumSet<Status> requestedStatuses = EnumSet.noneOf(Status.class);
+        Arrays.stream(statuses).filter(Objects::nonNull).forEach(requestedStatuses::add);
+        return requestedStatuses.stream()
+              .flatMap(status -> statusIndex.getIds(status).stream()
+                    .map(pets::get)
+                    .flatMap(Optional::stream)
+                    .filter(pet -> statusIndex.matches(pet, status)));
+    }
+
+    @Override
+    public Stream<Pet> streamPetsByTags(List<String> tagNames, boolean matchAll) {
+        if(matchAll) {
+            return resolveTaggedPets(tagIndex.getIdsMatchingAll(tagNames), tags -> tags.containsAll(tagNames));
+        }
+        return resolveTaggedPets(tagIndex.getIdsMatchingAny(tagNames), tags -> tagNames.stream().anyMatch(tags::contains));
+    }
+
+    @Override
+    public Map<Status, Long> countPetsByStatus() {
+        return statusCounter.counts();
     }
 
     @Override
     public HttpResponse updatePetFormData(Long petId, String name, String status) {
-        Pet pet = getPetById(petId);
-        pet.setName(name);
-        pet.setStatus(Status.valueOf(status));
+        pets.update(petId, pet -> pet.toBuilder().name(name).status(Status.valueOf(status)).build())
+              .orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
         return new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(PET_UPDATED, petId));
     }
 
     @Override
-    public HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file) {
-        Pet pet = getPetById(petId);
-        List<String> photoUrls = new ArrayList<>(pet.getPhotoUrls());
-        photoUrls.add(String.format("https://www.%s", file.getOriginalFilename()));
-        pet.setPhotoUrls(photoUrls);
-        savePet(pet);
-        return new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
+    public Pet addPetImage(Long petId, String imageId) {
+        return pets.update(petId, pet -> {
+            List<String> imageIds = pet.getImageIds() == null ? new ArrayList<>(1) : new ArrayList<>(pet.getImageIds());
+            imageIds.add(imageId);
+            return pet.toBuilder().imageIds(imageIds).build();
+        }).orElseThrow(() -> new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
+    }
+
+    private Stream<Pet> resolveTaggedPets(Set<Long> petIds, Predicate<Set<String>> stillMatches) {
+        return petIds.stream()
+              .map(pets::get)
+              .flatMap(Optional::stream)
+              .filter(pet -> stillMatches.test(tagIndex.keysOf(pet)));
+    }
+
+    private static List<String> getTagNames(Pet pet) {
+        return pet.getTags() == null ? List.of() : pet.getTags().stream().map(Tag::getName).toList();
     }
 }
@@ -1,16 +1,29 @@
 package com.endava.petstore.repository;
 
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface StoreRepository {
 
     List<Order> getAllOrders();
 
+    List<Order> getOrdersPage(Long afterId, int limit);
+
+    Stream<Order> streamAllOrders();
+
     Order getOrderById(Long orderId);
 
+    Versioned<Order> getVersionedOrderById(Long orderId);
+
+    long getOrdersVersion();
+
+    long getInventoryVersion();
+
     Order saveOrder(Order order);
 
     Order updateOrder(Order order);
@@ -18,4 +31,8 @@ public interface StoreRepository {
     void deleteOrderById(Long orderId);
 
     List<Pet> getPetsByOrderStatus(OrderStatus orderStatus);
+
+    Stream<Pet> streamPetsByOrderStatus(OrderStatus orderStatus);
+
+    InventorySummary getInventorySummary();
 }
@@ -1,15 +1,24 @@
 package com.endava.petstore.repository;
 
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.EnumCounter;
+import com.endava.petstore.storage.EnumIndex;
+import com.endava.petstore.storage.SortedIdIndex;
+import com.endava.petstore.storage.Versioned;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
@@ -22,10 +31,17 @@ public class StoreRepositoryImpl implements StoreRepository {
 
     private final PetRepository petRepository;
 
-    private final Map<Long, Order> orders = new HashMap<>();
+    private final EntityStore<Order> orders;
+    private final EntityStore<Pet> pets;
+    private final EnumIndex<Order, OrderStatus> orderStatusIndex = new EnumIndex<>(OrderStatus.class, Order::getOrderStatus);
+    private final EnumCounter<Order, OrderStatus> orderStatusCounter = new EnumCounter<>(OrderStatus.class, Order::getOrderStatus);
+    private final SortedIdIndex<Order> idIndex = new SortedIdIndex<>();
 
     @PostConstruct
     public void initializeOrders() {
+        orders.addListener(orderStatusIndex);
+        orders.addListener(orderStatusCounter);
+        orders.addListener(idIndex);
         Order order1 = Order.builder()
               .id(1L)
               .petId(1L)
@@ -57,41 +73,103 @@ public class StoreRepositoryImpl implements StoreRepository {
 
     @Override
     public List<Order> getAllOrders() {
-        return new ArrayList<>(orders.values());
+        return orders.snapshot();
+    }
+
+    @Override
+    public List<Order> getOrdersPage(Long afterId, int limit) {
+        return idIndex.page(orders, afterId, limit);
+    }
+
+    @Override
+    public Stream<Order> streamAllOrders() {
+        return idIndex.stream(orders);
     }
 
     @Override
     public Order getOrderById(Long orderId) {
-        return orders.values().stream()
-              .filter(order -> Objects.equals(order.getId(), orderId)).findFirst()
-              .orElseThrow(() -> new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
+        return orders.get(orderId).orElseThrow(() -> new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
+    }
+
+    @Override
+    public Versioned<Order> getVersionedOrderById(Long orderId) {
+        return orders.getVersioned(orderId).orElseThrow(() -> new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
+    }
+
+    @Override
+    public long getOrdersVersion() {
+        return orders.version();
+    }
+
+    /**
+     * The inventory depends on both orders and pets; both store versions only grow, so their sum changes whenever either store does.
+     */
+    @Override
+    public long getInventoryVersion() {
+        return orders.version() + petRepository.getPetsVersion();
     }
 
     @Override
     public Order saveOrder(Order order) {
         petRepository.getPetById(order.getPetId());
-        return orders.compute(order.getId(), (key, value) -> order);
+        return orders.put(order.getId(), order);
     }
 
     @Override
     public Order updateOrder(Order order) {
         petRepository.getPetById(order.getPetId());
-        Order updatedOrder = getOrderById(order.getId());
-        updatedOrder.setPetId(order.getPetId());
-        updatedOrder.setQuantity(order.getQuantity());
-        updatedOrder.setShipDate(order.getShipDate());
-        updatedOrder.setOrderStatus(order.getOrderStatus());
-        updatedOrder.setComplete(order.getComplete());
-        return updatedOrder;
+        return orders.update(order.getId(), currentOrder -> currentOrder.toBuilder()
+              .petId(order.getPetId())
+              .quantity(order.getQuantity())
+              .shipDate(order.getShipDate())
+              .orderStatus(order.getOrderStatus())
+              .complete(order.getComplete())
+              .build()
+        ).orElseThrow(() -> new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, order.getId())));
     }
 
     @Override
     public void deleteOrderById(Long orderId) {
-        orders.remove(getOrderById(orderId).getId());
+        orders.remove(orderId).orElseThrow(() -> new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
     }
 
     @Override
     public List<Pet> getPetsByOrderStatus(OrderStatus orderStatus) {
-        return orders.values().stream().filter(order -> order.getOrderStatus().equals(orderStatus)).map(order -> petRepository.getPetById(order.getPetId())).toList();
+        Set<Long> petIds = new LinkedHashSet<>();
+        for(Long orderId : orderStatusIndex.getIds(orderStatus)) {
+            orders.get(orderId).filter(order -> orderStatusIndex.matches(order, orderStatus)).ifPresent(order -> petIds.add(order.getPetId()));
+        }
+        return petRepository.getPetsByIds(petIds);
+    }
+
+    /**
+     * Streaming variant of {@link #getPetsByOrderStatus(OrderStatus)}: orders are read lazily and only the ids of the pets already emitted are remembered.
+     * Each pet is read straight from the pet store; pets deleted since the order was placed are skipped.
+     */
+    @Override
+    public Stream<Pet> streamPetsByOrderStatus(OrderStatus orderStatus) {
+        return orderStatusIndex.getIds(orderStatus).stream()
+              .map(orders::get)
+              .flatMap(Optional::stream)
+              .filter(order -> orderStatusIndex.matches(order, orderStatus))
+              .map(Order::getPetId)
+              .filter(Objects::nonNull)
+              .distinct()
+              .map(pets::get)
+              .flatMap(Optional::stream);
+    }
+
+    @Override
+    public InventorySummary getInventorySummary() {
+        return InventorySummary.builder()
+              .pets(toStatusNames(petRepository.countPetsByStatus()))
+              .orders(toStatusNames(orderStatusCounter.counts()))
+              .build();
+    }
+
+    private static <E extends Enum<E>> Map<String, Long> toStatusNames(Map<E, Long> counts) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        counts.forEach((status, count) -> result.put(status.toString(), count));
+        return result;
     }
 }
@@ -1,31 +1,37 @@
 package com.endava.petstore.repository;
 
 import com.endava.petstore.model.User;
+import com.endava.petstore.storage.Versioned;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface UserRepository {
 
     List<User> getAllUsers();
 
+    List<User> getUsersPage(Long afterId, int limit);
+
+    Stream<User> streamAllUsers();
+
     User getUserById(Long userId);
 
+    Versioned<User> getVersionedUserById(Long userId);
+
+    long getUsersVersion();
+
     User saveUser(User user);
 
     User updateUser(User user);
 
     void deleteUserById(Long userId);
 
-    List<User> saveUsersArray(User[] users);
-
-    List<User> saveUsersList(List<User> users);
+    Set<Long> saveUsers(Collection<User> users);
 
     User getUserByUsername(String username);
 
     User updateUserByUsername(User user, String username);
 
     void deleteUserByUsername(String username);
-
-    String login(String username, String password);
-
-    String logout();
 }
@@ -3,25 +3,38 @@ package com.endava.petstore.repository;
 import com.endava.petstore.exception.InvalidResourceException;
 import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.User;
-import java.util.ArrayList;
-import java.util.HashMap;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.SortedIdIndex;
+import com.endava.petstore.storage.UniqueIndex;
+import com.endava.petstore.storage.Versioned;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
-import static com.endava.petstore.constants.Constants.INVALID_USER_CREDENTIALS;
+import static com.endava.petstore.constants.Constants.USERNAME_ALREADY_EXISTS;
 import static com.endava.petstore.constants.Constants.USERNAME_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.USER_NOT_FOUND;
 
 @Repository
+@RequiredArgsConstructor
 public class UserRepositoryImpl implements UserRepository {
 
-    private final Map<Long, User> users = new HashMap<>();
+    private final EntityStore<User> users;
+    private final UniqueIndex<User, String> usernameIndex = new UniqueIndex<>(User::getUsername);
+    private final SortedIdIndex<User> idIndex = new SortedIdIndex<>();
 
     @PostConstruct
     public void initializeUsers() {
+        users.addListener(usernameIndex);
+        users.addListener(idIndex);
         User user1 = User.builder()
               .id(1L)
               .username("test_username1")
@@ -59,85 +72,113 @@ public class UserRepositoryImpl implements UserRepository {
 
     @Override
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        return users.snapshot();
+    }
+
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        return idIndex.page(users, afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return idIndex.stream(users);
     }
 
     @Override
     public User getUserById(Long userId) {
-        return users.values().stream()
-              .filter(user -> Objects.equals(user.getId(), userId)).findFirst()
-              .orElseThrow(() -> new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
+        return users.get(userId).orElseThrow(() -> new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
+    }
+
+    @Override
+    public Versioned<User> getVersionedUserById(Long userId) {
+        return users.getVersioned(userId).orElseThrow(() -> new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
+    }
+
+    @Override
+    public long getUsersVersion() {
+        return users.version();
     }
 
     @Override
     public User saveUser(User user) {
-        return users.compute(user.getId(), (key, value) -> user);
+        return users.withLock(user.getId(), () -> {
+            reserveUsername(user.getUsername(), user.getId());
+            return users.put(user.getId(), user);
+        });
     }
 
     @Override
     public User updateUser(User user) {
-        User updatedUser = getUserById(user.getId());
-        return getUpdatedUserFields(user, updatedUser);
+        return updateUserFields(user.getId(), current -> true, user, () -> new ResourceNotFoundException(String.format(USER_NOT_FOUND, user.getId())));
     }
 
     @Override
     public void deleteUserById(Long userId) {
-        users.remove(getUserById(userId).getId());
+        users.remove(userId).orElseThrow(() -> new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
     }
 
     @Override
-    public List<User> saveUsersArray(User[] users) {
-        List<User> usersList = new ArrayList<>();
-        for(User user : users) {
-            usersList.add(saveUser(user));
+    public Set<Long> saveUsers(Collection<User> batch) {
+        Map<Long, User> byId = new LinkedHashMap<>();
+        for(User user : batch) {
+            byId.put(user.getId(), user);
         }
-        return usersList;
-    }
-
-    @Override
-    public List<User> saveUsersList(List<User> users) {
-        return users.stream().map(this::saveUser).toList();
+        return users.putAll(byId, user -> usernameIndex.reserve(user.getUsername(), user.getId()));
     }
 
     @Override
     public User getUserByUsername(String username) {
-        return users.values().stream()
-              .filter(user -> user.getUsername().equals(username)).findFirst()
+        return usernameIndex.getId(username)
+              .flatMap(users::get)
+              .filter(user -> user.getUsername().equals(username))
               .orElseThrow(() -> new ResourceNotFoundException(String.format(USERNAME_NOT_FOUND, username)));
     }
 
     @Override
     public User updateUserByUsername(User user, String username) {
-        User updatedUser = getUserByUsername(username);
-        return getUpdatedUserFields(user, updatedUser);
+        return updateUserFields(getUserByUsername(username).getId(), current -> current.getUsername().equals(username), user,
+              () -> new ResourceNotFoundException(String.format(USERNAME_NOT_FOUND, username)));
     }
 
     @Override
     public void deleteUserByUsername(String username) {
-        users.remove(getUserByUsername(username).getId());
+        Long userId = getUserByUsername(username).getId();
+        users.withLock(userId, () -> {
+            // the id was looked up without the lock, so the user may have been renamed or deleted since
+            users.get(userId)
+                  .filter(current -> current.getUsername().equals(username))
+                  .orElseThrow(() -> new ResourceNotFoundException(String.format(USERNAME_NOT_FOUND, username)));
+            return users.remove(userId);
+        });
     }
 
-    @Override
-    public String login(String username, String password) {
-        if(!getUserByUsername(username).getPassword().equals(password)) {
-            throw new InvalidResourceException(String.format(INVALID_USER_CREDENTIALS, username, password));
-        }
-        return "Logged in successfully";
+    /**
+     * Updates the user with the id if it still passes the check (made under the lock, as the id may have been looked up without it).
+     */
+    private User updateUserFields(Long userId, Predicate<User> check, User user, Supplier<ResourceNotFoundException> notFound) {
+        return users.withLock(userId, () -> {
+            users.get(userId).filter(check).orElseThrow(notFound);
+            reserveUsername(user.getUsername(), userId);
+            return users.update(userId, updatedUser -> getUpdatedUserFields(user, updatedUser)).orElseThrow(notFound);
+        });
     }
 
-    @Override
-    public String logout() {
-        return "Logged out successfully";
+    private void reserveUsername(String username, Long userId) {
+        if(!usernameIndex.reserve(username, userId)) {
+            throw new InvalidResourceException(String.format(USERNAME_ALREADY_EXISTS, username));
+        }
     }
 
     private User getUpdatedUserFields(User user, User updatedUser) {
-        updatedUser.setUsername(user.getUsername());
-        updatedUser.setFirstName(user.getFirstName());
-        updatedUser.setLastName(user.getLastName());
-        updatedUser.setEmail(user.getEmail());
-        updatedUser.setPassword(user.getPassword());
-        updatedUser.setPhone(user.getPhone());
-        updatedUser.setUserStatus(user.getUserStatus());
-        return updatedUser;
+        return updatedUser.toBuilder()
+              .username(user.getUsername())
+              .firstName(user.getFirstName())
+              .lastName(user.getLastName())
+              .email(user.getEmail())
+              .password(user.getPassword())
+              .phone(user.getPhone())
+              .userStatus(user.getUserStatus())
+              .build();
     }
 }
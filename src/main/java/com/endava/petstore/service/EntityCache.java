@@ -0,0 +1,170 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.StoreListener;
+import com.endava.petstore.storage.Versioned;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Read-through, write-through near cache of one entity type, keyed by id, that the services put in front of their repository.
+ * Reads are answered from memory while an entry is fresh; otherwise the repository is asked and the answer is kept for the configured time,
+ * including the answer that an id does not exist, which is kept for a (shorter) time of its own so that repeated lookups of missing ids
+ * do not reach the repository either. Entries beyond the configured number are evicted least recently used first.
+ * <p>
+ * The cache listens to the entity store, so every write reaches it however it was made (services, bulk imports, log replay):
+ * a cached entry is replaced with the newly written value and version, and dropped when the entity is removed. A value read from the repository
+ * while a write was in flight is returned but not cached, so the cache never keeps a value older than the store's.
+ * <p>
+ * Metrics, tagged with the cache name: {@code petstore.entity-cache.gets} (a timer, also tagged with the service method and with the result:
+ * hit, negative-hit or miss, which together give the hit ratio), {@code petstore.entity-cache.size} and {@code petstore.entity-cache.evictions}
+ * (tagged with the cause: size or expired).
+ */
+public class EntityCache<T> implements StoreListener<T> {
+
+    private static final String HIT = "hit";
+    private static final String NEGATIVE_HIT = "negative-hit";
+    private static final String MISS = "miss";
+
+    private final String name;
+    private final EntityStore<T> store;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final MeterRegistry meterRegistry;
+    private final Map<Long, Cached<T>> entries;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter sizeEvictions;
+    private final Counter expirations;
+    private LongSupplier nanoTime = System::nanoTime;
+    private long writes;
+
+    public EntityCache(String name, EntityStore<T> store, int maxEntries, long ttlSeconds, long negativeTtlSeconds, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.store = store;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.negativeTtlNanos = TimeUnit.SECONDS.toNanos(negativeTtlSeconds);
+        this.meterRegistry = meterRegistry;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Cached<T>> eldest) {
+                if(size() <= maxEntries) {
+                    return false;
+                }
+                sizeEvictions.increment();
+                return true;
+            }
+        };
+        Gauge.builder("petstore.entity-cache.size", this, EntityCache::size)
+              .description("Entries held in the near cache")
+              .tag("cache", name)
+              .register(meterRegistry);
+        sizeEvictions = Counter.builder("petstore.entity-cache.evictions")
+              .description("Entries dropped from the near cache")
+              .tag("cache", name)
+              .tag("cause", "size")
+              .register(meterRegistry);
+        expirations = Counter.builder("petstore.entity-cache.evictions")
+              .description("Entries dropped from the near cache")
+              .tag("cache", name)
+              .tag("cause", "expired")
+              .register(meterRegistry);
+        store.addListener(this);
+    }
+
+    /**
+     * Returns the cached entity, or loads it with the given repository call and caches it. A {@link ResourceNotFoundException} thrown by the call
+     * is cached as well, and thrown again (with the same message) by the lookups that hit it. The service method name only tags the metrics.
+     */
+    public Versioned<T> get(String method, Long id, Supplier<Versioned<T>> loader) {
+        if(maxEntries <= 0) {
+            return loader.get();
+        }
+        long startedAt = nanoTime.getAsLong();
+        Cached<T> cached;
+        long writesBefore;
+        synchronized(this) {
+            cached = entries.get(id);
+            if(cached != null && cached.expiresAt() - startedAt <= 0) {
+                entries.remove(id);
+                expirations.increment();
+                cached = null;
+            }
+            writesBefore = writes;
+        }
+        if(cached != null) {
+            record(method, cached.value() == null ? NEGATIVE_HIT : HIT, startedAt);
+            return cached.get();
+        }
+        Cached<T> loaded;
+        try {
+            loaded = new Cached<>(Objects.requireNonNull(loader.get()), null, nanoTime.getAsLong() + ttlNanos);
+        } catch(ResourceNotFoundException e) {
+            if(negativeTtlNanos > 0) {
+                cacheLoaded(id, new Cached<>(null, e.getMessage(), nanoTime.getAsLong() + negativeTtlNanos), writesBefore);
+            }
+            record(method, MISS, startedAt);
+            throw e;
+        }
+        cacheLoaded(id, loaded, writesBefore);
+        record(method, MISS, startedAt);
+        return loaded.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        Versioned<T> written = current == null ? null : store.getVersioned(id).orElse(null);
+        synchronized(this) {
+            writes++;
+            if(written == null) {
+                entries.remove(id);
+            } else if(entries.containsKey(id)) {
+                entries.put(id, new Cached<>(written, null, nanoTime.getAsLong() + ttlNanos));
+            }
+        }
+    }
+
+    private synchronized void cacheLoaded(Long id, Cached<T> loaded, long writesBefore) {
+        if(writes == writesBefore) {
+            entries.put(id, loaded);
+        }
+    }
+
+    private void record(String method, String result, long startedAt) {
+        timers.computeIfAbsent(method + ':' + result, key -> Timer.builder("petstore.entity-cache.gets")
+              .description("Lookups through the near cache")
+              .tag("cache", name)
+              .tag("method", method)
+              .tag("result", result)
+              .register(meterRegistry))
+              .record(nanoTime.getAsLong() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A cached entity, or the message of the lookup that found no entity under the id when {@code value} is null.
+     */
+    private record Cached<T>(Versioned<T> value, String missingMessage, long expiresAt) {
+
+        Versioned<T> get() {
+            if(value == null) {
+                throw new ResourceNotFoundException(missingMessage);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.endava.petstore.constants.Constants.TOO_MANY_FAILED_LOGINS;
+
+/**
+ * Brute-force protection of {@code /user/login}: failed logins are counted per username and per client address over a sliding window
+ * ({@link SlidingWindowCounter}), and a username or address whose failures reach its limit is blocked for the block time.
+ * A blocked login is turned away before the user is looked up or a password hashed, with an exception that skips the stack trace.
+ * <p>
+ * Only failures create counters, so a successful login costs two hash lookups that find nothing (plus a removal when the username had
+ * failed before) and takes no lock. Counters whose window is empty and that are not blocking are dropped by a periodic sweep; since a client
+ * is blocked after its address limit, one client cannot grow the maps by more than that limit per block time.
+ * <p>
+ * Metrics: {@code petstore.login-throttle.blocks} and {@code petstore.login-throttle.rejected} (counters tagged with the scope:
+ * username or address) and {@code petstore.login-throttle.tracked} (the usernames and addresses with counters).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoginThrottle {
+
+    private static final String USERNAME = "username";
+    private static final String ADDRESS = "address";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Failures> failuresByUsername = new ConcurrentHashMap<>();
+    private final Map<String, Failures> failuresByAddress = new ConcurrentHashMap<>();
+
+    @Value("${petstore.login-throttle.window-seconds:300}")
+    private long windowSeconds;
+    @Value("${petstore.login-throttle.buckets:10}")
+    private int buckets;
+    @Value("${petstore.login-throttle.max-failures-per-username:5}")
+    private int maxFailuresPerUsername;
+    @Value("${petstore.login-throttle.max-failures-per-address:20}")
+    private int maxFailuresPerAddress;
+    @Value("${petstore.login-throttle.block-seconds:900}")
+    private long blockSeconds;
+
+    private LongSupplier nanoTime = System::nanoTime;
+    private long windowNanos;
+    private long blockNanos;
+    private ScheduledExecutorService sweeper;
+    private Counter usernameBlocks;
+    private Counter addressBlocks;
+    private Counter usernameRejections;
+    private Counter addressRejections;
+
+    @PostConstruct
+    public void start() {
+        windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+        blockNanos = TimeUnit.SECONDS.toNanos(blockSeconds);
+        usernameBlocks = counter("petstore.login-throttle.blocks", "Usernames or addresses blocked after too many failed logins", USERNAME);
+        addressBlocks = counter("petstore.login-throttle.blocks", "Usernames or addresses blocked after too many failed logins", ADDRESS);
+        usernameRejections = counter("petstore.login-throttle.rejected", "Logins turned away while blocked", USERNAME);
+        addressRejections = counter("petstore.login-throttle.rejected", "Logins turned away while blocked", ADDRESS);
+        Gauge.builder("petstore.login-throttle.tracked", this, LoginThrottle::tracked)
+              .description("Usernames and addresses with failed logins being counted")
+              .register(meterRegistry);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "login-throttle-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sliceMillis = Math.max(1, TimeUnit.SECONDS.toMillis(windowSeconds) / buckets);
+        sweeper.scheduleAtFixedRate(this::scheduledSweep, sliceMillis, sliceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Throws a {@link TooManyRequestsException} if the username or the address is blocked.
+     */
+    public void checkAllowed(String username, String address) {
+        long now = nanoTime.getAsLong();
+        if(isBlocked(failuresByUsername, username, now)) {
+            usernameRejections.increment();
+            throw new TooManyRequestsException(TOO_MANY_FAILED_LOGINS);
+        }
+        if(isBlocked(failuresByAddress, address, now)) {
+            addressRejections.increment();
+            throw new TooManyRequestsException(TOO_MANY_FAILED_LOGINS);
+        }
+    }
+
+    public void recordFailure(String username, String address) {
+        long now = nanoTime.getAsLong();
+        if(record(failuresByUsername, username, maxFailuresPerUsername, now)) {
+            usernameBlocks.increment();
+            log.warn("Blocked logins of username {} after {} failures", username, maxFailuresPerUsername);
+        }
+        if(record(failuresByAddress, address, maxFailuresPerAddress, now)) {
+            addressBlocks.increment();
+            log.warn("Blocked logins from {} after {} failures", address, maxFailuresPerAddress);
+        }
+    }
+
+    /**
+     * Forgets the failures of the username, which has just proven its password. Those of the address are kept, so a client cannot
+     * reset its count by logging in to an account of its own between guesses.
+     */
+    public void recordSuccess(String username) {
+        if(username != null && failuresByUsername.get(username) != null) {
+            failuresByUsername.remove(username);
+        }
+    }
+
+    public int tracked() {
+        return failuresByUsername.size() + failuresByAddress.size();
+    }
+
+    /**
+     * Drops the counters that have no failures left in their window and are not blocking.
+     */
+    public void sweep() {
+        long now = nanoTime.getAsLong();
+        failuresByUsername.values().removeIf(failures -> failures.isIdle(now));
+        failuresByAddress.values().removeIf(failures -> failures.isIdle(now));
+    }
+
+    private void scheduledSweep() {
+        try {
+            sweep();
+        } catch(RuntimeException e) {
+            log.error("Failed to sweep login failure counters", e);
+        }
+    }
+
+    private static boolean isBlocked(Map<String, Failures> failures, String key, long now) {
+        Failures keyFailures = key == null ? null : failures.get(key);
+        return keyFailures != null && keyFailures.isBlocked(now);
+    }
+
+    /**
+     * Counts a failure of the key and returns whether it started a block.
+     */
+    private boolean record(Map<String, Failures> failures, String key, int maxFailures, long now) {
+        if(key == null || maxFailures <= 0) {
+            return false;
+        }
+        Failures keyFailures = failures.computeIfAbsent(key, k -> new Failures(new SlidingWindowCounter(buckets, windowNanos, now)));
+        keyFailures.window.increment(now);
+        return keyFailures.window.sum(now) >= maxFailures && keyFailures.block(now, now + blockNanos);
+    }
+
+    private Counter counter(String name, String description, String scope) {
+        return Counter.builder(name)
+              .description(description)
+              .tag("scope", scope)
+              .register(meterRegistry);
+    }
+
+    private static final class Failures {
+
+        private final SlidingWindowCounter window;
+        private volatile boolean blocking;
+        private volatile long blockedUntil;
+
+        private Failures(SlidingWindowCounter window) {
+            this.window = window;
+        }
+
+        private boolean isBlocked(long now) {
+            return blocking && blockedUntil - now > 0;
+        }
+
+        private synchronized boolean block(long now, long until) {
+            if(isBlocked(now)) {
+                return false;
+            }
+            blockedUntil = until;
+            blocking = true;
+            return true;
+        }
+
+        private boolean isIdle(long now) {
+            return !isBlocked(now) && window.sum(now) == 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.endava.petstore.constants.Constants.PASSWORD_HASHING_BUSY;
+
+/**
+ * Hashes user passwords with the JDK's PBKDF2 (HMAC-SHA512) and a random salt per password, and verifies passwords against those hashes.
+ * A hash is stored as {@code pbkdf2-sha512$<iterations>$<salt>$<hash>} (base64), so hashes made before the configured number of iterations
+ * changed still verify with the cost they were made with.
+ * <p>
+ * Every hash costs the configured iterations of CPU time, so hashing and verification run on a pool of a fixed number of threads behind
+ * a bounded queue rather than on the request threads: a burst of logins is worked off at the pool's pace, and once the queue is full further
+ * requests are turned away with a {@link ServiceUnavailableException} instead of piling up. Callers wait for their own hash.
+ * <p>
+ * A successful verification is remembered per username for a short time as a SHA-256 digest of the stored hash and the presented password,
+ * so repeated logins with the same credentials cost one digest instead of a hash. The entry only counts while the stored hash is unchanged,
+ * so a new password takes effect at once. Passwords stored before hashing was introduced (without the prefix) are compared as they are
+ * until the user is saved again.
+ * <p>
+ * Metrics: {@code petstore.passwords.hashing} (a timer tagged with the operation: hash or verify), {@code petstore.passwords.queue.depth},
+ * {@code petstore.passwords.rejected} and {@code petstore.passwords.verified-cache} (a counter tagged with the result: hit or miss).
+ */
+@Component
+@RequiredArgsConstructor
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA512";
+    private static final String PREFIX = "pbkdf2-sha512$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 512;
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final MeterRegistry meterRegistry;
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${petstore.passwords.iterations:210000}")
+    private int iterations;
+    @Value("${petstore.passwords.threads:0}")
+    private int threads;
+    @Value("${petstore.passwords.queue-capacity:256}")
+    private int queueCapacity;
+    @Value("${petstore.passwords.verified-ttl-seconds:60}")
+    private long verifiedTtlSeconds;
+    @Value("${petstore.passwords.verified-max-entries:10000}")
+    private int verifiedMaxEntries;
+
+    private LongSupplier nanoTime = System::nanoTime;
+    private long verifiedTtlNanos;
+    private String dummyHash;
+    private Map<String, Verified> verified;
+    private ThreadPoolExecutor executor;
+    private Timer hashTimer;
+    private Timer verifyTimer;
+    private Counter rejected;
+    private Counter verifiedHits;
+    private Counter verifiedMisses;
+
+    @PostConstruct
+    public void start() {
+        if(iterations <= 0) {
+            throw new IllegalArgumentException("petstore.passwords.iterations must be positive");
+        }
+        verifiedTtlNanos = TimeUnit.SECONDS.toNanos(verifiedTtlSeconds);
+        dummyHash = PREFIX + iterations + '$' + ENCODER.encodeToString(new byte[SALT_BYTES]) + '$' + ENCODER.encodeToString(new byte[HASH_BITS / 8]);
+        verified = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Verified> eldest) {
+                return size() > verifiedMaxEntries;
+            }
+        };
+        int workers = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("petstore.passwords.queue.depth", queue, BlockingQueue::size)
+              .description("Password hashes waiting for a hashing thread")
+              .register(meterRegistry);
+        hashTimer = Timer.builder("petstore.passwords.hashing")
+              .description("Time to compute a password hash")
+              .tag("operation", "hash")
+              .register(meterRegistry);
+        verifyTimer = Timer.builder("petstore.passwords.hashing")
+              .description("Time to compute a password hash")
+              .tag("operation", "verify")
+              .register(meterRegistry);
+        rejected = Counter.builder("petstore.passwords.rejected")
+              .description("Password hashes turned away because the queue was full")
+              .register(meterRegistry);
+        verifiedHits = Counter.builder("petstore.passwords.verified-cache")
+              .description("Password verifications answered from or missing the verified-credential cache")
+              .tag("result", "hit")
+              .register(meterRegistry);
+        verifiedMisses = Counter.builder("petstore.passwords.verified-cache")
+              .description("Password verifications answered from or missing the verified-credential cache")
+              .tag("result", "miss")
+              .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the salted hash of the password, computed with the configured iterations, to be stored instead of the password.
+     */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int cost = iterations;
+        byte[] hash = compute(hashTimer, () -> pbkdf2(password, salt, cost, HASH_BITS));
+        return PREFIX + cost + '$' + ENCODER.encodeToString(salt) + '$' + ENCODER.encodeToString(hash);
+    }
+
+    /**
+     * Returns the stored hash if it was made from the password, or else a new hash of the password. Saving a user whose password
+     * did not change thus keeps the stored value, and with it the user's sessions and verified-credential cache entry.
+     */
+    public String hashIfChanged(String username, String password, String stored) {
+        return stored != null && stored.startsWith(PREFIX) && verify(username, password, stored) ? stored : hash(password);
+    }
+
+    /**
+     * Returns a well-formed hash with the configured iterations that no password verifies against, so that checking a password for
+     * a user that does not exist can cost as much as checking a wrong one.
+     */
+    public String dummyHash() {
+        return dummyHash;
+    }
+
+    /**
+     * Returns whether the password is the one the stored hash was made from. The username only keys the verified-credential cache.
+     */
+    public boolean verify(String username, String password, String stored) {
+        if(password == null || stored == null) {
+            return false;
+        }
+        if(!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] digest = digest(stored, password);
+        if(isVerified(username, stored, digest)) {
+            verifiedHits.increment();
+            return true;
+        }
+        verifiedMisses.increment();
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if(parts.length != 3) {
+            return false;
+        }
+        int cost = Integer.parseInt(parts[0]);
+        byte[] salt = DECODER.decode(parts[1]);
+        byte[] expected = DECODER.decode(parts[2]);
+        boolean matches = MessageDigest.isEqual(compute(verifyTimer, () -> pbkdf2(password, salt, cost, expected.length * 8)), expected);
+        if(matches) {
+            remember(username, stored, digest);
+        }
+        return matches;
+    }
+
+    private byte[] compute(Timer timer, Supplier<byte[]> hashing) {
+        Future<byte[]> result;
+        try {
+            result = executor.submit(() -> timer.record(hashing));
+        } catch(RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceUnavailableException(PASSWORD_HASHING_BUSY);
+        }
+        try {
+            return result.get();
+        } catch(InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch(ExecutionException e) {
+            throw new IllegalStateException("Failed to compute a password hash", e.getCause());
+        }
+    }
+
+    private synchronized boolean isVerified(String username, String stored, byte[] digest) {
+        Verified entry = verified.get(username);
+        if(entry == null) {
+            return false;
+        }
+        if(entry.expiresAt() - nanoTime.getAsLong() <= 0) {
+            verified.remove(username);
+            return false;
+        }
+        return entry.stored().equals(stored) && MessageDigest.isEqual(entry.digest(), digest);
+    }
+
+    private synchronized void remember(String username, String stored, byte[] digest) {
+        if(verifiedTtlNanos > 0 && verifiedMaxEntries > 0) {
+            verified.put(username, new Verified(stored, digest, nanoTime.getAsLong() + verifiedTtlNanos));
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static byte[] digest(String stored, String password) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            sha256.update(stored.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) 0);
+            return sha256.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * A successful verification: the stored hash it was made against, the digest of that hash and the password, and when it stops counting.
+     */
+    private record Verified(String stored, byte[] digest, long expiresAt) {
+    }
+}
@@ -0,0 +1,160 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.model.ImportError;
+import com.endava.petstore.model.ImportReport;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.repository.PetRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.endava.petstore.constants.Constants.INVALID_IMPORT_RECORD;
+
+/**
+ * Bulk-loads pets from newline-delimited JSON.
+ * The calling thread only splits the body into chunks of lines; each chunk is parsed and validated on a worker pool,
+ * and finished chunks are stored in the order they were read, one repository batch per chunk, so a later line for the same id always wins.
+ * At most two chunks per worker are in flight, which bounds memory however large the body is.
+ */
+@Component
+@RequiredArgsConstructor
+public class PetImporter {
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PetRepository petRepository;
+
+    @Value("${petstore.import.chunk-size:1000}")
+    private int chunkSize;
+    @Value("${petstore.import.parallelism:0}")
+    private int parallelism;
+    @Value("${petstore.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private ExecutorService executor;
+    private int maxChunksInFlight;
+
+    @PostConstruct
+    public void start() {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "pet-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxChunksInFlight = 2 * workers;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public ImportReport importPets(InputStream ndjson) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(Pet.class);
+        Deque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+        ImportReport report = ImportReport.builder().errors(new ArrayList<>()).build();
+        try(BufferedReader lines = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8), 64 * 1024)) {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            long firstLine = 1;
+            long lineNumber = 0;
+            String line;
+            while((line = lines.readLine()) != null) {
+                lineNumber++;
+                chunk.add(line);
+                if(chunk.size() == chunkSize) {
+                    inFlight.add(submit(reader, chunk, firstLine));
+                    chunk = new ArrayList<>(chunkSize);
+                    firstLine = lineNumber + 1;
+                    if(inFlight.size() >= maxChunksInFlight) {
+                        store(inFlight.poll().join(), report);
+                    }
+                }
+            }
+            if(!chunk.isEmpty()) {
+                inFlight.add(submit(reader, chunk, firstLine));
+            }
+            while(!inFlight.isEmpty()) {
+                store(inFlight.poll().join(), report);
+            }
+        } finally {
+            inFlight.forEach(pending -> pending.cancel(false));
+        }
+        return report;
+    }
+
+    private CompletableFuture<Chunk> submit(ObjectReader reader, List<String> lines, long firstLine) {
+        return CompletableFuture.supplyAsync(() -> parse(reader, lines, firstLine), executor);
+    }
+
+    private Chunk parse(ObjectReader reader, List<String> lines, long firstLine) {
+        Chunk chunk = new Chunk(new ArrayList<>(lines.size()), new ArrayList<>());
+        for(int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if(line.isBlank()) {
+                continue;
+            }
+            long lineNumber = firstLine + i;
+            try {
+                Pet pet = reader.readValue(line);
+                if(pet == null) {
+                    chunk.errors().add(new ImportError(lineNumber, INVALID_IMPORT_RECORD));
+                    continue;
+                }
+                Set<ConstraintViolation<Pet>> violations = validator.validate(pet);
+                if(violations.isEmpty()) {
+                    chunk.pets().add(pet);
+                } else {
+                    chunk.errors().add(new ImportError(lineNumber, describe(violations)));
+                }
+            } catch(JsonProcessingException e) {
+                chunk.errors().add(new ImportError(lineNumber, e.getOriginalMessage()));
+            }
+        }
+        return chunk;
+    }
+
+    private void store(Chunk chunk, ImportReport report) {
+        if(!chunk.pets().isEmpty()) {
+            petRepository.savePets(chunk.pets());
+        }
+        report.setReceived(report.getReceived() + chunk.pets().size() + chunk.errors().size());
+        report.setImported(report.getImported() + chunk.pets().size());
+        report.setRejected(report.getRejected() + chunk.errors().size());
+        int room = maxReportedErrors - report.getErrors().size();
+        report.getErrors().addAll(chunk.errors().subList(0, Math.min(room, chunk.errors().size())));
+    }
+
+    private static String describe(Set<ConstraintViolation<Pet>> violations) {
+        return violations.stream()
+              .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+              .sorted()
+              .collect(Collectors.joining("; "));
+    }
+
+    private record Chunk(List<Pet> pets, List<ImportError> errors) {
+    }
+}
@@ -0,0 +1,255 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.Status;
+import com.endava.petstore.model.Tag;
+import com.endava.petstore.storage.EntityStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Caches the results of the pet queries that make up most of the catalog traffic (by status and by tags) in front of the pet repository.
+ * Queries are normalized before the lookup, so requests that only differ in the order or repetition of their parameters share an entry;
+ * the order of any-tag queries is kept, because it decides the order of their result. At most a configured number of results are kept,
+ * and the least recently used one is evicted beyond that. Nothing is registered with the pet store when the cache is disabled.
+ * <p>
+ * Invalidation is driven by writes to the pet store: a write drops only the cached results that the written pet was or now is part of,
+ * found through an index from each status and tag name to the cached queries that mention it. It runs under the pet's stripe lock, so it
+ * takes no lock of its own and only touches concurrent maps; an index entry is only ever changed inside its own map bin, after checking
+ * the results, so a query cached again by a reader is never left out of the index. A result computed while a pet was being written is
+ * returned but not cached, so a result that may have missed a write is never kept.
+ * <p>
+ * Metrics: {@code petstore.query-cache.size} and the {@code petstore.query-cache.hits}, {@code petstore.query-cache.misses},
+ * {@code petstore.query-cache.evictions} (capacity) and {@code petstore.query-cache.invalidations} (writes) counters.
+ */
+@Component
+@RequiredArgsConstructor
+// the repository's indexes must be registered with the pet store first, so a write is visible through them before the cache hears of it
+@DependsOn("petRepositoryImpl")
+public class PetQueryCache {
+
+    private final EntityStore<Pet> petStore;
+    private final MeterRegistry meterRegistry;
+    private final Map<Query, Entry> results = new ConcurrentHashMap<>();
+    private final Map<Object, Set<Query>> queriesByKey = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong uses = new AtomicLong();
+
+    @Value("${petstore.query-cache.max-entries:1000}")
+    private int maxEntries;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    private Counter invalidations;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("petstore.query-cache.size", this, PetQueryCache::size)
+              .description("Pet query results held in the cache")
+              .register(meterRegistry);
+        hits = Counter.builder("petstore.query-cache.hits")
+              .description("Pet queries answered from the cache")
+              .register(meterRegistry);
+        misses = Counter.builder("petstore.query-cache.misses")
+              .description("Pet queries run against the repository")
+              .register(meterRegistry);
+        evictions = Counter.builder("petstore.query-cache.evictions")
+              .description("Cached results dropped to stay within the maximum number of entries")
+              .register(meterRegistry);
+        invalidations = Counter.builder("petstore.query-cache.invalidations")
+              .description("Cached results dropped because a pet in them was written")
+              .register(meterRegistry);
+        if(maxEntries <= 0) {
+            return;
+        }
+        petStore.addListener((id, previous, current) -> invalidate(previous, current));
+    }
+
+    public List<Pet> getPetsByStatus(Status[] statuses, Supplier<List<Pet>> query) {
+        Set<Status> normalized = EnumSet.noneOf(Status.class);
+        Arrays.stream(statuses).filter(Objects::nonNull).forEach(normalized::add);
+        return get(new StatusQuery(normalized), query);
+    }
+
+    public List<Pet> getPetsByTags(List<String> tagNames, boolean matchAll, Supplier<List<Pet>> query) {
+        Collection<String> normalized = matchAll ? new TreeSet<>(tagNames) : new LinkedHashSet<>(tagNames);
+        return get(new TagQuery(List.copyOf(normalized), matchAll), query);
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    private List<Pet> get(Query key, Supplier<List<Pet>> query) {
+        if(maxEntries <= 0) {
+            return query.get();
+        }
+        Entry cached = results.get(key);
+        if(cached != null) {
+            cached.lastUsed = uses.incrementAndGet();
+            hits.increment();
+            return cached.result;
+        }
+        long writesBefore = writes.get();
+        misses.increment();
+        List<Pet> result = List.copyOf(query.get());
+        Entry entry = new Entry(result, uses.incrementAndGet());
+        if(results.putIfAbsent(key, entry) == null) {
+            key.keys().forEach(k -> queriesByKey.compute(k, (any, queries) -> {
+                queries = queries == null ? ConcurrentHashMap.newKeySet() : queries;
+                queries.add(key);
+                return queries;
+            }));
+            if(writes.get() != writesBefore) {
+                remove(key, entry);
+            } else if(results.size() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        }
+        return result;
+    }
+
+    private void invalidate(Pet previous, Pet current) {
+        writes.incrementAndGet();
+        Set<Object> keys = new HashSet<>();
+        keys.addAll(keysOf(previous));
+        keys.addAll(keysOf(current));
+        Set<Query> affected = new HashSet<>();
+        for(Object key : keys) {
+            for(Query query : queriesByKey.getOrDefault(key, Set.of())) {
+                if(query.matches(previous) || query.matches(current)) {
+                    affected.add(query);
+                }
+            }
+        }
+        for(Query query : affected) {
+            Entry entry = results.get(query);
+            if(entry != null && remove(query, entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Readers only: scans for the least recently used results while the cache is over its maximum; writes never wait for this.
+     */
+    private synchronized void evictLeastRecentlyUsed() {
+        while(results.size() > maxEntries) {
+            Map.Entry<Query, Entry> eldest = null;
+            for(Map.Entry<Query, Entry> candidate : results.entrySet()) {
+                if(eldest == null || candidate.getValue().lastUsed < eldest.getValue().lastUsed) {
+                    eldest = candidate;
+                }
+            }
+            if(eldest != null && remove(eldest.getKey(), eldest.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean remove(Query query, Entry entry) {
+        if(!results.remove(query, entry)) {
+            return false;
+        }
+        for(Object key : query.keys()) {
+            queriesByKey.computeIfPresent(key, (k, queries) -> {
+                if(!results.containsKey(query)) {
+                    queries.remove(query);
+                }
+                return queries.isEmpty() ? null : queries;
+            });
+        }
+        return true;
+    }
+
+    private static List<Object> keysOf(Pet pet) {
+        if(pet == null) {
+            return List.of();
+        }
+        List<Object> keys = new ArrayList<>(tagNamesOf(pet));
+        if(pet.getStatus() != null) {
+            keys.add(pet.getStatus());
+        }
+        return keys;
+    }
+
+    private static Set<String> tagNamesOf(Pet pet) {
+        Set<String> tagNames = new HashSet<>();
+        if(pet.getTags() != null) {
+            pet.getTags().stream().filter(Objects::nonNull).map(Tag::getName).filter(Objects::nonNull).forEach(tagNames::add);
+        }
+        return tagNames;
+    }
+
+    private static final class Entry {
+
+        private final List<Pet> result;
+        private volatile long lastUsed;
+
+        private Entry(List<Pet> result, long lastUsed) {
+            this.result = result;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private interface Query {
+
+        /**
+         * Returns the statuses or tag names the query selects by, under which it is indexed for invalidation.
+         */
+        Collection<?> keys();
+
+        boolean matches(Pet pet);
+    }
+
+    private record StatusQuery(Set<Status> statuses) implements Query {
+
+        @Override
+        public Collection<?> keys() {
+            return statuses;
+        }
+
+        @Override
+        public boolean matches(Pet pet) {
+            return pet != null && statuses.contains(pet.getStatus());
+        }
+    }
+
+    private record TagQuery(List<String> tagNames, boolean matchAll) implements Query {
+
+        @Override
+        public Collection<?> keys() {
+            return tagNames;
+        }
+
+        @Override
+        public boolean matches(Pet pet) {
+            if(pet == null) {
+                return false;
+            }
+            Set<String> petTagNames = tagNamesOf(pet);
+            return matchAll ? petTagNames.containsAll(tagNames) : tagNames.stream().anyMatch(petTagNames::contains);
+        }
+    }
+}
@@ -1,19 +1,35 @@
 package com.endava.petstore.service;
 
 import com.endava.petstore.model.HttpResponse;
+import com.endava.petstore.model.ImportReport;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
+import com.endava.petstore.storage.Versioned;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Stream;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface PetService {
 
     List<Pet> getAllPets();
 
+    List<Pet> getPetsPage(Long afterId, int limit);
+
+    Stream<Pet> streamAllPets();
+
     Pet getPetById(Long petId);
 
+    Versioned<Pet> getVersionedPetById(Long petId);
+
+    long getPetsVersion();
+
     Pet savePet(Pet pet);
 
+    ImportReport importPets(InputStream ndjson) throws IOException;
+
     Pet updatePet(Pet pet);
 
     void deletePetById(Long petId);
@@ -22,7 +38,17 @@ public interface PetService {
 
     List<Pet> getPetsByTags(List<String> tagNames);
 
+    List<Pet> getPetsByAllTags(List<String> tagNames);
+
+    Stream<Pet> streamPetsByStatus(Status[] statuses);
+
+    Stream<Pet> streamPetsByTags(List<String> tagNames, boolean matchAll);
+
     HttpResponse updatePetFormData(Long petId, String name, String status);
 
-    HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file);
+    HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file) throws IOException;
+
+    Path getPetImage(Long petId, String imageId);
+
+    Path getPetThumbnail(Long petId, String imageId, int size);
 }
@@ -1,28 +1,67 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.HttpResponse;
+import com.endava.petstore.model.ImportReport;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.repository.PetRepository;
+import com.endava.petstore.storage.ImageStore;
+import com.endava.petstore.storage.Versioned;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import static com.endava.petstore.constants.Constants.IMAGE_NOT_FOUND;
+import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
+import static com.endava.petstore.constants.Constants.THUMBNAIL_NOT_FOUND;
+
 @Service
 @RequiredArgsConstructor
 public class PetServiceImpl implements PetService {
 
     private final PetRepository petRepository;
+    private final PetImporter petImporter;
+    private final ImageStore imageStore;
+    private final ThumbnailPipeline thumbnailPipeline;
+    private final PetQueryCache petQueryCache;
+    private final EntityCache<Pet> petCache;
 
     @Override
     public List<Pet> getAllPets() {
         return petRepository.getAllPets();
     }
 
+    @Override
+    public List<Pet> getPetsPage(Long afterId, int limit) {
+        return petRepository.getPetsPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<Pet> streamAllPets() {
+        return petRepository.streamAllPets();
+    }
+
     @Override
     public Pet getPetById(Long petId) {
-        return petRepository.getPetById(petId);
+        return petCache.get("getPetById", petId, () -> petRepository.getVersionedPetById(petId)).value();
+    }
+
+    @Override
+    public Versioned<Pet> getVersionedPetById(Long petId) {
+        return petCache.get("getVersionedPetById", petId, () -> petRepository.getVersionedPetById(petId));
+    }
+
+    @Override
+    public long getPetsVersion() {
+        return petRepository.getPetsVersion();
     }
 
     @Override
@@ -30,6 +69,11 @@ public class PetServiceImpl implements PetService {
         return petRepository.savePet(pet);
     }
 
+    @Override
+    public ImportReport importPets(InputStream ndjson) throws IOException {
+        return petImporter.importPets(ndjson);
+    }
+
     @Override
     public Pet updatePet(Pet pet) {
         return petRepository.updatePet(pet);
@@ -42,12 +86,27 @@ public class PetServiceImpl implements PetService {
 
     @Override
     public List<Pet> getPetsByStatus(Status[] statuses) {
-        return petRepository.getPetsByStatus(statuses);
+        return petQueryCache.getPetsByStatus(statuses, () -> petRepository.getPetsByStatus(statuses));
     }
 
     @Override
     public List<Pet> getPetsByTags(List<String> tagNames) {
-        return petRepository.getPetsByTags(tagNames);
+        return petQueryCache.getPetsByTags(tagNames, false, () -> petRepository.getPetsByTags(tagNames));
+    }
+
+    @Override
+    public List<Pet> getPetsByAllTags(List<String> tagNames) {
+        return petQueryCache.getPetsByTags(tagNames, true, () -> petRepository.getPetsByAllTags(tagNames));
+    }
+
+    @Override
+    public Stream<Pet> streamPetsByStatus(Status[] statuses) {
+        return petRepository.streamPetsByStatus(statuses);
+    }
+
+    @Override
+    public Stream<Pet> streamPetsByTags(List<String> tagNames, boolean matchAll) {
+        return petRepository.streamPetsByTags(tagNames, matchAll);
     }
 
     @Override
@@ -55,8 +114,44 @@ public class PetServiceImpl implements PetService {
         return petRepository.updatePetFormData(petId, name, status);
     }
 
+    /**
+     * Checks that the pet exists before streaming the file to the image store. If the pet is deleted meanwhile the stored image stays unreferenced
+     * and is reclaimed by the image store's sweep, since another pet may already share the same content.
+     * Thumbnails are generated in the background; the upload does not wait for them.
+     */
+    @Override
+    public HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file) throws IOException {
+        petRepository.getPetById(petId);
+        String imageId;
+        try(InputStream content = file.getInputStream()) {
+            imageId = imageStore.save(content, file.getContentType());
+        }
+        petRepository.addPetImage(petId, imageId);
+        thumbnailPipeline.submit(imageId);
+        return new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, imageId, file.getSize()));
+    }
+
+    @Override
+    public Path getPetImage(Long petId, String imageId) {
+        Pet pet = petRepository.getPetById(petId);
+        return Optional.ofNullable(pet.getImageIds())
+              .filter(imageIds -> imageIds.contains(imageId))
+              .flatMap(imageIds -> imageStore.find(imageId))
+              .orElseThrow(() -> new ResourceNotFoundException(String.format(IMAGE_NOT_FOUND, imageId, petId)));
+    }
+
+    /**
+     * Returns the stored thumbnail, or requests it again (e.g. after the pipeline shed the image under load) and reports it as not found yet.
+     */
     @Override
-    public HttpResponse uploadPetImage(Long petId, String additionalMetadata, MultipartFile file) {
-        return petRepository.uploadPetImage(petId, additionalMetadata, file);
+    public Path getPetThumbnail(Long petId, String imageId, int size) {
+        getPetImage(petId, imageId);
+        if(!thumbnailPipeline.supports(size)) {
+            throw new ResourceNotFoundException(String.format(THUMBNAIL_NOT_FOUND, size, imageId));
+        }
+        return imageStore.findThumbnail(imageId, size).orElseThrow(() -> {
+            thumbnailPipeline.submit(imageId);
+            return new ResourceNotFoundException(String.format(THUMBNAIL_NOT_FOUND, size, imageId));
+        });
     }
 }
@@ -0,0 +1,201 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.InvalidCredentialsException;
+import com.endava.petstore.model.User;
+import com.endava.petstore.storage.EntityStore;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.endava.petstore.constants.Constants.INVALID_CREDENTIALS;
+
+/**
+ * The sessions opened by {@code /user/login}, keyed by an opaque random token, so a client proves who it is with one hash lookup
+ * instead of sending its password again. A session expires once it has not been used for the idle timeout; every successful validation slides
+ * the expiry forward, which only writes the new deadline and never moves the session around.
+ * <p>
+ * Expired sessions are reaped by a {@link TimingWheel} that a background thread advances once per tick, so each tick only visits the sessions
+ * that were due in it; a visited session that was used meanwhile is put back in the wheel for its new deadline. Validation checks the deadline itself,
+ * so a session is never accepted after it expired even if the reaper has not reached it yet.
+ * Deleting a user, or changing their username or password, revokes all of their sessions.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SessionTable {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final EntityStore<User> userStore;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> tokensByUser = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    @Value("${petstore.sessions.idle-timeout-seconds:1800}")
+    private long idleTimeoutSeconds;
+    @Value("${petstore.sessions.tick-millis:1000}")
+    private long tickMillis;
+
+    private LongSupplier nanoTime = System::nanoTime;
+    private long idleTimeoutNanos;
+    private TimingWheel<String> wheel;
+    private ScheduledExecutorService reaper;
+
+    @PostConstruct
+    public void start() {
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        // one revolution covers the idle timeout, so a session that is not used is reaped on its first visit
+        int slots = (int) Math.max(2, idleTimeoutNanos / tickNanos + 2);
+        wheel = new TimingWheel<>(slots, tickNanos, nanoTime.getAsLong());
+        userStore.addListener((id, previous, current) -> {
+            if(previous != null && (current == null
+                  || !Objects.equals(previous.getUsername(), current.getUsername())
+                  || !Objects.equals(previous.getPassword(), current.getPassword()))) {
+                revokeAll(id);
+            }
+        });
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reaper.scheduleAtFixedRate(this::scheduledReap, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        reaper.shutdownNow();
+    }
+
+    /**
+     * Opens a session for the (already authenticated) user and returns its token. If the user's username or password changed, or the user
+     * was deleted, since they were authenticated, the session is dropped again and the login fails like one with wrong credentials.
+     */
+    public String open(User user) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(user.getId(), nanoTime.getAsLong() + idleTimeoutNanos);
+        sessions.put(token, session);
+        wheel.schedule(token, session.expiresAt);
+        // added inside the compute, so a concurrent remove() cannot drop the set between its creation and this add
+        tokensByUser.compute(user.getId(), (id, tokens) -> {
+            tokens = tokens == null ? ConcurrentHashMap.newKeySet() : tokens;
+            tokens.add(token);
+            return tokens;
+        });
+        // a revokeAll() that ran before the token was added missed it, but the write that triggered it is visible here
+        boolean unchanged = userStore.get(user.getId())
+              .filter(stored -> Objects.equals(stored.getUsername(), user.getUsername()) && Objects.equals(stored.getPassword(), user.getPassword()))
+              .isPresent();
+        if(!unchanged) {
+            remove(token, session);
+            throw new InvalidCredentialsException(INVALID_CREDENTIALS);
+        }
+        return token;
+    }
+
+    /**
+     * Returns the id of the user the token belongs to and extends the session, or empty if the token is unknown, revoked or expired.
+     */
+    public Optional<Long> validate(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if(session == null) {
+            return Optional.empty();
+        }
+        long now = nanoTime.getAsLong();
+        if(session.expiresAt - now <= 0) {
+            remove(token, session);
+            return Optional.empty();
+        }
+        session.expiresAt = now + idleTimeoutNanos;
+        return Optional.of(session.userId);
+    }
+
+    /**
+     * Ends the session and returns whether it was still open. Its entry in the wheel is dropped when the wheel gets to it.
+     */
+    public boolean revoke(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        return session != null && remove(token, session);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes the sessions that are due up to now and returns how many of them had expired.
+     */
+    public int reap() {
+        long now = nanoTime.getAsLong();
+        int[] expired = new int[1];
+        wheel.advance(now, token -> {
+            Session session = sessions.get(token);
+            if(session == null) {
+                return;
+            }
+            long expiresAt = session.expiresAt;
+            if(expiresAt - now <= 0) {
+                if(remove(token, session)) {
+                    expired[0]++;
+                }
+            } else {
+                wheel.schedule(token, expiresAt);
+            }
+        });
+        return expired[0];
+    }
+
+    private void scheduledReap() {
+        try {
+            reap();
+        } catch(RuntimeException e) {
+            log.error("Failed to reap expired sessions", e);
+        }
+    }
+
+    private void revokeAll(Long userId) {
+        Set<String> tokens = tokensByUser.remove(userId);
+        if(tokens != null) {
+            tokens.forEach(sessions::remove);
+        }
+    }
+
+    private boolean remove(String token, Session session) {
+        if(!sessions.remove(token, session)) {
+            return false;
+        }
+        tokensByUser.computeIfPresent(session.userId, (id, tokens) -> {
+            tokens.remove(token);
+            return tokens.isEmpty() ? null : tokens;
+        });
+        return true;
+    }
+
+    private static final class Session {
+
+        private final Long userId;
+        private volatile long expiresAt;
+
+        private Session(Long userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
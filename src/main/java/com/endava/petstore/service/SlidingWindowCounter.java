@@ -0,0 +1,70 @@
+package com.endava.petstore.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free count of the events of a sliding window, kept in a ring of buckets that each cover an equal slice of the window.
+ * A bucket is one long holding the number of its slice (high bits) and the events counted in it (low bits), so starting a bucket
+ * over for a new slice and counting into it are each a single compare-and-set, and a reader never sees a count paired with the wrong slice.
+ * The sum only includes the buckets whose slice is still within the window, so events age out one slice at a time.
+ */
+public class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray buckets;
+    private final long sliceNanos;
+    private final long originNanos;
+
+    public SlidingWindowCounter(int buckets, long windowNanos, long originNanos) {
+        if(buckets < 1 || windowNanos < buckets) {
+            throw new IllegalArgumentException("A sliding window needs at least one bucket and a positive slice");
+        }
+        this.buckets = new AtomicLongArray(buckets);
+        this.sliceNanos = windowNanos / buckets;
+        this.originNanos = originNanos;
+    }
+
+    /**
+     * Counts one event at the given time. A bucket saturates rather than overflowing into its slice number.
+     */
+    public void increment(long nowNanos) {
+        long slice = sliceOf(nowNanos);
+        int index = (int) (slice % buckets.length());
+        while(true) {
+            long current = buckets.get(index);
+            long next;
+            if(current >>> COUNT_BITS < slice) {
+                next = slice << COUNT_BITS | 1;
+            } else if((current & COUNT_MASK) < COUNT_MASK) {
+                // a thread that read the clock earlier may land in a bucket another thread already moved on; it counts there
+                next = current + 1;
+            } else {
+                return;
+            }
+            if(buckets.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the events counted in the window that ends at the given time.
+     */
+    public int sum(long nowNanos) {
+        long slice = sliceOf(nowNanos);
+        int sum = 0;
+        for(int i = 0; i < buckets.length(); i++) {
+            long bucket = buckets.get(i);
+            if(slice - (bucket >>> COUNT_BITS) < buckets.length()) {
+                sum += (int) (bucket & COUNT_MASK);
+            }
+        }
+        return sum;
+    }
+
+    private long sliceOf(long nowNanos) {
+        return Math.max(0, nowNanos - originNanos) / sliceNanos;
+    }
+}
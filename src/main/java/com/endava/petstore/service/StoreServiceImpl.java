@@ -1,10 +1,13 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.repository.StoreRepository;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -13,15 +16,41 @@ import org.springframework.stereotype.Service;
 public class StoreServiceImpl implements StoreService {
 
     private final StoreRepository storeRepository;
+    private final EntityCache<Order> orderCache;
 
     @Override
     public List<Order> getAllOrders() {
         return storeRepository.getAllOrders();
     }
 
+    @Override
+    public List<Order> getOrdersPage(Long afterId, int limit) {
+        return storeRepository.getOrdersPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<Order> streamAllOrders() {
+        return storeRepository.streamAllOrders();
+    }
+
     @Override
     public Order getOrderById(Long orderId) {
-        return storeRepository.getOrderById(orderId);
+        return orderCache.get("getOrderById", orderId, () -> storeRepository.getVersionedOrderById(orderId)).value();
+    }
+
+    @Override
+    public Versioned<Order> getVersionedOrderById(Long orderId) {
+        return orderCache.get("getVersionedOrderById", orderId, () -> storeRepository.getVersionedOrderById(orderId));
+    }
+
+    @Override
+    public long getOrdersVersion() {
+        return storeRepository.getOrdersVersion();
+    }
+
+    @Override
+    public long getInventoryVersion() {
+        return storeRepository.getInventoryVersion();
     }
 
     @Override
@@ -43,4 +72,14 @@ public class StoreServiceImpl implements StoreService {
     public List<Pet> getPetsByOrderStatus(OrderStatus orderStatus) {
         return storeRepository.getPetsByOrderStatus(orderStatus);
     }
+
+    @Override
+    public Stream<Pet> streamPetsByOrderStatus(OrderStatus orderStatus) {
+        return storeRepository.streamPetsByOrderStatus(orderStatus);
+    }
+
+    @Override
+    public InventorySummary getInventorySummary() {
+        return storeRepository.getInventorySummary();
+    }
 }
@@ -0,0 +1,190 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.storage.ImageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates the thumbnails of uploaded images in the background, with the JDK's ImageIO and Java2D only.
+ * Uploads hand their image id to {@link #submit} and return at once; a fixed number of workers take the images from a bounded queue.
+ * When the queue is full the image is not queued (the rejection is counted) rather than holding up the upload, and its thumbnails are
+ * requested again the first time one of them is asked for. Each image is decoded once, subsampled by the reader so that only about
+ * as many pixels as the largest thumbnail needs are held in memory, and then scaled down to every configured size.
+ * <p>
+ * Metrics: {@code petstore.thumbnails.queue.depth}, {@code petstore.thumbnails.wait} (time queued), {@code petstore.thumbnails.processing}
+ * (time to decode, scale and store all sizes), and the {@code petstore.thumbnails.rejected} and {@code petstore.thumbnails.failed} counters.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ThumbnailPipeline {
+
+    private final ImageStore imageStore;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    @Value("${petstore.thumbnails.sizes:64,128,256}")
+    private int[] sizes;
+    @Value("${petstore.thumbnails.workers:2}")
+    private int workers;
+    @Value("${petstore.thumbnails.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private Timer waitTimer;
+    private Timer processingTimer;
+    private Counter rejected;
+    private Counter failed;
+
+    @PostConstruct
+    public void start() {
+        sizes = Arrays.stream(sizes).distinct().sorted().toArray();
+        // decode from memory rather than through temporary cache files
+        ImageIO.setUseCache(false);
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("petstore.thumbnails.queue.depth", queue, BlockingQueue::size)
+              .description("Images waiting for thumbnail generation")
+              .register(meterRegistry);
+        waitTimer = Timer.builder("petstore.thumbnails.wait")
+              .description("Time an image waited in the queue")
+              .register(meterRegistry);
+        processingTimer = Timer.builder("petstore.thumbnails.processing")
+              .description("Time to generate and store all thumbnails of an image")
+              .register(meterRegistry);
+        rejected = Counter.builder("petstore.thumbnails.rejected")
+              .description("Images not queued because the queue was full")
+              .register(meterRegistry);
+        failed = Counter.builder("petstore.thumbnails.failed")
+              .description("Images whose thumbnails could not be generated")
+              .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public boolean supports(int size) {
+        return Arrays.binarySearch(sizes, size) >= 0;
+    }
+
+    /**
+     * Queues the image for thumbnail generation without blocking, and returns false if the queue is full.
+     * An image that is already queued or being processed is not queued twice.
+     */
+    public boolean submit(String imageId) {
+        if(!pending.add(imageId)) {
+            return true;
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> generate(imageId, queuedAt));
+            return true;
+        } catch(RejectedExecutionException e) {
+            pending.remove(imageId);
+            rejected.increment();
+            return false;
+        }
+    }
+
+    private void generate(String imageId, long queuedAt) {
+        long startedAt = System.nanoTime();
+        waitTimer.record(startedAt - queuedAt, TimeUnit.NANOSECONDS);
+        try {
+            Optional<Path> file = imageStore.find(imageId);
+            if(file.isEmpty() || hasAllThumbnails(imageId)) {
+                return;
+            }
+            BufferedImage source = decode(file.get(), sizes[sizes.length - 1]);
+            if(source == null) {
+                failed.increment();
+                log.warn("Image {} is not in a format ImageIO can decode, no thumbnails generated", imageId);
+                return;
+            }
+            for(int size : sizes) {
+                imageStore.saveThumbnail(imageId, size, scale(source, size));
+            }
+        } catch(IOException | RuntimeException e) {
+            failed.increment();
+            log.error("Failed to generate thumbnails of image {}", imageId, e);
+        } finally {
+            pending.remove(imageId);
+            processingTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean hasAllThumbnails(String imageId) {
+        return Arrays.stream(sizes).allMatch(size -> imageStore.findThumbnail(imageId, size).isPresent());
+    }
+
+    private static BufferedImage decode(Path file, int largestSize) throws IOException {
+        try(ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if(readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // keep at least twice the largest size so the final scaling step still has pixels to smooth over
+                int step = Math.max(1, longest / (2 * largestSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage source, int size) {
+        double factor = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * factor));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return thumbnail;
+    }
+}
@@ -0,0 +1,65 @@
+package com.endava.petstore.service;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of slots, each holding the keys due in one tick, so scheduling is O(1) and each tick only visits the keys due in it
+ * instead of scanning everything scheduled. A deadline further away than one revolution is put in a slot that comes up early;
+ * the visitor is expected to check the real deadline of every key it is handed and schedule the key again when it is not due yet.
+ * Likewise a key scheduled into the slot that is being visited may be left for the next revolution, so deadlines are observed late, never early.
+ */
+public class TimingWheel<K> {
+
+    private final Set<K>[] slots;
+    private final long tickNanos;
+    private final long origin;
+    private volatile long processedTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int slots, long tickNanos, long originNanos) {
+        if(slots < 2 || tickNanos <= 0) {
+            throw new IllegalArgumentException("A timing wheel needs at least two slots and a positive tick");
+        }
+        this.slots = new Set[slots];
+        for(int i = 0; i < slots; i++) {
+            this.slots[i] = ConcurrentHashMap.newKeySet();
+        }
+        this.tickNanos = tickNanos;
+        this.origin = originNanos;
+    }
+
+    /**
+     * Schedules the key for the tick of the given deadline, or for the next tick to be visited if that one has passed already.
+     * A deadline a revolution or more away is scheduled for the last tick of the current revolution, never into the slot being visited.
+     */
+    public void schedule(K key, long deadlineNanos) {
+        long processed = processedTick;
+        long tick = Math.min(Math.max(tickOf(deadlineNanos), processed + 1), processed + slots.length - 1);
+        slots[(int) Math.floorMod(tick, (long) slots.length)].add(key);
+    }
+
+    /**
+     * Hands every key of the ticks up to the given time, which have not been visited yet, to the visitor and removes it from the wheel.
+     */
+    public synchronized void advance(long nowNanos, Consumer<K> visitor) {
+        long target = tickOf(nowNanos);
+        // after a long pause one revolution visits every slot; earlier ticks would only revisit the same slots
+        long tick = Math.max(processedTick + 1, target - slots.length + 1);
+        for(; tick <= target; tick++) {
+            processedTick = tick;
+            Iterator<K> due = slots[(int) Math.floorMod(tick, (long) slots.length)].iterator();
+            while(due.hasNext()) {
+                K key = due.next();
+                due.remove();
+                visitor.accept(key);
+            }
+        }
+    }
+
+    private long tickOf(long timeNanos) {
+        return Math.floorDiv(timeNanos - origin, tickNanos);
+    }
+}
@@ -0,0 +1,165 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.model.BatchError;
+import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
+import com.endava.petstore.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static com.endava.petstore.constants.Constants.DUPLICATE_BATCH_USER_ID;
+import static com.endava.petstore.constants.Constants.INVALID_BATCH_USER;
+import static com.endava.petstore.constants.Constants.USERNAME_ALREADY_EXISTS;
+
+/**
+ * Stores the users of a createWithArray/createWithList request as one batch, reporting each rejected element instead of failing the whole request.
+ * Bean validation, dominated by the password and phone patterns, runs on a worker pool in slices of the batch; the elements that pass are then
+ * checked in request order for ids and usernames repeated within the batch (the first occurrence wins), their passwords are hashed
+ * (each worker waits for one hash at a time, so a batch never holds more than its workers' share of the {@link PasswordHasher} queue;
+ * an element whose hash is turned away is reported like any other rejected element) and they are handed to the repository in one call.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserBatchSaver {
+
+    private final Validator validator;
+    private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+
+    @Value("${petstore.user-batch.chunk-size:500}")
+    private int chunkSize;
+    @Value("${petstore.user-batch.parallelism:0}")
+    private int parallelism;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "user-batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public UserBatchReport saveUsers(List<User> users) {
+        String[] errors = validate(users);
+        Map<Long, Integer> positions = new HashMap<>();
+        Map<String, Integer> usernames = new HashMap<>();
+        List<Integer> accepted = new ArrayList<>();
+        for(int i = 0; i < users.size(); i++) {
+            if(errors[i] != null) {
+                continue;
+            }
+            User user = users.get(i);
+            if(positions.containsKey(user.getId())) {
+                errors[i] = String.format(DUPLICATE_BATCH_USER_ID, user.getId());
+            } else if(usernames.putIfAbsent(user.getUsername(), i) != null) {
+                errors[i] = String.format(USERNAME_ALREADY_EXISTS, user.getUsername());
+            } else {
+                positions.put(user.getId(), i);
+                accepted.add(i);
+            }
+        }
+        User[] stored = new User[users.size()];
+        if(!accepted.isEmpty()) {
+            hashPasswords(users, accepted, stored, errors);
+            List<User> batch = new ArrayList<>(accepted.size());
+            accepted.stream().filter(position -> errors[position] == null).forEach(position -> batch.add(stored[position]));
+            Set<Long> taken = userRepository.saveUsers(batch);
+            for(Long id : taken) {
+                int position = positions.get(id);
+                errors[position] = String.format(USERNAME_ALREADY_EXISTS, users.get(position).getUsername());
+            }
+        }
+        return report(stored, errors);
+    }
+
+    private String[] validate(List<User> users) {
+        String[] errors = new String[users.size()];
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for(int from = 0; from < users.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, users.size());
+            slices.add(CompletableFuture.runAsync(() -> validate(users, errors, start, end), executor));
+        }
+        slices.forEach(CompletableFuture::join);
+        return errors;
+    }
+
+    private void hashPasswords(List<User> users, List<Integer> accepted, User[] stored, String[] errors) {
+        List<CompletableFuture<Void>> hashes = new ArrayList<>(accepted.size());
+        for(int position : accepted) {
+            User user = users.get(position);
+            hashes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    stored[position] = user.toBuilder().password(passwordHasher.hash(user.getPassword())).build();
+                } catch(RuntimeException e) {
+                    errors[position] = e.getMessage();
+                }
+            }, executor));
+        }
+        hashes.forEach(CompletableFuture::join);
+    }
+
+    private void validate(List<User> users, String[] errors, int from, int to) {
+        for(int i = from; i < to; i++) {
+            User user = users.get(i);
+            if(user == null) {
+                errors[i] = INVALID_BATCH_USER;
+                continue;
+            }
+            Set<ConstraintViolation<User>> violations = validator.validate(user);
+            if(!violations.isEmpty()) {
+                errors[i] = describe(violations);
+            }
+        }
+    }
+
+    private static UserBatchReport report(User[] stored, String[] errors) {
+        List<User> created = new ArrayList<>();
+        List<BatchError> rejected = new ArrayList<>();
+        for(int i = 0; i < errors.length; i++) {
+            if(errors[i] == null) {
+                created.add(stored[i]);
+            } else {
+                rejected.add(new BatchError(i, errors[i]));
+            }
+        }
+        return UserBatchReport.builder()
+              .received(stored.length)
+              .created(created)
+              .rejected(rejected.size())
+              .errors(rejected)
+              .build();
+    }
+
+    private static String describe(Set<ConstraintViolation<User>> violations) {
+        return violations.stream()
+              .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+              .sorted()
+              .collect(Collectors.joining("; "));
+    }
+}
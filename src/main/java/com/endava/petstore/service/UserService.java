@@ -1,23 +1,34 @@
 package com.endava.petstore.service;
 
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface UserService {
 
     List<User> getAllUsers();
 
+    List<User> getUsersPage(Long afterId, int limit);
+
+    Stream<User> streamAllUsers();
+
     User getUserById(Long userId);
 
+    Versioned<User> getVersionedUserById(Long userId);
+
+    long getUsersVersion();
+
     User saveUser(User user);
 
     User updateUser(User user);
 
     void deleteUserById(Long userId);
 
-    List<User> saveUsersArray(User[] users);
+    UserBatchReport saveUsersArray(User[] users);
 
-    List<User> saveUsersList(List<User> users);
+    UserBatchReport saveUsersList(List<User> users);
 
     User getUserByUsername(String username);
 
@@ -25,7 +36,9 @@ public interface UserService {
 
     void deleteUserByUsername(String username);
 
-    String login(String username, String password);
+    String login(String username, String password, String clientAddress);
+
+    void logout(String token);
 
-    String logout();
+    User getSessionUser(String token);
 }
@@ -1,35 +1,70 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.InvalidCredentialsException;
+import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.exception.UnauthorizedException;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.repository.UserRepository;
+import com.endava.petstore.storage.Versioned;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import static com.endava.petstore.constants.Constants.INVALID_CREDENTIALS;
+import static com.endava.petstore.constants.Constants.INVALID_SESSION;
+
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final UserBatchSaver userBatchSaver;
+    private final EntityCache<User> userCache;
+    private final SessionTable sessionTable;
+    private final PasswordHasher passwordHasher;
+    private final LoginThrottle loginThrottle;
 
     @Override
     public List<User> getAllUsers() {
         return userRepository.getAllUsers();
     }
 
+    @Override
+    public List<User> getUsersPage(Long afterId, int limit) {
+        return userRepository.getUsersPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return userRepository.streamAllUsers();
+    }
+
     @Override
     public User getUserById(Long userId) {
-        return userRepository.getUserById(userId);
+        return userCache.get("getUserById", userId, () -> userRepository.getVersionedUserById(userId)).value();
+    }
+
+    @Override
+    public Versioned<User> getVersionedUserById(Long userId) {
+        return userCache.get("getVersionedUserById", userId, () -> userRepository.getVersionedUserById(userId));
+    }
+
+    @Override
+    public long getUsersVersion() {
+        return userRepository.getUsersVersion();
     }
 
     @Override
     public User saveUser(User user) {
-        return userRepository.saveUser(user);
+        return userRepository.saveUser(withHashedPassword(user));
     }
 
     @Override
     public User updateUser(User user) {
-        return userRepository.updateUser(user);
+        return userRepository.updateUser(withHashedPassword(user, userRepository.getUserById(user.getId())));
     }
 
     @Override
@@ -38,13 +73,13 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<User> saveUsersArray(User[] users) {
-        return userRepository.saveUsersArray(users);
+    public UserBatchReport saveUsersArray(User[] users) {
+        return userBatchSaver.saveUsers(Arrays.asList(users));
     }
 
     @Override
-    public List<User> saveUsersList(List<User> users) {
-        return userRepository.saveUsersList(users);
+    public UserBatchReport saveUsersList(List<User> users) {
+        return userBatchSaver.saveUsers(users);
     }
 
     @Override
@@ -54,7 +89,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User updateUserByUsername(User user, String username) {
-        return userRepository.updateUserByUsername(user, username);
+        return userRepository.updateUserByUsername(withHashedPassword(user, userRepository.getUserByUsername(username)), username);
     }
 
     @Override
@@ -62,13 +97,49 @@ public class UserServiceImpl implements UserService {
         userRepository.deleteUserByUsername(username);
     }
 
+    /**
+     * Checks the credentials once and opens a session, whose token then stands in for them.
+     * Usernames and client addresses with too many recent failures are turned away before the user is looked up.
+     * An unknown username and a wrong password fail alike, with a message that repeats neither, and both pay for a password verification.
+     */
+    @Override
+    public String login(String username, String password, String clientAddress) {
+        loginThrottle.checkAllowed(username, clientAddress);
+        User user;
+        try {
+            user = userRepository.getUserByUsername(username);
+        } catch(ResourceNotFoundException e) {
+            passwordHasher.verify(username, password, passwordHasher.dummyHash());
+            loginThrottle.recordFailure(username, clientAddress);
+            throw new InvalidCredentialsException(INVALID_CREDENTIALS);
+        }
+        if(!passwordHasher.verify(username, password, user.getPassword())) {
+            loginThrottle.recordFailure(username, clientAddress);
+            throw new InvalidCredentialsException(INVALID_CREDENTIALS);
+        }
+        loginThrottle.recordSuccess(username);
+        return sessionTable.open(user);
+    }
+
     @Override
-    public String login(String username, String password) {
-        return userRepository.login(username, password);
+    public void logout(String token) {
+        if(!sessionTable.revoke(token)) {
+            throw new UnauthorizedException(INVALID_SESSION);
+        }
     }
 
     @Override
-    public String logout() {
-        return userRepository.logout();
+    public User getSessionUser(String token) {
+        return sessionTable.validate(token)
+              .map(this::getUserById)
+              .orElseThrow(() -> new UnauthorizedException(INVALID_SESSION));
+    }
+
+    private User withHashedPassword(User user) {
+        return user.toBuilder().password(passwordHasher.hash(user.getPassword())).build();
+    }
+
+    private User withHashedPassword(User user, User current) {
+        return user.toBuilder().password(passwordHasher.hashIfChanged(current.getUsername(), user.getPassword(), current.getPassword())).build();
     }
 }
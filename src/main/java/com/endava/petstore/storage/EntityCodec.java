@@ -0,0 +1,17 @@
+package com.endava.petstore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary form of an entity, used by the write-ahead log.
+ * Implementations must read back exactly what they wrote, field by field, so the format stays independent of Java serialization and JSON.
+ * Any change to what a codec writes must raise {@link WriteAheadLog#FORMAT_VERSION}, so files in the old layout are refused instead of misread.
+ */
+public interface EntityCodec<T> {
+
+    void write(DataOutput out, T entity) throws IOException;
+
+    T read(DataInput in) throws IOException;
+}
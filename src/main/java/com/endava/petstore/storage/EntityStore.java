@@ -0,0 +1,275 @@
+package com.endava.petstore.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe, id-keyed storage shared by the in-memory repositories.
+ * Reads are lock-free and go straight to a {@link LongHashMap}, so every value returned was fully published by the writer that stored it.
+ * Writes are serialized per id through a fixed array of lock stripes, which makes read-modify-write sequences such as
+ * {@link #update(Long, UnaryOperator)} atomic without a global lock: writers to ids in different stripes never contend.
+ * Registered {@link StoreListener}s are notified of each write under the same stripe, which keeps secondary indexes in step with the data.
+ * Values should be treated as immutable once stored: updates replace the stored instance so listeners can compare old and new state.
+ * Two counters bracket every write (started before the entry changes, completed after), which lets {@link #snapshot()} validate a lock-free
+ * traversal as a point-in-time view and reuse it until the next write.
+ * Each value is stored together with the number its write drew from the first counter, which serves as the value's version
+ * (see {@link #getVersioned(Long)}); the counter itself serves as the version of the whole store (see {@link #version()}).
+ */
+public class EntityStore<T> {
+
+    public static final int DEFAULT_STRIPES = 64;
+    private static final int SNAPSHOT_ATTEMPTS = 4;
+
+    private final List<StoreListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private final LongHashMap<Versioned<T>> entries;
+    private final ReentrantLock[] locks;
+    private final int mask;
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicLong writesCompleted = new AtomicLong();
+    private volatile Snapshot<T> snapshot;
+
+    public EntityStore() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public EntityStore(int stripes) {
+        if(stripes <= 0) {
+            throw new IllegalArgumentException("Number of lock stripes must be positive");
+        }
+        int size = Integer.highestOneBit(stripes - 1) << 1;
+        locks = new ReentrantLock[Math.max(size, 1)];
+        for(int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        mask = locks.length - 1;
+        entries = new LongHashMap<>(locks.length);
+    }
+
+    public void addListener(StoreListener<T> listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    public Optional<T> get(Long id) {
+        return getVersioned(id).map(Versioned::value);
+    }
+
+    /**
+     * Returns the value stored under the given id together with its version, read atomically with it.
+     */
+    public Optional<Versioned<T>> getVersioned(Long id) {
+        return Optional.ofNullable(entries.get(Objects.requireNonNull(id)));
+    }
+
+    /**
+     * Returns the version of the whole store, which increases with every write, so any change to the stored values changes it.
+     */
+    public long version() {
+        return writesStarted.get();
+    }
+
+    /**
+     * Returns the stored values in ascending id order.
+     */
+    public List<T> values() {
+        long[] ids = entries.keys();
+        List<T> values = new ArrayList<>(ids.length);
+        for(long id : ids) {
+            Versioned<T> entry = entries.get(id);
+            if(entry != null) {
+                values.add(entry.value());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns an immutable, consistent view of all values in ascending id order, as they were at a single point in time.
+     * The view is cached and handed out again until the next write, so repeated reads of an unchanged store cost nothing.
+     * Otherwise the values are collected without locking and the result is kept only if no write started or was in flight meanwhile;
+     * after a few failed attempts under heavy write traffic, all stripes are taken briefly so the reader cannot starve.
+     */
+    public List<T> snapshot() {
+        Snapshot<T> cached = snapshot;
+        if(cached != null && cached.version() == writesStarted.get()) {
+            return cached.values();
+        }
+        for(int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            long completed = writesCompleted.get();
+            long started = writesStarted.get();
+            if(started != completed) {
+                Thread.onSpinWait();
+                continue;
+            }
+            List<T> values = values();
+            if(writesStarted.get() == started) {
+                return publish(started, values);
+            }
+        }
+        for(ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        try {
+            return publish(writesStarted.get(), values());
+        } finally {
+            for(ReentrantLock lock : locks) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private List<T> publish(long version, List<T> values) {
+        Snapshot<T> fresh = new Snapshot<>(version, Collections.unmodifiableList(values));
+        snapshot = fresh;
+        return fresh.values();
+    }
+
+    /**
+     * Visits every entry without copying the store. The traversal is weakly consistent: it never blocks writers,
+     * and a value written concurrently may or may not be visited, but every visited value is one that was stored under its id.
+     */
+    public void forEach(BiConsumer<Long, T> action) {
+        entries.forEach((id, entry) -> action.accept(id, entry.value()));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public T put(Long id, T value) {
+        Objects.requireNonNull(value);
+        return withLock(id, () -> {
+            T previous = valueOf(entries.put(id, new Versioned<>(value, writesStarted.incrementAndGet())));
+            writesCompleted.incrementAndGet();
+            notifyListeners(id, previous, value);
+            return value;
+        });
+    }
+
+    /**
+     * Stores a batch of values. The ids are grouped by stripe and each stripe is taken once for its whole group,
+     * so listeners such as the write-ahead log see one lock hold (and one durability wait) per stripe rather than per entity.
+     */
+    public void putAll(Map<Long, T> values) {
+        putAll(values, value -> true);
+    }
+
+    /**
+     * Stores the values of a batch that pass the admission check and returns the ids of those that did not.
+     * The check runs under the id's stripe right before the write, so it is atomic with it in the same way a check inside {@link #withLock(Long, Supplier)} is.
+     */
+    public Set<Long> putAll(Map<Long, T> values, Predicate<T> admit) {
+        Map<ReentrantLock, List<Map.Entry<Long, T>>> stripes = new IdentityHashMap<>();
+        for(Map.Entry<Long, T> entry : values.entrySet()) {
+            Objects.requireNonNull(entry.getValue());
+            stripes.computeIfAbsent(lockFor(Objects.requireNonNull(entry.getKey())), lock -> new ArrayList<>()).add(entry);
+        }
+        Set<Long> rejected = new HashSet<>();
+        for(List<Map.Entry<Long, T>> group : stripes.values()) {
+            withLock(group.get(0).getKey(), () -> {
+                for(Map.Entry<Long, T> entry : group) {
+                    if(!admit.test(entry.getValue())) {
+                        rejected.add(entry.getKey());
+                        continue;
+                    }
+                    T previous = valueOf(entries.put(entry.getKey(), new Versioned<>(entry.getValue(), writesStarted.incrementAndGet())));
+                    writesCompleted.incrementAndGet();
+                    notifyListeners(entry.getKey(), previous, entry.getValue());
+                }
+                return null;
+            });
+        }
+        return rejected;
+    }
+
+    /**
+     * Atomically replaces the value stored under the given id with the result of the updater.
+     * The updater runs while the id's stripe is held, so concurrent updates of the same id are applied one after another and none is lost.
+     */
+    public Optional<T> update(Long id, UnaryOperator<T> updater) {
+        return withLock(id, () -> {
+            T current = valueOf(entries.get(id));
+            if(current == null) {
+                return Optional.empty();
+            }
+            T updated = Objects.requireNonNull(updater.apply(current));
+            entries.put(id, new Versioned<>(updated, writesStarted.incrementAndGet()));
+            writesCompleted.incrementAndGet();
+            notifyListeners(id, current, updated);
+            return Optional.of(updated);
+        });
+    }
+
+    public Optional<T> remove(Long id) {
+        return withLock(id, () -> {
+            writesStarted.incrementAndGet();
+            T previous = valueOf(entries.remove(id));
+            writesCompleted.incrementAndGet();
+            if(previous != null) {
+                notifyListeners(id, previous, null);
+            }
+            return Optional.ofNullable(previous);
+        });
+    }
+
+    /**
+     * Removes every entry one id at a time, so listeners observe each removal and secondary indexes end up empty as well.
+     */
+    public void clear() {
+        for(long id : entries.keys()) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Runs the action while holding the stripe that guards the given id.
+     * Repositories use it to keep compound checks (e.g. "exists, then write") atomic with respect to other writers of the same id.
+     */
+    public <R> R withLock(Long id, Supplier<R> action) {
+        ReentrantLock lock = lockFor(Objects.requireNonNull(id));
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+            if(!lock.isHeldByCurrentThread()) {
+                listeners.forEach(StoreListener::afterRelease);
+            }
+        }
+    }
+
+    private void notifyListeners(Long id, T previous, T current) {
+        for(StoreListener<T> listener : listeners) {
+            listener.onChange(id, previous, current);
+        }
+    }
+
+    private static <T> T valueOf(Versioned<T> entry) {
+        return entry == null ? null : entry.value();
+    }
+
+    private ReentrantLock lockFor(Long id) {
+        int hash = Long.hashCode(id) * 0x9E3779B9;
+        return locks[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private record Snapshot<T>(long version, List<T> values) {
+    }
+}
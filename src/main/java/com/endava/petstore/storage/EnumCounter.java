@@ -0,0 +1,52 @@
+package com.endava.petstore.storage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Keeps a running count of entities per value of an enum-valued attribute.
+ * Counts are {@link LongAdder}s, so writers on different threads update separate cells instead of contending on one counter,
+ * and reading a summary costs one sum per enum constant regardless of how many entities are stored.
+ */
+public class EnumCounter<T, E extends Enum<E>> implements StoreListener<T> {
+
+    private final Class<E> type;
+    private final Map<E, LongAdder> counters;
+    private final Function<T, E> attribute;
+
+    public EnumCounter(Class<E> type, Function<T, E> attribute) {
+        this.type = type;
+        this.attribute = attribute;
+        counters = new EnumMap<>(type);
+        for(E value : type.getEnumConstants()) {
+            counters.put(value, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        E oldValue = previous == null ? null : attribute.apply(previous);
+        E newValue = current == null ? null : attribute.apply(current);
+        if(oldValue == newValue) {
+            return;
+        }
+        if(oldValue != null) {
+            counters.get(oldValue).decrement();
+        }
+        if(newValue != null) {
+            counters.get(newValue).increment();
+        }
+    }
+
+    public long count(E value) {
+        return counters.get(value).sum();
+    }
+
+    public Map<E, Long> counts() {
+        Map<E, Long> result = new EnumMap<>(type);
+        counters.forEach((value, counter) -> result.put(value, counter.sum()));
+        return result;
+    }
+}
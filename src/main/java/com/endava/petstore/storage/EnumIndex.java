@@ -0,0 +1,56 @@
+package com.endava.petstore.storage;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index from an enum-valued attribute to the ids of the entities currently holding that value.
+ * The buckets are created up front, so lookups never allocate and never touch entities with a different value.
+ */
+public class EnumIndex<T, E extends Enum<E>> implements StoreListener<T> {
+
+    private final Map<E, Set<Long>> buckets;
+    private final Function<T, E> attribute;
+
+    public EnumIndex(Class<E> type, Function<T, E> attribute) {
+        this.attribute = attribute;
+        buckets = new EnumMap<>(type);
+        for(E value : type.getEnumConstants()) {
+            buckets.put(value, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        E oldValue = previous == null ? null : attribute.apply(previous);
+        E newValue = current == null ? null : attribute.apply(current);
+        if(oldValue == newValue) {
+            return;
+        }
+        if(oldValue != null) {
+            buckets.get(oldValue).remove(id);
+        }
+        if(newValue != null) {
+            buckets.get(newValue).add(id);
+        }
+    }
+
+    /**
+     * Returns a live, unmodifiable view of the ids indexed under the given value.
+     */
+    public Set<Long> getIds(E value) {
+        return Collections.unmodifiableSet(buckets.get(Objects.requireNonNull(value)));
+    }
+
+    /**
+     * Tells whether the entity still holds the given value; callers re-check after resolving ids because a write may land in between.
+     */
+    public boolean matches(T entity, E value) {
+        return entity != null && attribute.apply(entity) == value;
+    }
+}
@@ -0,0 +1,276 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Pet;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps uploaded pet images as content-addressed blobs in one directory, so an image uploaded for many pets is stored once.
+ * An upload is copied from its input stream to a temporary file through {@link FileChannel#transferFrom}, one bounded slice at a time,
+ * and hashed with SHA-256 as it is read; the finished file is then renamed to its hash, or dropped if a blob with that hash already exists.
+ * Memory per upload stays constant however large the image is, and a failed upload never leaves a partial blob behind.
+ * <p>
+ * An image id is the blob hash plus an extension derived from the content type, which is all that is needed to serve the file back.
+ * Blobs are reference-counted from the {@code imageIds} of the stored pets by listening to the pet store, so every way a pet changes or goes away
+ * (including write-ahead log replay) keeps the counts right. A background sweep deletes blobs that no pet references once they are older than
+ * a grace period, which covers the window between storing an upload and recording it on the pet. Storing and sweeping the same blob are serialized,
+ * and storing a duplicate refreshes the blob's age, so a blob is never swept from under an upload that is about to reference it.
+ * <p>
+ * Thumbnails are kept as PNG files per blob and size in a subdirectory, written through a temporary file like uploads, and swept with their blob.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageStore {
+
+    private static final long TRANSFER_SLICE = 64 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String THUMBNAIL_DIRECTORY = "thumbnails";
+    private static final String THUMBNAIL_FORMAT = "png";
+    private static final Pattern IMAGE_ID = Pattern.compile("([0-9a-f]{64})\\.[a-z]{3,4}");
+    private static final Pattern BLOB = Pattern.compile("[0-9a-f]{64}");
+    private static final Map<String, String> EXTENSIONS = Map.of(
+          "image/jpeg", "jpg",
+          "image/png", "png",
+          "image/gif", "gif",
+          "image/webp", "webp",
+          "image/bmp", "bmp");
+    private static final String DEFAULT_EXTENSION = "bin";
+    private static final int BLOB_LOCKS = 64;
+
+    private final EntityStore<Pet> petStore;
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private final Object[] blobLocks = Stream.generate(Object::new).limit(BLOB_LOCKS).toArray();
+
+    @Value("${petstore.images.directory:images}")
+    private String directory;
+    @Value("${petstore.images.sweep-interval-seconds:600}")
+    private long sweepIntervalSeconds;
+    @Value("${petstore.images.orphan-grace-seconds:3600}")
+    private long orphanGraceSeconds;
+
+    private Path root;
+    private Path thumbnails;
+    private ScheduledExecutorService sweeper;
+
+    @PostConstruct
+    public void open() throws IOException {
+        root = Paths.get(directory);
+        thumbnails = root.resolve(THUMBNAIL_DIRECTORY);
+        Files.createDirectories(thumbnails);
+        for(Path folder : List.of(root, thumbnails)) {
+            try(DirectoryStream<Path> leftovers = Files.newDirectoryStream(folder, "*" + TEMP_SUFFIX)) {
+                for(Path leftover : leftovers) {
+                    Files.deleteIfExists(leftover);
+                    log.info("Deleted incomplete image upload {}", leftover);
+                }
+            }
+        }
+        petStore.addListener((id, previous, current) -> {
+            adjustReferences(current, 1);
+            adjustReferences(previous, -1);
+        });
+        if(sweepIntervalSeconds > 0) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "image-sweep");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::scheduledSweep, sweepIntervalSeconds, sweepIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if(sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams the content into the store and returns the image id. Content that is already stored is not written a second time.
+     */
+    public String save(InputStream content, String contentType) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = root.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try(ReadableByteChannel source = Channels.newChannel(new DigestInputStream(content, digest));
+            FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long transferred;
+            while((transferred = target.transferFrom(source, position, TRANSFER_SLICE)) > 0) {
+                position += transferred;
+            }
+        } catch(IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        String hash = HexFormat.of().formatHex(digest.digest());
+        Path blob = root.resolve(hash);
+        synchronized(lockFor(hash)) {
+            if(Files.exists(blob)) {
+                Files.delete(temp);
+                Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+            } else {
+                Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        return hash + "." + EXTENSIONS.getOrDefault(contentType, DEFAULT_EXTENSION);
+    }
+
+    /**
+     * Returns the file holding the image, or empty if the id is malformed or unknown.
+     */
+    public Optional<Path> find(String imageId) {
+        return blobHash(imageId)
+              .map(root::resolve)
+              .filter(Files::isRegularFile);
+    }
+
+    /**
+     * Returns the thumbnail of the image with the given longest edge, or empty if it has not been generated (yet).
+     */
+    public Optional<Path> findThumbnail(String imageId, int size) {
+        return blobHash(imageId)
+              .map(hash -> thumbnailFile(hash, size))
+              .filter(Files::isRegularFile);
+    }
+
+    /**
+     * Encodes the thumbnail as PNG and stores it for the image, replacing any previous thumbnail of that size.
+     */
+    public void saveThumbnail(String imageId, int size, RenderedImage thumbnail) throws IOException {
+        String hash = blobHash(imageId).orElseThrow(() -> new IllegalArgumentException("Malformed image id " + imageId));
+        Path temp = thumbnails.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            if(!ImageIO.write(thumbnail, THUMBNAIL_FORMAT, temp.toFile())) {
+                throw new IOException("No " + THUMBNAIL_FORMAT + " encoder available");
+            }
+            Files.move(temp, thumbnailFile(hash, size), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns how many image ids of stored pets point at the blob behind the given image id.
+     */
+    public int referenceCount(String imageId) {
+        return blobHash(imageId).map(hash -> references.getOrDefault(hash, 0)).orElse(0);
+    }
+
+    /**
+     * Deletes every blob that no pet references and that is older than the grace period, and returns how many were deleted.
+     */
+    public int sweep() throws IOException {
+        Instant cutoff = Instant.now().minus(Duration.ofSeconds(orphanGraceSeconds));
+        int deleted = 0;
+        try(DirectoryStream<Path> blobs = Files.newDirectoryStream(root, path -> BLOB.matcher(path.getFileName().toString()).matches())) {
+            for(Path blob : blobs) {
+                String hash = blob.getFileName().toString();
+                synchronized(lockFor(hash)) {
+                    try {
+                        if(!references.containsKey(hash) && Files.getLastModifiedTime(blob).toInstant().isBefore(cutoff)) {
+                            Files.delete(blob);
+                            deleteThumbnails(hash);
+                            deleted++;
+                        }
+                    } catch(NoSuchFileException e) {
+                        // deleted concurrently, nothing left to reclaim
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private void scheduledSweep() {
+        try {
+            int deleted = sweep();
+            if(deleted > 0) {
+                log.info("Deleted {} unreferenced images from {}", deleted, root);
+            }
+        } catch(IOException | RuntimeException e) {
+            log.error("Failed to sweep unreferenced images from {}", root, e);
+        }
+    }
+
+    private void deleteThumbnails(String hash) throws IOException {
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(thumbnails, hash + "-*." + THUMBNAIL_FORMAT)) {
+            for(Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path thumbnailFile(String hash, int size) {
+        return thumbnails.resolve(hash + "-" + size + "." + THUMBNAIL_FORMAT);
+    }
+
+    private void adjustReferences(Pet pet, int delta) {
+        List<String> imageIds = pet == null ? null : pet.getImageIds();
+        if(imageIds == null) {
+            return;
+        }
+        for(String imageId : imageIds) {
+            blobHash(imageId).ifPresent(hash -> references.compute(hash, (key, count) -> {
+                int updated = (count == null ? 0 : count) + delta;
+                return updated <= 0 ? null : updated;
+            }));
+        }
+    }
+
+    private Object lockFor(String hash) {
+        return blobLocks[(hash.hashCode() & Integer.MAX_VALUE) % blobLocks.length];
+    }
+
+    private static Optional<String> blobHash(String imageId) {
+        if(imageId == null) {
+            return Optional.empty();
+        }
+        var matcher = IMAGE_ID.matcher(imageId);
+        return matcher.matches() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.endava.petstore.storage;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index from the keys an entity carries (e.g. its tag names) to the ids of the entities carrying them.
+ * On every write only the keys that were added or dropped are touched, and empty buckets are released so the index never outgrows the live key set.
+ */
+public class InvertedIndex<T, K> implements StoreListener<T> {
+
+    private final Map<K, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private final Function<T, Collection<K>> keys;
+
+    public InvertedIndex(Function<T, Collection<K>> keys) {
+        this.keys = keys;
+    }
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        Set<K> oldKeys = keysOf(previous);
+        Set<K> newKeys = keysOf(current);
+        for(K key : oldKeys) {
+            if(!newKeys.contains(key)) {
+                buckets.computeIfPresent(key, (k, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        for(K key : newKeys) {
+            if(!oldKeys.contains(key)) {
+                buckets.compute(key, (k, ids) -> {
+                    Set<Long> bucket = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                    bucket.add(id);
+                    return bucket;
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the ids indexed under at least one of the given keys, in the order the keys were requested.
+     */
+    public Set<Long> getIdsMatchingAny(List<K> requestedKeys) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for(K key : new LinkedHashSet<>(requestedKeys)) {
+            ids.addAll(bucket(key));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids indexed under every one of the given keys.
+     * The smallest bucket drives the intersection, so the cost is bounded by the rarest requested key.
+     */
+    public Set<Long> getIdsMatchingAll(List<K> requestedKeys) {
+        List<Set<Long>> requestedBuckets = new LinkedHashSet<>(requestedKeys).stream()
+              .map(this::bucket)
+              .sorted(Comparator.comparingInt(Set::size))
+              .toList();
+        Set<Long> ids = new LinkedHashSet<>();
+        if(requestedBuckets.isEmpty()) {
+            return ids;
+        }
+        for(Long id : requestedBuckets.get(0)) {
+            if(requestedBuckets.stream().skip(1).allMatch(bucket -> bucket.contains(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the keys the entity currently carries; callers use it to re-check resolved entities against concurrent writes.
+     */
+    public Set<K> keysOf(T entity) {
+        if(entity == null) {
+            return Set.of();
+        }
+        Collection<K> entityKeys = keys.apply(entity);
+        if(entityKeys == null) {
+            return Set.of();
+        }
+        Set<K> result = new HashSet<>();
+        entityKeys.stream().filter(Objects::nonNull).forEach(result::add);
+        return result;
+    }
+
+    private Set<Long> bucket(K key) {
+        return key == null ? Set.of() : buckets.getOrDefault(key, Set.of());
+    }
+}
@@ -0,0 +1,234 @@
+package com.endava.petstore.storage;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Open-addressing hash table keyed by primitive {@code long}s, used as the backing map of {@link EntityStore}.
+ * Keys live in a {@code long[]} next to a parallel value array, so an entry costs two array slots instead of a {@code HashMap.Node} plus a boxed {@code Long}.
+ * The table is split into independently locked segments. Writers synchronize on their segment, while readers never lock:
+ * a slot's key is written before its value is published with release semantics, and readers load the value with acquire semantics before looking at the key.
+ * A removed entry leaves a tombstone that keeps its key, so a slot never changes key while readers may be probing it; tombstones are purged when the segment is rehashed.
+ */
+public class LongHashMap<V> {
+
+    private static final Object TOMBSTONE = new Object();
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final int MIN_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public LongHashMap(int segments) {
+        if(segments <= 0) {
+            throw new IllegalArgumentException("Number of segments must be positive");
+        }
+        int size = Math.max(Integer.highestOneBit(segments - 1) << 1, 1);
+        this.segments = new Segment[size];
+        for(int i = 0; i < size; i++) {
+            this.segments[i] = new Segment();
+        }
+        segmentMask = size - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long hash = mix(key);
+        Table table = segmentFor(hash).table;
+        int slot = (int) hash & table.mask;
+        while(true) {
+            Object value = SLOTS.getAcquire(table.values, slot);
+            if(value == null) {
+                return null;
+            }
+            if(table.keys[slot] == key) {
+                return value == TOMBSTONE ? null : (V) value;
+            }
+            slot = (slot + 1) & table.mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the key to the value and returns the previous value, or {@code null} if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Objects.requireNonNull(value);
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        synchronized(segment) {
+            if(segment.used >= segment.table.threshold) {
+                segment.rehash();
+            }
+            Table table = segment.table;
+            int slot = (int) hash & table.mask;
+            while(true) {
+                Object current = table.values[slot];
+                if(current == null) {
+                    table.keys[slot] = key;
+                    SLOTS.setRelease(table.values, slot, value);
+                    segment.used++;
+                    segment.size++;
+                    return null;
+                }
+                if(table.keys[slot] == key) {
+                    SLOTS.setRelease(table.values, slot, value);
+                    if(current == TOMBSTONE) {
+                        segment.size++;
+                        return null;
+                    }
+                    return (V) current;
+                }
+                slot = (slot + 1) & table.mask;
+            }
+        }
+    }
+
+    /**
+     * Removes the key and returns the value it was mapped to, or {@code null} if it was absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        long hash = mix(key);
+        Segment segment = segmentFor(hash);
+        synchronized(segment) {
+            Table table = segment.table;
+            int slot = (int) hash & table.mask;
+            while(true) {
+                Object current = table.values[slot];
+                if(current == null) {
+                    return null;
+                }
+                if(table.keys[slot] == key) {
+                    if(current == TOMBSTONE) {
+                        return null;
+                    }
+                    SLOTS.setRelease(table.values, slot, TOMBSTONE);
+                    segment.size--;
+                    return (V) current;
+                }
+                slot = (slot + 1) & table.mask;
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        for(Segment segment : segments) {
+            if(segment.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits every live entry. Like {@link java.util.concurrent.ConcurrentHashMap}'s traversals this is weakly consistent and never blocks writers.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for(Segment segment : segments) {
+            Table table = segment.table;
+            for(int slot = 0; slot <= table.mask; slot++) {
+                Object value = SLOTS.getAcquire(table.values, slot);
+                if(value != null && value != TOMBSTONE) {
+                    action.accept(table.keys[slot], (V) value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the live keys in ascending order.
+     */
+    public long[] keys() {
+        long[][] keys = {new long[Math.max(size(), MIN_CAPACITY)]};
+        int[] count = {0};
+        forEach((key, value) -> {
+            if(count[0] == keys[0].length) {
+                keys[0] = Arrays.copyOf(keys[0], count[0] * 2);
+            }
+            keys[0][count[0]++] = key;
+        });
+        long[] result = Arrays.copyOf(keys[0], count[0]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & segmentMask];
+    }
+
+    /**
+     * Spreads sequential ids over the whole hash range (the finalizer of MurmurHash3), so both the segment and the slot bits are well distributed.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+
+        void accept(long key, V value);
+    }
+
+    private static final class Segment {
+
+        private volatile Table table = new Table(MIN_CAPACITY);
+        private volatile int size;
+        private int used;
+
+        /**
+         * Copies the live entries into a fresh table sized for them and publishes it; readers still probing the old table see a consistent, older state.
+         */
+        private void rehash() {
+            Table old = table;
+            Table fresh = new Table(Math.max(Integer.highestOneBit(Math.max(size, 1)) << 2, MIN_CAPACITY));
+            for(int slot = 0; slot <= old.mask; slot++) {
+                Object value = old.values[slot];
+                if(value != null && value != TOMBSTONE) {
+                    int target = (int) mix(old.keys[slot]) & fresh.mask;
+                    while(fresh.values[target] != null) {
+                        target = (target + 1) & fresh.mask;
+                    }
+                    fresh.keys[target] = old.keys[slot];
+                    fresh.values[target] = value;
+                }
+            }
+            used = size;
+            table = fresh;
+        }
+    }
+
+    private static final class Table {
+
+        private final long[] keys;
+        private final Object[] values;
+        private final int mask;
+        private final int threshold;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            threshold = capacity * 3 / 4;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.OrderStatus;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.endava.petstore.storage.BinaryFields.readBoolean;
+import static com.endava.petstore.storage.BinaryFields.readDateTime;
+import static com.endava.petstore.storage.BinaryFields.readEnum;
+import static com.endava.petstore.storage.BinaryFields.readInteger;
+import static com.endava.petstore.storage.BinaryFields.readLong;
+import static com.endava.petstore.storage.BinaryFields.writeBoolean;
+import static com.endava.petstore.storage.BinaryFields.writeDateTime;
+import static com.endava.petstore.storage.BinaryFields.writeEnum;
+import static com.endava.petstore.storage.BinaryFields.writeInteger;
+import static com.endava.petstore.storage.BinaryFields.writeLong;
+
+public class OrderCodec implements EntityCodec<Order> {
+
+    @Override
+    public void write(DataOutput out, Order order) throws IOException {
+        writeLong(out, order.getId());
+        writeLong(out, order.getPetId());
+        writeInteger(out, order.getQuantity());
+        writeDateTime(out, order.getShipDate());
+        writeEnum(out, order.getOrderStatus());
+        writeBoolean(out, order.getComplete());
+    }
+
+    @Override
+    public Order read(DataInput in) throws IOException {
+        return Order.builder()
+              .id(readLong(in))
+              .petId(readLong(in))
+              .quantity(readInteger(in))
+              .shipDate(readDateTime(in))
+              .orderStatus(readEnum(in, OrderStatus.class))
+              .complete(readBoolean(in))
+              .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Category;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.Status;
+import com.endava.petstore.model.Tag;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.endava.petstore.storage.BinaryFields.readEnum;
+import static com.endava.petstore.storage.BinaryFields.readLong;
+import static com.endava.petstore.storage.BinaryFields.readString;
+import static com.endava.petstore.storage.BinaryFields.readStrings;
+import static com.endava.petstore.storage.BinaryFields.writeEnum;
+import static com.endava.petstore.storage.BinaryFields.writeLong;
+import static com.endava.petstore.storage.BinaryFields.writeString;
+import static com.endava.petstore.storage.BinaryFields.writeStrings;
+
+public class PetCodec implements EntityCodec<Pet> {
+
+    @Override
+    public void write(DataOutput out, Pet pet) throws IOException {
+        writeLong(out, pet.getId());
+        writeString(out, pet.getName());
+        out.writeBoolean(pet.getCategory() != null);
+        if(pet.getCategory() != null) {
+            writeLong(out, pet.getCategory().getId());
+            writeString(out, pet.getCategory().getName());
+        }
+        writeStrings(out, pet.getPhotoUrls());
+        out.writeInt(pet.getTags() == null ? -1 : pet.getTags().size());
+        if(pet.getTags() != null) {
+            for(Tag tag : pet.getTags()) {
+                writeLong(out, tag.getId());
+                writeString(out, tag.getName());
+            }
+        }
+        writeEnum(out, pet.getStatus());
+        writeStrings(out, pet.getImageIds());
+    }
+
+    @Override
+    public Pet read(DataInput in) throws IOException {
+        Pet.PetBuilder pet = Pet.builder()
+              .id(readLong(in))
+              .name(readString(in));
+        if(in.readBoolean()) {
+            pet.category(new Category(readLong(in), readString(in)));
+        }
+        pet.photoUrls(readStrings(in));
+        int tagCount = in.readInt();
+        if(tagCount >= 0) {
+            List<Tag> tags = new ArrayList<>(tagCount);
+            for(int i = 0; i < tagCount; i++) {
+                tags.add(new Tag(readLong(in), readString(in)));
+            }
+            pet.tags(tags);
+        }
+        return pet.status(readEnum(in, Status.class))
+              .imageIds(readStrings(in))
+              .build();
+    }
+}
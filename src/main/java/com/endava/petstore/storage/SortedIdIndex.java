@@ -0,0 +1,47 @@
+package com.endava.petstore.storage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the ids of a store in ascending order so callers can walk it in keyset pages.
+ * A page seeks to the cursor in O(log n) and then reads only the ids it returns, however large the store is.
+ */
+public class SortedIdIndex<T> implements StoreListener<T> {
+
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        if(current == null) {
+            ids.remove(id);
+        } else if(previous == null) {
+            ids.add(id);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} entities of the store whose ids are greater than {@code afterId}, in ascending id order
+     * (from the smallest id when {@code afterId} is null). Ids removed while the page is read are skipped, so a page is only short at the end of the store.
+     */
+    public List<T> page(EntityStore<T> store, Long afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Long> iterator = (afterId == null ? ids : ids.tailSet(afterId, false)).iterator();
+        while(page.size() < limit && iterator.hasNext()) {
+            store.get(iterator.next()).ifPresent(page::add);
+        }
+        return page;
+    }
+
+    /**
+     * Lazily walks the whole store in ascending id order, resolving each entity only when the stream reaches it.
+     */
+    public Stream<T> stream(EntityStore<T> store) {
+        return ids.stream().map(store::get).flatMap(Optional::stream);
+    }
+}
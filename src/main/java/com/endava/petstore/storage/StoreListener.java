@@ -0,0 +1,18 @@
+package com.endava.petstore.storage;
+
+/**
+ * Receives every write applied to an {@link EntityStore}.
+ * Callbacks run on the writing thread while the id's stripe is still held, so for a given id they arrive in the order the writes happened.
+ * {@code previous} is null for inserts and {@code current} is null for removals.
+ */
+@FunctionalInterface
+public interface StoreListener<T> {
+
+    void onChange(Long id, T previous, T current);
+
+    /**
+     * Called on the writing thread once it has fully released the id's stripe, e.g. to wait for durability without blocking other writers of the stripe.
+     */
+    default void afterRelease() {
+    }
+}
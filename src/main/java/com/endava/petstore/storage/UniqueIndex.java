@@ -0,0 +1,48 @@
+package com.endava.petstore.storage;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index enforcing that at most one entity carries a given key (e.g. a username).
+ * Writers {@link #reserve(Object, Long) reserve} the key while holding the entity's stripe, right before storing it; the reservation is an atomic
+ * {@code putIfAbsent}, so two concurrent writers of different ids cannot both claim the same key. Keys an entity no longer carries are released by the store write itself.
+ */
+public class UniqueIndex<T, K> implements StoreListener<T> {
+
+    private final Map<K, Long> ids = new ConcurrentHashMap<>();
+    private final Function<T, K> key;
+
+    public UniqueIndex(Function<T, K> key) {
+        this.key = key;
+    }
+
+    /**
+     * Claims the key for the given id. Returns false if another id already owns it.
+     */
+    public boolean reserve(K value, Long id) {
+        if(value == null) {
+            return true;
+        }
+        Long owner = ids.putIfAbsent(value, id);
+        return owner == null || owner.equals(id);
+    }
+
+    public Optional<Long> getId(K value) {
+        return value == null ? Optional.empty() : Optional.ofNullable(ids.get(value));
+    }
+
+    @Override
+    public void onChange(Long id, T previous, T current) {
+        K oldValue = previous == null ? null : key.apply(previous);
+        K newValue = current == null ? null : key.apply(current);
+        if(oldValue != null && !oldValue.equals(newValue)) {
+            ids.remove(oldValue, id);
+        }
+        if(newValue != null) {
+            ids.put(newValue, id);
+        }
+    }
+}
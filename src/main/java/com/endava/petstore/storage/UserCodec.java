@@ -0,0 +1,42 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.User;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.endava.petstore.storage.BinaryFields.readInteger;
+import static com.endava.petstore.storage.BinaryFields.readLong;
+import static com.endava.petstore.storage.BinaryFields.readString;
+import static com.endava.petstore.storage.BinaryFields.writeInteger;
+import static com.endava.petstore.storage.BinaryFields.writeLong;
+import static com.endava.petstore.storage.BinaryFields.writeString;
+
+public class UserCodec implements EntityCodec<User> {
+
+    @Override
+    public void write(DataOutput out, User user) throws IOException {
+        writeLong(out, user.getId());
+        writeString(out, user.getUsername());
+        writeString(out, user.getFirstName());
+        writeString(out, user.getLastName());
+        writeString(out, user.getEmail());
+        writeString(out, user.getPassword());
+        writeString(out, user.getPhone());
+        writeInteger(out, user.getUserStatus());
+    }
+
+    @Override
+    public User read(DataInput in) throws IOException {
+        return User.builder()
+              .id(readLong(in))
+              .username(readString(in))
+              .firstName(readString(in))
+              .lastName(readString(in))
+              .email(readString(in))
+              .password(readString(in))
+              .phone(readString(in))
+              .userStatus(readInteger(in))
+              .build();
+    }
+}
@@ -0,0 +1,8 @@
+package com.endava.petstore.storage;
+
+/**
+ * A stored value together with the version of the write that stored it.
+ * Versions come from the store's write counter, so a value's version changes with every write to its id and never repeats within a store.
+ */
+public record Versioned<T>(T value, long version) {
+}
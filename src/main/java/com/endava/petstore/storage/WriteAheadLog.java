@@ -0,0 +1,507 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.User;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only log of every write applied to the pet, order and user stores.
+ * Each write is framed as {@code [length][crc32][entity type][operation][id][entity]}, where the entity is the full new state encoded by its {@link EntityCodec},
+ * so replaying the records in order rebuilds the stores no matter which repository method produced them.
+ * Records are queued while the writer still holds the id's stripe (which preserves per-id order) and a single appender thread writes them in batches,
+ * issuing one fsync per batch; writers then wait for their batch outside the stripe. This group commit lets many concurrent writes share each fsync.
+ * <p>
+ * The log is split into numbered segments. A snapshot numbered {@code n} is taken by rotating to segment {@code n} and then walking the stores
+ * while writers carry on: it holds every write from segments below {@code n} and possibly some from {@code n} onwards, which is harmless because
+ * records carry full state and replaying them again yields the same result. Once the snapshot has been atomically renamed into place, older segments
+ * and snapshots are deleted. Recovery loads the newest snapshot (memory-mapped) into cleared stores and replays only the segments from {@code n} on;
+ * without a snapshot it replays every segment on top of the data the repositories seeded. A torn record at the end of a segment (e.g. after a crash
+ * mid-write) is discarded.
+ * <p>
+ * Segments and snapshots start with a magic number and the {@link #FORMAT_VERSION} of the codecs that wrote them. Recovery refuses a file of
+ * another version (or one written before versions were recorded) rather than decode it with the wrong layout.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "petstore.persistence.enabled", havingValue = "true")
+@DependsOn({"petRepositoryImpl", "storeRepositoryImpl", "userRepositoryImpl", "imageStore"})
+public class WriteAheadLog {
+
+    static final byte PET = 1;
+    static final byte ORDER = 2;
+    static final byte USER = 3;
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    /**
+     * Version of the record and snapshot entry layout, i.e. of the entity codecs. Version 1 is the first recorded one, with pet image ids.
+     */
+    static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int SEGMENT_MAGIC = 0x5057414C;
+    private static final int SNAPSHOT_MAGIC = 0x50534E56;
+    private static final byte SNAPSHOT_END = 0;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("wal-(\\d+)\\.log");
+    private static final Pattern SNAPSHOT_FILE = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final EntityStore<Pet> petStore;
+    private final EntityStore<Order> orderStore;
+    private final EntityStore<User> userStore;
+
+    @Value("${petstore.persistence.directory:data}")
+    private String directory;
+    @Value("${petstore.persistence.fsync:true}")
+    private boolean fsync;
+    @Value("${petstore.persistence.batch-size:512}")
+    private int batchSize;
+    @Value("${petstore.persistence.queue-capacity:65536}")
+    private int queueCapacity;
+    @Value("${petstore.persistence.snapshot-interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    private final List<Journal<?>> journals = new ArrayList<>();
+    private final ThreadLocal<CompletableFuture<Void>> pendingCommit = new ThreadLocal<>();
+    private final Object segmentLock = new Object();
+    private Path root;
+    private BlockingQueue<LogRecord> queue;
+    private FileChannel channel;
+    private long segment;
+    private Thread appender;
+    private ScheduledExecutorService snapshotter;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void open() throws IOException {
+        journals.add(new Journal<>(PET, petStore, new PetCodec()));
+        journals.add(new Journal<>(ORDER, orderStore, new OrderCodec()));
+        journals.add(new Journal<>(USER, userStore, new UserCodec()));
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        long recovered = recover();
+        segment = recovered + 1;
+        channel = openSegment(segment);
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        appender = new Thread(this::appendLoop, "wal-appender");
+        appender.setDaemon(true);
+        appender.start();
+        journals.forEach(Journal::attach);
+        if(snapshotIntervalSeconds > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if(snapshotter != null) {
+            snapshotter.shutdown();
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        running = false;
+        appender.join(TimeUnit.SECONDS.toMillis(10));
+        channel.force(true);
+        channel.close();
+    }
+
+    /**
+     * Loads the newest snapshot, if any, replays the segments it does not cover and returns the highest sequence number seen on disk.
+     */
+    private long recover() throws IOException {
+        long start = System.nanoTime();
+        OptionalLong snapshot = latest(SNAPSHOT_FILE);
+        long highest = 0;
+        if(snapshot.isPresent()) {
+            highest = snapshot.getAsLong();
+            journals.forEach(journal -> journal.store.clear());
+            loadSnapshot(snapshotFile(highest));
+        }
+        for(long sequence : sequences(SEGMENT_FILE)) {
+            if(sequence < highest) {
+                Files.delete(segmentFile(sequence));
+                continue;
+            }
+            long validLength = replay(segmentFile(sequence));
+            try(FileChannel tail = FileChannel.open(segmentFile(sequence), StandardOpenOption.WRITE)) {
+                tail.truncate(validLength);
+            }
+            highest = sequence;
+        }
+        log.info("Recovered the stores from {} in {} ms", root, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return highest;
+    }
+
+    /**
+     * Writes a point-in-time image of all stores without blocking writers, then drops the segments and snapshots it supersedes.
+     */
+    public synchronized void snapshot() throws IOException {
+        long sequence = rotate();
+        Path target = snapshotFile(sequence);
+        Path temporary = root.resolve(target.getFileName() + ".tmp");
+        int entries = 0;
+        try(FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(file), 64 * 1024));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            for(Journal<?> journal : journals) {
+                entries += journal.writeSnapshot(out);
+            }
+            out.writeByte(SNAPSHOT_END);
+            out.flush();
+            file.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for(long older : sequences(SEGMENT_FILE)) {
+            if(older < sequence) {
+                Files.deleteIfExists(segmentFile(older));
+            }
+        }
+        for(long older : sequences(SNAPSHOT_FILE)) {
+            if(older < sequence) {
+                Files.deleteIfExists(snapshotFile(older));
+            }
+        }
+        log.info("Wrote snapshot {} with {} entries", target, entries);
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch(IOException | RuntimeException e) {
+            log.error("Failed to write a snapshot to {}", root, e);
+        }
+    }
+
+    /**
+     * Closes the current segment and directs the appender to a new one, returning the new segment's sequence number.
+     */
+    private long rotate() throws IOException {
+        synchronized(segmentLock) {
+            channel.force(true);
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    private FileChannel openSegment(long sequence) throws IOException {
+        FileChannel file = FileChannel.open(segmentFile(sequence), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(SEGMENT_MAGIC).put(FORMAT_VERSION).flip();
+        while(header.hasRemaining()) {
+            file.write(header);
+        }
+        return file;
+    }
+
+    private void loadSnapshot(Path snapshotFile) throws IOException {
+        int entries = 0;
+        try(FileChannel file = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            InputStream input = file.size() <= Integer.MAX_VALUE
+                  ? new ByteBufferInputStream(file.map(FileChannel.MapMode.READ_ONLY, 0, file.size()))
+                  : new BufferedInputStream(Channels.newInputStream(file), 64 * 1024);
+            DataInputStream in = new DataInputStream(input);
+            checkHeader(in, SNAPSHOT_MAGIC, snapshotFile);
+            byte type;
+            while((type = in.readByte()) != SNAPSHOT_END) {
+                journal(type).apply(PUT, in.readLong(), in);
+                entries++;
+            }
+        }
+        log.info("Loaded {} entries from snapshot {}", entries, snapshotFile);
+    }
+
+    /**
+     * Applies every intact record of a log segment to the stores and returns the length of the intact prefix.
+     */
+    long replay(Path logFile) throws IOException {
+        if(Files.size(logFile) < FILE_HEADER_SIZE) {
+            // created, but the process died before its header was written
+            return 0;
+        }
+        long validLength = FILE_HEADER_SIZE;
+        int records = 0;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            checkHeader(in, SEGMENT_MAGIC, logFile);
+            while(true) {
+                byte[] body = readRecord(in);
+                if(body == null) {
+                    break;
+                }
+                apply(body);
+                validLength += HEADER_SIZE + body.length;
+                records++;
+            }
+        }
+        log.info("Replayed {} write-ahead log records from {}", records, logFile);
+        return validLength;
+    }
+
+    /**
+     * Reads the magic number and format version that start a segment or snapshot, and refuses a file of another kind or version.
+     */
+    private static void checkHeader(DataInputStream in, int magic, Path file) throws IOException {
+        if(in.readInt() != magic) {
+            throw new IOException("Not a write-ahead log file of a known format version: " + file);
+        }
+        byte version = in.readByte();
+        if(version != FORMAT_VERSION) {
+            throw new IOException(String.format("%s has format version %d, but this version reads format version %d", file, version, FORMAT_VERSION));
+        }
+    }
+
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if(length <= 0 || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            return checksum(body) == checksum ? body : null;
+        } catch(EOFException e) {
+            return null;
+        }
+    }
+
+    private void apply(byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        byte operation = in.readByte();
+        long id = in.readLong();
+        journal(type).apply(operation, id, in);
+    }
+
+    private Journal<?> journal(byte type) throws IOException {
+        return journals.stream()
+              .filter(journal -> journal.type == type)
+              .findFirst()
+              .orElseThrow(() -> new IOException("Unknown entity type " + type));
+    }
+
+    private Path segmentFile(long sequence) {
+        return root.resolve(String.format("wal-%010d.log", sequence));
+    }
+
+    private Path snapshotFile(long sequence) {
+        return root.resolve(String.format("snapshot-%010d.bin", sequence));
+    }
+
+    private OptionalLong latest(Pattern pattern) throws IOException {
+        List<Long> sequences = sequences(pattern);
+        return sequences.isEmpty() ? OptionalLong.empty() : OptionalLong.of(sequences.get(sequences.size() - 1));
+    }
+
+    private List<Long> sequences(Pattern pattern) throws IOException {
+        try(Stream<Path> files = Files.list(root)) {
+            return files
+                  .map(file -> pattern.matcher(file.getFileName().toString()))
+                  .filter(Matcher::matches)
+                  .map(matcher -> Long.parseLong(matcher.group(1)))
+                  .sorted()
+                  .toList();
+        }
+    }
+
+    private void append(byte[] body) {
+        if(!running) {
+            throw new IllegalStateException("The write-ahead log is closed");
+        }
+        LogRecord record = new LogRecord(body, new CompletableFuture<>());
+        try {
+            queue.put(record);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the write-ahead log", e);
+        }
+        pendingCommit.set(record.durable());
+    }
+
+    /**
+     * Blocks until the last record queued by the current thread is on disk. Batches complete in queue order, so earlier records are durable as well.
+     */
+    private void awaitCommit() {
+        CompletableFuture<Void> durable = pendingCommit.get();
+        if(durable == null) {
+            return;
+        }
+        pendingCommit.remove();
+        try {
+            durable.join();
+        } catch(CompletionException e) {
+            throw new UncheckedIOException("Write-ahead log append failed", (IOException) e.getCause());
+        }
+    }
+
+    private void appendLoop() {
+        List<LogRecord> batch = new ArrayList<>(batchSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+        while(running || !queue.isEmpty()) {
+            try {
+                LogRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                synchronized(segmentLock) {
+                    buffer = write(batch, buffer);
+                    if(fsync) {
+                        channel.force(false);
+                    }
+                }
+                batch.forEach(record -> record.durable().complete(null));
+            } catch(IOException e) {
+                log.error("Failed to append {} records to the write-ahead log", batch.size(), e);
+                batch.forEach(record -> record.durable().completeExceptionally(e));
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            batch.clear();
+        }
+    }
+
+    private ByteBuffer write(List<LogRecord> batch, ByteBuffer buffer) throws IOException {
+        int size = batch.stream().mapToInt(record -> HEADER_SIZE + record.body().length).sum();
+        if(buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        buffer.clear();
+        for(LogRecord record : batch) {
+            buffer.putInt(record.body().length);
+            buffer.putInt(checksum(record.body()));
+            buffer.put(record.body());
+        }
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return buffer;
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    private record LogRecord(byte[] body, CompletableFuture<Void> durable) {
+    }
+
+    /**
+     * Binds one entity type to its store and codec: encodes the store's writes into log records and applies replayed records back to the store.
+     */
+    @RequiredArgsConstructor
+    private final class Journal<T> implements StoreListener<T> {
+
+        private final byte type;
+        private final EntityStore<T> store;
+        private final EntityCodec<T> codec;
+
+        void attach() {
+            store.addListener(this);
+        }
+
+        /**
+         * Writes every entry of the store as {@code [type][id][entity]} and returns how many were written.
+         */
+        int writeSnapshot(DataOutputStream out) throws IOException {
+            int[] count = {0};
+            try {
+                store.forEach((id, entity) -> {
+                    try {
+                        out.writeByte(type);
+                        out.writeLong(id);
+                        codec.write(out, entity);
+                        count[0]++;
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return count[0];
+        }
+
+        void apply(byte operation, long id, DataInputStream in) throws IOException {
+            if(operation == PUT) {
+                store.put(id, codec.read(in));
+            } else if(operation == DELETE) {
+                store.remove(id);
+            } else {
+                throw new IOException("Unknown log operation " + operation);
+            }
+        }
+
+        @Override
+        public void onChange(Long id, T previous, T current) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(type);
+                out.writeByte(current == null ? DELETE : PUT);
+                out.writeLong(id);
+                if(current != null) {
+                    codec.write(out, current);
+                }
+                append(bytes.toByteArray());
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void afterRelease() {
+            awaitCommit();
+        }
+    }
+}
@@ -2,11 +2,14 @@ package com.endava.petstore.controller;
 
 import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.ModelRequestUpdatePet;
-import com.endava.petstore.model.ModelRequestUploadImage;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
+import com.endava.petstore.storage.ImageStore;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,13 +18,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 
 import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
 import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
@@ -32,7 +36,8 @@ import static com.endava.petstore.mock.PetMock.getMockedPets;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
-import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.IMAGE_JPEG;
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -42,6 +47,8 @@ class PetControllerIntegrationTest {
     private TestRestTemplate template;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private ImageStore imageStore;
 
     private Pet pet1;
     private Pet pet2;
@@ -64,6 +71,29 @@ class PetControllerIntegrationTest {
         assertThat(result).isEqualTo(pets);
     }
 
+    @Test
+    void streamAllPets_asJson_shouldWriteAllPetsAsArray() throws Exception {
+        List<Pet> expected = objectMapper.readValue(template.getForEntity("/pet?all=true", String.class).getBody(), new TypeReference<>() {});
+        ResponseEntity<String> response = template.getForEntity("/pet?stream=json", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
+        List<Pet> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void streamAllPets_asNdjson_shouldWriteOnePetPerLine() throws Exception {
+        List<Pet> expected = objectMapper.readValue(template.getForEntity("/pet?all=true", String.class).getBody(), new TypeReference<>() {});
+        ResponseEntity<String> response = template.getForEntity("/pet?stream=ndjson", String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_NDJSON);
+        List<Pet> result = new ArrayList<>();
+        for(String line : Objects.requireNonNull(response.getBody()).split("\n")) {
+            result.add(objectMapper.readValue(line, Pet.class));
+        }
+        assertThat(result).isEqualTo(expected);
+    }
+
     @Test
     void getPetById_withValidId_shouldReturnPetWithGivenId() {
         ResponseEntity<Pet> response = template.getForEntity("/pet/1", Pet.class);
@@ -73,6 +103,25 @@ class PetControllerIntegrationTest {
         assertThat(response.getBody()).isEqualTo(pet1);
     }
 
+    @Test
+    void getPetById_withIfNoneMatch_shouldReturnNotModifiedUntilPetChanges() {
+        Pet pet = pet1.toBuilder().id(82L).build();
+        template.postForEntity("/pet", pet, Pet.class);
+        String etag = template.getForEntity("/pet/82", Pet.class).getHeaders().getETag();
+        assertThat(etag).isNotNull();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        ResponseEntity<String> notModified = template.exchange("/pet/82", HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        template.put("/pet", pet.toBuilder().name("renamed").build());
+        ResponseEntity<Pet> changed = template.exchange("/pet/82", HttpMethod.GET, new HttpEntity<>(headers), Pet.class);
+        assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(Objects.requireNonNull(changed.getBody()).getName()).isEqualTo("renamed");
+        template.delete("/pet/82");
+    }
+
     @Test
     void getPetById_withInvalidId_shouldThrowException() {
         ResponseEntity<String> response = template.getForEntity("/pet/999", String.class);
@@ -150,14 +199,41 @@ class PetControllerIntegrationTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
-        MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
-        String additionalMetadata = "test_image";
-        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
-        ResponseEntity<HttpResponse> response = template.postForEntity("/pet/1/uploadImage", new ModelRequestUploadImage(additionalMetadata), HttpResponse.class);
+    void uploadPetImage_shouldStoreFileAndServeItBack() throws Exception {
+        template.postForEntity("/pet", pet1.toBuilder().id(81L).build(), Pet.class);
+        byte[] content = "content".getBytes();
+        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
+        form.add("additionalMetadata", "test_image");
+        HttpHeaders fileHeaders = new HttpHeaders();
+        fileHeaders.setContentType(IMAGE_JPEG);
+        form.add("file", new HttpEntity<>(new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return "test_image.jpg";
+            }
+        }, fileHeaders));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MULTIPART_FORM_DATA);
+        ResponseEntity<HttpResponse> response = template.postForEntity("/pet/81/uploadImage", new HttpEntity<>(form, headers), HttpResponse.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getHeaders().getContentType()).isEqualTo(MULTIPART_FORM_DATA);
-        assertThat(response.getBody()).isEqualTo(httpResponse);
+        // imageIds is read-only, so it is dropped when a response is read back into a Pet
+        JsonNode pet = template.getForObject("/pet/81", JsonNode.class);
+        assertThat(pet.get("imageIds")).hasSize(1);
+        String imageId = pet.get("imageIds").get(0).asText();
+        assertThat(Objects.requireNonNull(response.getBody()).getMessage()).isEqualTo(String.format(IMAGE_UPLOADED, "test_image", imageId, content.length));
+        assertThat(Files.readAllBytes(imageStore.find(imageId).orElseThrow())).isEqualTo(content);
+        // served back through the image endpoint, whole and as a byte range
+        ResponseEntity<byte[]> image = template.getForEntity("/pet/81/images/" + imageId, byte[].class);
+        assertThat(image.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(image.getHeaders().getETag()).isEqualTo("\"" + imageId + "\"");
+        assertThat(image.getBody()).isEqualTo(content);
+        HttpHeaders rangeHeaders = new HttpHeaders();
+        rangeHeaders.set(HttpHeaders.RANGE, "bytes=1-3");
+        ResponseEntity<byte[]> part = template.exchange("/pet/81/images/" + imageId, HttpMethod.GET, new HttpEntity<>(rangeHeaders), byte[].class);
+        assertThat(part.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        assertThat(part.getBody()).isEqualTo("ont".getBytes());
+        template.delete("/pet/81");
+        assertThat(imageStore.referenceCount(imageId)).isZero();
     }
 }
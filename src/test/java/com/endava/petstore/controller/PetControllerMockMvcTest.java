@@ -5,22 +5,29 @@ import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.service.PetService;
+import com.endava.petstore.storage.Versioned;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static com.endava.petstore.constants.Constants.IMAGE_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
 import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
+import static com.endava.petstore.constants.Constants.THUMBNAIL_NOT_FOUND;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
 import static com.endava.petstore.mock.PetMock.getMockedPet2;
 import static com.endava.petstore.mock.PetMock.getMockedPet3;
@@ -32,19 +39,35 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.springframework.http.HttpHeaders.ACCEPT_RANGES;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.CONTENT_RANGE;
+import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.IF_RANGE;
+import static org.springframework.http.HttpHeaders.RANGE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(PetController.class)
+@Import({EntityStreamWriter.class, ImageResponseWriter.class})
 class PetControllerMockMvcTest {
 
+    private static final String IMAGE_ID = "0123456789abcdef0123456789abcdef.jpg";
+
+    @TempDir
+    Path directory;
     @Autowired
     private MockMvc mockMvc;
     @Autowired
@@ -68,7 +91,7 @@ class PetControllerMockMvcTest {
     @Test
     void getAllPets_shouldReturnAllPets() throws Exception {
         given(petService.getAllPets()).willReturn(pets);
-        MvcResult result = mockMvc.perform(get("/pet").accept(APPLICATION_JSON_VALUE))
+        MvcResult result = mockMvc.perform(get("/pet?all=true").accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$[0].id").value(pet1.getId()))
               .andExpect(jsonPath("$[0].name").value(pet1.getName()))
@@ -99,7 +122,7 @@ class PetControllerMockMvcTest {
 
     @Test
     void getPetById_withValidId_shouldReturnPetWithGivenId() throws Exception {
-        given(petService.getPetById(1L)).willReturn(pet1);
+        given(petService.getVersionedPetById(1L)).willReturn(new Versioned<>(pet1, 1L));
         MvcResult result = mockMvc.perform(get("/pet/{petId}", pet1.getId()).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id").value(pet1.getId()))
@@ -110,7 +133,7 @@ class PetControllerMockMvcTest {
               .andExpect(jsonPath("$.tags[*].name", containsInAnyOrder("test_tag1", "test_tag2")))
               .andExpect(jsonPath("$.status").value(pet1.getStatus().name()))
               .andReturn();
-        verify(petService).getPetById(1L);
+        verify(petService).getVersionedPetById(1L);
         Pet response = objectMapper.readValue(result.getResponse().getContentAsString(), Pet.class);
         assertThat(response).isEqualTo(pet1);
     }
@@ -118,12 +141,12 @@ class PetControllerMockMvcTest {
     @Test
     void getPetById_withInvalidId_shouldThrowException() throws Exception {
         Long petId = 999L;
-        given(petService.getPetById(petId)).willThrow(new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
+        given(petService.getVersionedPetById(petId)).willThrow(new ResourceNotFoundException(String.format(PET_NOT_FOUND, petId)));
         mockMvc.perform(get("/pet/{petId}", petId).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isNotFound())
               .andExpect(jsonPath("$.message").value(String.format(PET_NOT_FOUND, petId)))
               .andReturn();
-        verify(petService, never()).getPetById(petId);
+        verify(petService, never()).getVersionedPetById(petId);
     }
 
     @Test
@@ -244,4 +267,93 @@ class PetControllerMockMvcTest {
         HttpResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), HttpResponse.class);
         assertThat(response).isEqualTo(httpResponse);
     }
+
+    @Test
+    void getPetImage_shouldServeWholeFileWithCachingHeaders() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID))
+              .andExpect(status().isOk())
+              .andExpect(header().string(CONTENT_TYPE, IMAGE_JPEG_VALUE))
+              .andExpect(header().string(ETAG, "\"" + IMAGE_ID + "\""))
+              .andExpect(header().string(CACHE_CONTROL, ImageResponseWriter.CACHE_CONTROL))
+              .andExpect(header().string(ACCEPT_RANGES, "bytes"))
+              .andExpect(content().bytes("0123456789".getBytes()));
+    }
+
+    @Test
+    void getPetImage_withRange_shouldServePartialContent() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(RANGE, "bytes=2-5"))
+              .andExpect(status().isPartialContent())
+              .andExpect(header().string(CONTENT_RANGE, "bytes 2-5/10"))
+              .andExpect(content().bytes("2345".getBytes()));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(RANGE, "bytes=-3"))
+              .andExpect(status().isPartialContent())
+              .andExpect(content().bytes("789".getBytes()));
+    }
+
+    @Test
+    void getPetImage_withUnsatisfiableRange_shouldReturnRangeNotSatisfiable() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(RANGE, "bytes=10-"))
+              .andExpect(status().isRequestedRangeNotSatisfiable())
+              .andExpect(header().string(CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void getPetImage_withInvalidRange_shouldServeWholeFile() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        for(String range : List.of("bytes=5-2", "bytes=99999999999999999999-", "bytes=0-99999999999999999999", "bytes=-99999999999999999999")) {
+            mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(RANGE, range))
+                  .andExpect(status().isOk())
+                  .andExpect(header().doesNotExist(CONTENT_RANGE))
+                  .andExpect(content().bytes("0123456789".getBytes()));
+        }
+    }
+
+    @Test
+    void getPetImage_withStaleIfRange_shouldServeWholeFile() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(RANGE, "bytes=2-5").header(IF_RANGE, "\"other\""))
+              .andExpect(status().isOk())
+              .andExpect(content().bytes("0123456789".getBytes()));
+    }
+
+    @Test
+    void getPetImage_withMatchingIfNoneMatch_shouldReturnNotModified() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willReturn(writeImage("0123456789"));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID).header(IF_NONE_MATCH, "\"" + IMAGE_ID + "\""))
+              .andExpect(status().isNotModified())
+              .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void getPetImage_withUnknownImage_shouldReturnNotFound() throws Exception {
+        given(petService.getPetImage(1L, IMAGE_ID)).willThrow(new ResourceNotFoundException(String.format(IMAGE_NOT_FOUND, IMAGE_ID, 1L)));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}", 1L, IMAGE_ID))
+              .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getPetThumbnail_shouldServeStoredPng() throws Exception {
+        String thumbnailName = "0123456789abcdef0123456789abcdef-128.png";
+        Path thumbnail = Files.write(directory.resolve(thumbnailName), "png".getBytes());
+        given(petService.getPetThumbnail(1L, IMAGE_ID, 128)).willReturn(thumbnail);
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}/thumbnails/{size}", 1L, IMAGE_ID, 128))
+              .andExpect(status().isOk())
+              .andExpect(header().string(CONTENT_TYPE, IMAGE_PNG_VALUE))
+              .andExpect(header().string(ETAG, "\"" + thumbnailName + "\""))
+              .andExpect(content().bytes("png".getBytes()));
+    }
+
+    @Test
+    void getPetThumbnail_whenNotGeneratedYet_shouldReturnNotFound() throws Exception {
+        given(petService.getPetThumbnail(1L, IMAGE_ID, 128)).willThrow(new ResourceNotFoundException(String.format(THUMBNAIL_NOT_FOUND, 128, IMAGE_ID)));
+        mockMvc.perform(get("/pet/{petId}/images/{imageId}/thumbnails/{size}", 1L, IMAGE_ID, 128))
+              .andExpect(status().isNotFound());
+    }
+
+    private Path writeImage(String content) throws Exception {
+        return Files.write(directory.resolve(IMAGE_ID), content.getBytes());
+    }
 }
@@ -7,6 +7,7 @@ import com.endava.petstore.model.ModelRequestUploadImage;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.service.PetService;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,12 +15,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
+import static com.endava.petstore.constants.Constants.INVALID_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.MAX_PAGE_LIMIT;
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
 import static com.endava.petstore.constants.Constants.TAGS_NOT_FOUND;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
@@ -44,9 +52,11 @@ class PetControllerTest {
     private Pet pet1;
     private Pet pet2;
     private List<Pet> pets;
+    private ServletWebRequest webRequest;
 
     @BeforeEach
     void setUp() {
+        webRequest = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
         pet1 = getMockedPet1();
         pet2 = getMockedPet2();
         pets = getMockedPets();
@@ -55,18 +65,43 @@ class PetControllerTest {
     @Test
     void getAllPets_shouldReturnAllPets() {
         given(petService.getAllPets()).willReturn(pets);
-        ResponseEntity<List<Pet>> response = petController.getAllPets();
+        ResponseEntity<List<Pet>> response = petController.getAllPets(null, 100, true, webRequest);
         verify(petService).getAllPets();
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(pets);
     }
 
+    @Test
+    void getAllPets_withFullPage_shouldReturnNextPageCursor() {
+        given(petService.getPetsPage(null, 2)).willReturn(List.of(pet1, pet2));
+        ResponseEntity<List<Pet>> response = petController.getAllPets(null, 2, false, webRequest);
+        verify(petService).getPetsPage(null, 2);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(NEXT_PAGE_HEADER)).isEqualTo(String.valueOf(pet2.getId()));
+        assertThat(response.getBody()).isEqualTo(List.of(pet1, pet2));
+    }
+
+    @Test
+    void getAllPets_withLastPage_shouldNotReturnNextPageCursor() {
+        given(petService.getPetsPage(pet1.getId(), 2)).willReturn(List.of(pet2));
+        ResponseEntity<List<Pet>> response = petController.getAllPets(pet1.getId(), 2, false, webRequest);
+        assertThat(response.getHeaders().containsKey(NEXT_PAGE_HEADER)).isFalse();
+        assertThat(response.getBody()).isEqualTo(List.of(pet2));
+    }
+
+    @Test
+    void getAllPets_withInvalidLimit_shouldThrowException() {
+        assertThatThrownBy(() -> petController.getAllPets(null, 0, false, webRequest))
+              .isInstanceOf(InvalidResourceException.class)
+              .hasMessage(String.format(INVALID_PAGE_LIMIT, MAX_PAGE_LIMIT));
+    }
+
     @Test
     void getPetById_shouldReturnPetWithGivenId() {
-        given(petService.getPetById(1L)).willReturn(pet1);
-        ResponseEntity<Pet> response = petController.getPetById(1L);
-        verify(petService).getPetById(1L);
+        given(petService.getVersionedPetById(1L)).willReturn(new Versioned<>(pet1, 1L));
+        ResponseEntity<Pet> response = petController.getPetById(1L, webRequest);
+        verify(petService).getVersionedPetById(1L);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(pet1);
@@ -104,7 +139,7 @@ class PetControllerTest {
     void getPetsByStatus_shouldReturnPetsWithGivenStatuses() {
         Status[] statuses = new Status[]{Status.AVAILABLE, Status.PENDING};
         given(petService.getPetsByStatus(statuses)).willReturn(List.of(pet1, pet2));
-        ResponseEntity<List<Pet>> response = petController.getPetsByStatus(statuses);
+        ResponseEntity<List<Pet>> response = petController.getPetsByStatus(statuses, webRequest);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(List.of(pet1, pet2));
@@ -114,16 +149,26 @@ class PetControllerTest {
     void getPetsByTags_shouldReturnPetsWithGivenTags() {
         List<String> tagNames = List.of("test_tag1", "test_tag2", "test_tag3", "test_tag4");
         given(petService.getPetsByTags(tagNames)).willReturn(List.of(pet1, pet2));
-        ResponseEntity<List<Pet>> response = petController.getPetsByTags(tagNames);
+        ResponseEntity<List<Pet>> response = petController.getPetsByTags(tagNames, false, webRequest);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(List.of(pet1, pet2));
     }
 
+    @Test
+    void getPetsByTags_withMatchAll_shouldReturnPetsWithAllGivenTags() {
+        List<String> tagNames = List.of("test_tag1", "test_tag2");
+        given(petService.getPetsByAllTags(tagNames)).willReturn(List.of(pet1));
+        ResponseEntity<List<Pet>> response = petController.getPetsByTags(tagNames, true, webRequest);
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(List.of(pet1));
+    }
+
     @Test
     void getPetsByTags_withEmptyList_shouldThrowException() {
         List<String> tagNames = List.of();
-        assertThatThrownBy(() -> petController.getPetsByTags(tagNames))
+        assertThatThrownBy(() -> petController.getPetsByTags(tagNames, false, webRequest))
               .isInstanceOf(InvalidResourceException.class)
               .hasMessage(TAGS_NOT_FOUND);
     }
@@ -142,7 +187,7 @@ class PetControllerTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
+    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() throws Exception {
         MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
         String additionalMetadata = "test_image";
         HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
@@ -153,4 +198,29 @@ class PetControllerTest {
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(httpResponse);
     }
+
+    @Test
+    void getPetById_withMatchingIfNoneMatch_shouldReturnNotModified() {
+        given(petService.getVersionedPetById(1L)).willReturn(new Versioned<>(pet1, 7L));
+        String etag = petController.getPetById(1L, webRequest).getHeaders().getETag();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/pet/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<Pet> response = petController.getPetById(1L, new ServletWebRequest(request, new MockHttpServletResponse()));
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(response.getBody()).isNull();
+    }
+
+    @Test
+    void getPetsByStatus_withMatchingIfNoneMatch_shouldNotQueryPets() {
+        Status[] statuses = {Status.AVAILABLE};
+        given(petService.getPetsVersion()).willReturn(42L);
+        given(petService.getPetsByStatus(statuses)).willReturn(List.of(pet1));
+        String etag = petController.getPetsByStatus(statuses, webRequest).getHeaders().getETag();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/pet/findByStatus");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<List<Pet>> response = petController.getPetsByStatus(statuses, new ServletWebRequest(request, new MockHttpServletResponse()));
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(petService).getPetsByStatus(statuses);
+    }
 }
@@ -5,6 +5,7 @@ import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.service.StoreService;
+import com.endava.petstore.storage.Versioned;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.List;
@@ -13,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
@@ -38,6 +40,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(StoreController.class)
+@Import(EntityStreamWriter.class)
 class StoreControllerMockMvcTest {
 
     @Autowired
@@ -65,7 +68,7 @@ class StoreControllerMockMvcTest {
     @Test
     void getAllOrders_shouldReturnAllOrders() throws Exception {
         given(storeService.getAllOrders()).willReturn(orders);
-        MvcResult result = mockMvc.perform(get("/store/order").accept(APPLICATION_JSON_VALUE))
+        MvcResult result = mockMvc.perform(get("/store/order?all=true").accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$[0].id").value(order1.getId()))
               .andExpect(jsonPath("$[0].petId").value(order1.getPetId()))
@@ -94,7 +97,7 @@ class StoreControllerMockMvcTest {
 
     @Test
     void getOrderById_withValidId_shouldReturnOrderWithGivenId() throws Exception {
-        given(storeService.getOrderById(1L)).willReturn(order1);
+        given(storeService.getVersionedOrderById(1L)).willReturn(new Versioned<>(order1, 1L));
         MvcResult result = mockMvc.perform(get("/store/order/{orderId}", order1.getId()).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id").value(order1.getId()))
@@ -104,7 +107,7 @@ class StoreControllerMockMvcTest {
               .andExpect(jsonPath("$.orderStatus").value(order1.getOrderStatus().name()))
               .andExpect(jsonPath("$.complete").value(order1.getComplete()))
               .andReturn();
-        verify(storeService).getOrderById(1L);
+        verify(storeService).getVersionedOrderById(1L);
         Order response = objectMapper.readValue(result.getResponse().getContentAsString(), Order.class);
         assertThat(response).isEqualTo(order1);
     }
@@ -112,12 +115,12 @@ class StoreControllerMockMvcTest {
     @Test
     void getOrderById_withInvalidId_shouldThrowException() throws Exception {
         Long orderId = 999L;
-        given(storeService.getOrderById(orderId)).willThrow(new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
+        given(storeService.getVersionedOrderById(orderId)).willThrow(new ResourceNotFoundException(String.format(ORDER_NOT_FOUND, orderId)));
         mockMvc.perform(get("/store/order/{orderId}", orderId).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isNotFound())
               .andExpect(jsonPath("$.message").value(String.format(ORDER_NOT_FOUND, orderId)))
               .andReturn();
-        verify(storeService, never()).getOrderById(orderId);
+        verify(storeService, never()).getVersionedOrderById(orderId);
     }
 
     @Test
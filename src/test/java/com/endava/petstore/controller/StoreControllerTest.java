@@ -1,19 +1,27 @@
 package com.endava.petstore.controller;
 
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.service.StoreService;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
 import static com.endava.petstore.mock.StoreMock.getMockedOrder1;
 import static com.endava.petstore.mock.StoreMock.getMockedOrder2;
@@ -36,9 +44,11 @@ class StoreControllerTest {
     private Order order2;
     private List<Order> orders;
     private Pet pet1;
+    private ServletWebRequest webRequest;
 
     @BeforeEach
     void setUp() {
+        webRequest = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
         order1 = getMockedOrder1();
         order2 = getMockedOrder2();
         orders = getMockedOrders();
@@ -48,18 +58,27 @@ class StoreControllerTest {
     @Test
     void getAllOrders_shouldReturnAllOrders() {
         given(storeService.getAllOrders()).willReturn(orders);
-        ResponseEntity<List<Order>> response = storeController.getAllOrders();
+        ResponseEntity<List<Order>> response = storeController.getAllOrders(null, 100, true, webRequest);
         verify(storeService).getAllOrders();
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(orders);
     }
 
+    @Test
+    void getAllOrders_withFullPage_shouldReturnNextPageCursor() {
+        given(storeService.getOrdersPage(order1.getId(), 1)).willReturn(List.of(order2));
+        ResponseEntity<List<Order>> response = storeController.getAllOrders(order1.getId(), 1, false, webRequest);
+        verify(storeService).getOrdersPage(order1.getId(), 1);
+        assertThat(response.getHeaders().getFirst(NEXT_PAGE_HEADER)).isEqualTo(String.valueOf(order2.getId()));
+        assertThat(response.getBody()).isEqualTo(List.of(order2));
+    }
+
     @Test
     void getOrderById_shouldReturnOrderWithGivenId() {
-        given(storeService.getOrderById(1L)).willReturn(order1);
-        ResponseEntity<Order> response = storeController.getOrderById(1L);
-        verify(storeService).getOrderById(1L);
+        given(storeService.getVersionedOrderById(1L)).willReturn(new Versioned<>(order1, 1L));
+        ResponseEntity<Order> response = storeController.getOrderById(1L, webRequest);
+        verify(storeService).getVersionedOrderById(1L);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(order1);
@@ -97,9 +116,31 @@ class StoreControllerTest {
     void getPetsByOrderStatus_shouldReturnPetsWithGivenOrderStatus() {
         OrderStatus orderStatus = OrderStatus.PLACED;
         given(storeService.getPetsByOrderStatus(orderStatus)).willReturn(List.of(pet1));
-        ResponseEntity<List<Pet>> response = storeController.getPetsByOrderStatus(orderStatus);
+        ResponseEntity<List<Pet>> response = storeController.getPetsByOrderStatus(orderStatus, webRequest);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(List.of(pet1));
     }
+
+    @Test
+    void getInventorySummary_shouldReturnCountersPerStatus() {
+        InventorySummary summary = new InventorySummary(Map.of("available", 1L), Map.of("placed", 1L));
+        given(storeService.getInventorySummary()).willReturn(summary);
+        ResponseEntity<InventorySummary> response = storeController.getInventorySummary();
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(summary);
+    }
+
+    @Test
+    void getOrderById_afterOrderChanged_shouldReturnNewETag() {
+        given(storeService.getVersionedOrderById(1L)).willReturn(new Versioned<>(order1, 1L)).willReturn(new Versioned<>(order2, 2L));
+        String etag = storeController.getOrderById(1L, webRequest).getHeaders().getETag();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/store/order/1");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<Order> response = storeController.getOrderById(1L, new ServletWebRequest(request, new MockHttpServletResponse()));
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getETag()).isNotEqualTo(etag);
+        assertThat(response.getBody()).isEqualTo(order2);
+    }
 }
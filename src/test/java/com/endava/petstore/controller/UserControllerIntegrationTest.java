@@ -1,8 +1,11 @@
 package com.endava.petstore.controller;
 
+import com.endava.petstore.model.BatchError;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -18,6 +21,8 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import static com.endava.petstore.constants.Constants.DUPLICATE_BATCH_USER_ID;
+import static com.endava.petstore.constants.Constants.INVALID_CREDENTIALS;
 import static com.endava.petstore.constants.Constants.USERNAME_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.USER_NOT_FOUND;
 import static com.endava.petstore.mock.UserMock.getMockedUser1;
@@ -52,8 +57,9 @@ class UserControllerIntegrationTest {
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
+        assertThat(response.getBody()).doesNotContain("password");
         List<User> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-        assertThat(result).isEqualTo(users);
+        assertThat(result).usingElementComparatorIgnoringFields("password").containsExactlyElementsOf(users);
     }
 
     @Test
@@ -62,7 +68,7 @@ class UserControllerIntegrationTest {
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        assertThat(response.getBody()).isEqualTo(user1);
+        assertThat(response.getBody()).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
     }
 
     @Test
@@ -76,22 +82,23 @@ class UserControllerIntegrationTest {
 
     @Test
     void saveUser_shouldAddUserToList() {
-        ResponseEntity<User> response = template.postForEntity("/user", user1, User.class);
+        ResponseEntity<User> response = template.postForEntity("/user", requestBody(user1), User.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        assertThat(response.getBody()).isEqualTo(user1);
+        assertThat(response.getBody()).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
+        assertThat(Objects.requireNonNull(response.getBody()).getPassword()).isNull();
     }
 
     @Test
     void updateUser_shouldModifyCurrentUser() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(APPLICATION_JSON);
-        ResponseEntity<User> response = template.exchange("/user", HttpMethod.PUT, new HttpEntity<>(user2, headers), User.class);
+        ResponseEntity<User> response = template.exchange("/user", HttpMethod.PUT, new HttpEntity<>(requestBody(user2), headers), User.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        assertThat(response.getBody()).isEqualTo(user2);
+        assertThat(response.getBody()).usingRecursiveComparison().ignoringFields("password").isEqualTo(user2);
     }
 
     @Test
@@ -112,24 +119,54 @@ class UserControllerIntegrationTest {
 
     @Test
     void saveUsersArray_shouldAddMultipleUsersToList() throws Exception {
-        User[] users = new User[]{user1, user2};
+        ObjectNode[] users = new ObjectNode[]{requestBody(user1), requestBody(user2)};
         ResponseEntity<String> response = template.postForEntity("/user/createWithArray", users, String.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        List<User> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        UserBatchReport result = objectMapper.readValue(response.getBody(), UserBatchReport.class);
+        assertThat(result.getCreated()).usingElementComparatorIgnoringFields("password").containsExactly(user1, user2);
+        assertThat(result.getRejected()).isZero();
+    }
+
+    @Test
+    void saveUsersArray_withInvalidElements_shouldReportThemAndStoreTheRest() throws Exception {
+        User valid = user1.toBuilder().id(70L).username("batch_valid").build();
+        User invalidPhone = user1.toBuilder().id(71L).username("batch_invalid").phone("123").build();
+        User duplicateId = user1.toBuilder().id(70L).username("batch_duplicate").build();
+        ObjectNode[] users = new ObjectNode[]{requestBody(valid), requestBody(invalidPhone), requestBody(duplicateId)};
+        ResponseEntity<String> response = template.postForEntity("/user/createWithArray", users, String.class);
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        UserBatchReport result = objectMapper.readValue(response.getBody(), UserBatchReport.class);
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getCreated()).usingElementComparatorIgnoringFields("password").containsExactly(valid);
+        assertThat(result.getErrors()).extracting(BatchError::getIndex).containsExactly(1, 2);
+        assertThat(result.getErrors().get(0).getMessage()).startsWith("phone: ");
+        assertThat(result.getErrors().get(1).getMessage()).isEqualTo(String.format(DUPLICATE_BATCH_USER_ID, 70L));
+        template.delete("/user/70");
+    }
+
+    @Test
+    void saveUsersList_withOnlyInvalidElements_shouldReturnBadRequest() throws Exception {
+        List<ObjectNode> users = List.of(requestBody(user1.toBuilder().id(72L).username("batch_invalid").password("weak").build()));
+        ResponseEntity<String> response = template.postForEntity("/user/createWithList", users, String.class);
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        UserBatchReport result = objectMapper.readValue(response.getBody(), UserBatchReport.class);
+        assertThat(result.getCreated()).isEmpty();
+        assertThat(result.getRejected()).isEqualTo(1);
     }
 
     @Test
     void saveUsersList_shouldAddMultipleUsersToList() throws Exception {
         List<User> users = List.of(user1, user2);
-        ResponseEntity<String> response = template.postForEntity("/user/createWithList", users, String.class);
+        ResponseEntity<String> response = template.postForEntity("/user/createWithList", List.of(requestBody(user1), requestBody(user2)), String.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        List<User> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-        assertThat(result).isEqualTo(users);
+        UserBatchReport result = objectMapper.readValue(response.getBody(), UserBatchReport.class);
+        assertThat(result.getCreated()).usingElementComparatorIgnoringFields("password").containsExactlyElementsOf(users);
     }
 
     @Test
@@ -138,7 +175,7 @@ class UserControllerIntegrationTest {
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        assertThat(response.getBody()).isEqualTo(user1);
+        assertThat(response.getBody()).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
     }
 
     @Test
@@ -157,11 +194,12 @@ class UserControllerIntegrationTest {
         headers.setContentType(APPLICATION_JSON);
         User resultUser = user2;
         resultUser.setId(1L);
-        ResponseEntity<User> response = template.exchange("/user/username/test_username1", HttpMethod.PUT, new HttpEntity<>(user2, headers), User.class);
+        resultUser.setUsername("test_username1");
+        ResponseEntity<User> response = template.exchange("/user/username/test_username1", HttpMethod.PUT, new HttpEntity<>(requestBody(user2), headers), User.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
-        assertThat(response.getBody()).isEqualTo(resultUser);
+        assertThat(response.getBody()).usingRecursiveComparison().ignoringFields("password").isEqualTo(resultUser);
     }
 
     @Test
@@ -180,22 +218,47 @@ class UserControllerIntegrationTest {
     }
 
     @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() throws Exception {
-        ResponseEntity<String> response = template.getForEntity("/user/login?username=test_username1&password=%23Test_password1", String.class);
+    void login_shouldReturnSessionToken() throws Exception {
+        ResponseEntity<String> response = template.getForEntity("/user/login?username={username}&password={password}", String.class, "test_username1", "#Test_password1");
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
         Map<String, String> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
-        assertThat(result).containsEntry("message", "Logged in successfully");
+        assertThat(result).containsEntry("message", "Logged in successfully").containsKey("token");
     }
 
     @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() throws Exception {
-        ResponseEntity<String> response = template.getForEntity("/user/logout", String.class);
+    void login_withWrongPassword_shouldNotRepeatTheCredentials() {
+        ResponseEntity<String> response = template.getForEntity("/user/login?username={username}&password={password}", String.class, "test_username2", "#Wrong_password2");
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo("Invalid resource: " + INVALID_CREDENTIALS);
+    }
+
+    @Test
+    void logout_shouldEndTheSessionOfTheToken() throws Exception {
+        ResponseEntity<String> login = template.getForEntity("/user/login?username={username}&password={password}", String.class, "test_username3", "#Test_password3");
+        String token = objectMapper.<Map<String, String>>readValue(login.getBody(), new TypeReference<>() {}).get("token");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        ResponseEntity<User> session = template.exchange("/user/session", HttpMethod.GET, new HttpEntity<>(headers), User.class);
+        assertThat(session.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Objects.requireNonNull(session.getBody()).getUsername()).isEqualTo("test_username3");
+
+        ResponseEntity<String> response = template.exchange("/user/logout", HttpMethod.GET, new HttpEntity<>(headers), String.class);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getHeaders().getContentType()).isEqualTo(APPLICATION_JSON);
         Map<String, String> result = objectMapper.readValue(response.getBody(), new TypeReference<>() {});
         assertThat(result).containsEntry("message", "Logged out successfully");
+        assertThat(template.exchange("/user/session", HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+        assertThat(template.exchange("/user/logout", HttpMethod.GET, new HttpEntity<>(headers), String.class).getStatusCode()).isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    /**
+     * Writes the user as a request body. The password is write-only, so Jackson leaves it out and it is added here.
+     */
+    private ObjectNode requestBody(User user) {
+        return objectMapper.<ObjectNode>valueToTree(user).put("password", user.getPassword());
     }
 }
@@ -1,10 +1,15 @@
 package com.endava.petstore.controller;
 
 import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.exception.TooManyRequestsException;
+import com.endava.petstore.exception.UnauthorizedException;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.service.UserService;
+import com.endava.petstore.storage.Versioned;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,10 +17,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static com.endava.petstore.constants.Constants.INVALID_SESSION;
+import static com.endava.petstore.constants.Constants.TOO_MANY_FAILED_LOGINS;
 import static com.endava.petstore.constants.Constants.USERNAME_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.USER_NOT_FOUND;
 import static com.endava.petstore.mock.UserMock.getMockedUser1;
@@ -25,6 +34,7 @@ import static com.endava.petstore.mock.UserMock.getMockedUsers;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
@@ -36,6 +46,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(UserController.class)
+@Import(EntityStreamWriter.class)
 class UserControllerMockMvcTest {
 
     @Autowired
@@ -61,14 +72,14 @@ class UserControllerMockMvcTest {
     @Test
     void getAllUsers_shouldReturnAllUsers() throws Exception {
         given(userService.getAllUsers()).willReturn(users);
-        MvcResult result = mockMvc.perform(get("/user").accept(MediaType.APPLICATION_JSON_VALUE))
+        MvcResult result = mockMvc.perform(get("/user?all=true").accept(MediaType.APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$[0].id").value(user1.getId()))
               .andExpect(jsonPath("$[0].username").value(user1.getUsername()))
               .andExpect(jsonPath("$[0].firstName").value(user1.getFirstName()))
               .andExpect(jsonPath("$[0].lastName").value(user1.getLastName()))
               .andExpect(jsonPath("$[0].email").value(user1.getEmail()))
-              .andExpect(jsonPath("$[0].password").value(user1.getPassword()))
+              .andExpect(jsonPath("$[0].password").doesNotExist())
               .andExpect(jsonPath("$[0].phone").value(user1.getPhone()))
               .andExpect(jsonPath("$[0].userStatus").value(user1.getUserStatus()))
               .andExpect(jsonPath("$[1].id").value(user2.getId()))
@@ -76,7 +87,7 @@ class UserControllerMockMvcTest {
               .andExpect(jsonPath("$[1].firstName").value(user2.getFirstName()))
               .andExpect(jsonPath("$[1].lastName").value(user2.getLastName()))
               .andExpect(jsonPath("$[1].email").value(user2.getEmail()))
-              .andExpect(jsonPath("$[1].password").value(user2.getPassword()))
+              .andExpect(jsonPath("$[1].password").doesNotExist())
               .andExpect(jsonPath("$[1].phone").value(user2.getPhone()))
               .andExpect(jsonPath("$[1].userStatus").value(user2.getUserStatus()))
               .andExpect(jsonPath("$[2].id").value(user3.getId()))
@@ -84,18 +95,18 @@ class UserControllerMockMvcTest {
               .andExpect(jsonPath("$[2].firstName").value(user3.getFirstName()))
               .andExpect(jsonPath("$[2].lastName").value(user3.getLastName()))
               .andExpect(jsonPath("$[2].email").value(user3.getEmail()))
-              .andExpect(jsonPath("$[2].password").value(user3.getPassword()))
+              .andExpect(jsonPath("$[2].password").doesNotExist())
               .andExpect(jsonPath("$[2].phone").value(user3.getPhone()))
               .andExpect(jsonPath("$[2].userStatus").value(user3.getUserStatus()))
               .andReturn();
         verify(userService).getAllUsers();
         List<User> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
-        assertThat(response).isEqualTo(users);
+        assertThat(response).usingElementComparatorIgnoringFields("password").containsExactlyElementsOf(users);
     }
     
     @Test
     void getUserById_withValidId_shouldReturnUserWithGivenId() throws Exception {
-        given(userService.getUserById(1L)).willReturn(user1);
+        given(userService.getVersionedUserById(1L)).willReturn(new Versioned<>(user1, 1L));
         MvcResult result = mockMvc.perform(get("/user/{userId}", user1.getId()).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id").value(user1.getId()))
@@ -103,24 +114,24 @@ class UserControllerMockMvcTest {
               .andExpect(jsonPath("$.firstName").value(user1.getFirstName()))
               .andExpect(jsonPath("$.lastName").value(user1.getLastName()))
               .andExpect(jsonPath("$.email").value(user1.getEmail()))
-              .andExpect(jsonPath("$.password").value(user1.getPassword()))
+              .andExpect(jsonPath("$.password").doesNotExist())
               .andExpect(jsonPath("$.phone").value(user1.getPhone()))
               .andExpect(jsonPath("$.userStatus").value(user1.getUserStatus()))
               .andReturn();
-        verify(userService).getUserById(1L);
+        verify(userService).getVersionedUserById(1L);
         User response = objectMapper.readValue(result.getResponse().getContentAsString(), User.class);
-        assertThat(response).isEqualTo(user1);
+        assertThat(response).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
     }
 
     @Test
     void getUserById_withInvalidId_shouldThrowException() throws Exception {
         Long userId = 999L;
-        given(userService.getUserById(userId)).willThrow(new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
+        given(userService.getVersionedUserById(userId)).willThrow(new ResourceNotFoundException(String.format(USER_NOT_FOUND, userId)));
         mockMvc.perform(get("/user/{userId}", userId).accept(APPLICATION_JSON_VALUE))
               .andExpect(status().isNotFound())
               .andExpect(jsonPath("$.message").value(String.format(USER_NOT_FOUND, userId)))
               .andReturn();
-        verify(userService, never()).getUserById(userId);
+        verify(userService, never()).getVersionedUserById(userId);
     }
 
     @Test
@@ -128,20 +139,20 @@ class UserControllerMockMvcTest {
         given(userService.saveUser(any(User.class))).willReturn(user1);
         MvcResult result = mockMvc.perform(post("/user").accept(APPLICATION_JSON_VALUE)
                     .contentType(APPLICATION_JSON_VALUE)
-                    .content(objectMapper.writeValueAsString(user1)))
+                    .content(objectMapper.writeValueAsString(requestBody(user1))))
               .andExpect(status().isCreated())
               .andExpect(jsonPath("$.id").value(user1.getId()))
               .andExpect(jsonPath("$.username").value(user1.getUsername()))
               .andExpect(jsonPath("$.firstName").value(user1.getFirstName()))
               .andExpect(jsonPath("$.lastName").value(user1.getLastName()))
               .andExpect(jsonPath("$.email").value(user1.getEmail()))
-              .andExpect(jsonPath("$.password").value(user1.getPassword()))
+              .andExpect(jsonPath("$.password").doesNotExist())
               .andExpect(jsonPath("$.phone").value(user1.getPhone()))
               .andExpect(jsonPath("$.userStatus").value(user1.getUserStatus()))
               .andReturn();
         verify(userService).saveUser(user1);
         User response = objectMapper.readValue(result.getResponse().getContentAsString(), User.class);
-        assertThat(response).isEqualTo(user1);
+        assertThat(response).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
     }
 
     @Test
@@ -149,20 +160,20 @@ class UserControllerMockMvcTest {
         given(userService.updateUser(any(User.class))).willReturn(user2);
         MvcResult result = mockMvc.perform(put("/user").accept(APPLICATION_JSON_VALUE)
                     .contentType(APPLICATION_JSON_VALUE)
-                    .content(objectMapper.writeValueAsString(user2)))
+                    .content(objectMapper.writeValueAsString(requestBody(user2))))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id").value(user2.getId()))
               .andExpect(jsonPath("$.username").value(user2.getUsername()))
               .andExpect(jsonPath("$.firstName").value(user2.getFirstName()))
               .andExpect(jsonPath("$.lastName").value(user2.getLastName()))
               .andExpect(jsonPath("$.email").value(user2.getEmail()))
-              .andExpect(jsonPath("$.password").value(user2.getPassword()))
+              .andExpect(jsonPath("$.password").doesNotExist())
               .andExpect(jsonPath("$.phone").value(user2.getPhone()))
               .andExpect(jsonPath("$.userStatus").value(user2.getUserStatus()))
               .andReturn();
         verify(userService).updateUser(user2);
         User response = objectMapper.readValue(result.getResponse().getContentAsString(), User.class);
-        assertThat(response).isEqualTo(user2);
+        assertThat(response).usingRecursiveComparison().ignoringFields("password").isEqualTo(user2);
     }
 
     @Test
@@ -176,29 +187,31 @@ class UserControllerMockMvcTest {
     @Test
     void saveUsersArray_shouldAddMultipleUsersToList() throws Exception {
         User[] users = new User[]{user1, user2};
-        given(userService.saveUsersArray(users)).willReturn(List.of(user1, user2));
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userService.saveUsersArray(users)).willReturn(report);
         MvcResult result = mockMvc.perform(post("/user/createWithArray").accept(APPLICATION_JSON_VALUE)
                     .contentType(APPLICATION_JSON_VALUE)
-                    .content(objectMapper.writeValueAsString(List.of(user1, user2))))
+                    .content(objectMapper.writeValueAsString(List.of(requestBody(user1), requestBody(user2)))))
               .andExpect(status().isCreated())
               .andReturn();
         verify(userService).saveUsersArray(users);
-        List<User> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
-        assertThat(response).isEqualTo(List.of(user1, user2));
+        UserBatchReport response = objectMapper.readValue(result.getResponse().getContentAsString(), UserBatchReport.class);
+        assertThat(response).usingRecursiveComparison().ignoringFields("created.password").isEqualTo(report);
     }
 
     @Test
     void saveUsersList_shouldAddMultipleUsersToList() throws Exception {
         List<User> users = List.of(user1, user2);
-        given(userService.saveUsersList(users)).willReturn(users);
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userService.saveUsersList(users)).willReturn(report);
         MvcResult result = mockMvc.perform(post("/user/createWithList").accept(APPLICATION_JSON_VALUE)
                     .contentType(APPLICATION_JSON_VALUE)
-                    .content(objectMapper.writeValueAsString(List.of(user1, user2))))
+                    .content(objectMapper.writeValueAsString(List.of(requestBody(user1), requestBody(user2)))))
               .andExpect(status().isCreated())
               .andReturn();
         verify(userService).saveUsersList(users);
-        List<User> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
-        assertThat(response).isEqualTo(users);
+        UserBatchReport response = objectMapper.readValue(result.getResponse().getContentAsString(), UserBatchReport.class);
+        assertThat(response).usingRecursiveComparison().ignoringFields("created.password").isEqualTo(report);
     }
 
     @Test
@@ -212,13 +225,13 @@ class UserControllerMockMvcTest {
               .andExpect(jsonPath("$.firstName").value(user1.getFirstName()))
               .andExpect(jsonPath("$.lastName").value(user1.getLastName()))
               .andExpect(jsonPath("$.email").value(user1.getEmail()))
-              .andExpect(jsonPath("$.password").value(user1.getPassword()))
+              .andExpect(jsonPath("$.password").doesNotExist())
               .andExpect(jsonPath("$.phone").value(user1.getPhone()))
               .andExpect(jsonPath("$.userStatus").value(user1.getUserStatus()))
               .andReturn();
         verify(userService).getUserByUsername(username);
         User response = objectMapper.readValue(result.getResponse().getContentAsString(), User.class);
-        assertThat(response).isEqualTo(user1);
+        assertThat(response).usingRecursiveComparison().ignoringFields("password").isEqualTo(user1);
     }
 
     @Test
@@ -240,20 +253,20 @@ class UserControllerMockMvcTest {
         given(userService.updateUserByUsername(user2, username)).willReturn(resultUser);
         MvcResult result = mockMvc.perform(put("/user/username/{username}", username).accept(APPLICATION_JSON_VALUE)
                     .contentType(APPLICATION_JSON_VALUE)
-                    .content(objectMapper.writeValueAsString(user2)))
+                    .content(objectMapper.writeValueAsString(requestBody(user2))))
               .andExpect(status().isOk())
               .andExpect(jsonPath("$.id").value(user2.getId()))
               .andExpect(jsonPath("$.username").value(user2.getUsername()))
               .andExpect(jsonPath("$.firstName").value(user2.getFirstName()))
               .andExpect(jsonPath("$.lastName").value(user2.getLastName()))
               .andExpect(jsonPath("$.email").value(user2.getEmail()))
-              .andExpect(jsonPath("$.password").value(user2.getPassword()))
+              .andExpect(jsonPath("$.password").doesNotExist())
               .andExpect(jsonPath("$.phone").value(user2.getPhone()))
               .andExpect(jsonPath("$.userStatus").value(user2.getUserStatus()))
               .andReturn();
         verify(userService).updateUserByUsername(user2, username);
         User response = objectMapper.readValue(result.getResponse().getContentAsString(), User.class);
-        assertThat(response).isEqualTo(user2);
+        assertThat(response).usingRecursiveComparison().ignoringFields("password").isEqualTo(user2);
     }
 
     @Test
@@ -265,26 +278,48 @@ class UserControllerMockMvcTest {
     }
 
     @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() throws Exception {
+    void login_shouldReturnSessionToken() throws Exception {
         String username = "test_username1", password = "%23Test_password1", message = "Logged in successfully";
-        given(userService.login(username, password)).willReturn(message);
+        given(userService.login(username, password, "127.0.0.1")).willReturn("token");
         MvcResult result = mockMvc.perform(get("/user/login?username=" + username + "&password=" + password))
               .andExpect(status().isOk())
               .andReturn();
-        verify(userService).login(username, password);
+        verify(userService).login(username, password, "127.0.0.1");
         Map<String, String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
-        assertThat(response).containsEntry("message", message);
+        assertThat(response).containsEntry("message", message).containsEntry("token", "token");
     }
 
     @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() throws Exception {
+    void logout_shouldRevokeBearerToken() throws Exception {
         String message = "Logged out successfully";
-        given(userService.logout()).willReturn(message);
-        MvcResult result = mockMvc.perform(get("/user/logout"))
+        MvcResult result = mockMvc.perform(get("/user/logout").header(HttpHeaders.AUTHORIZATION, "Bearer token"))
               .andExpect(status().isOk())
               .andReturn();
-        verify(userService).logout();
+        verify(userService).logout("token");
         Map<String, String> response = objectMapper.readValue(result.getResponse().getContentAsString(), new TypeReference<>() {});
         assertThat(response).containsEntry("message", message);
     }
+
+    @Test
+    void logout_withoutToken_shouldReturnUnauthorized() throws Exception {
+        willThrow(new UnauthorizedException(INVALID_SESSION)).given(userService).logout(null);
+        mockMvc.perform(get("/user/logout"))
+              .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void login_whenBlocked_shouldReturnTooManyRequests() throws Exception {
+        given(userService.login("test_username1", "guess", "127.0.0.1")).willThrow(new TooManyRequestsException(TOO_MANY_FAILED_LOGINS));
+        MvcResult result = mockMvc.perform(get("/user/login?username=test_username1&password=guess"))
+              .andExpect(status().isTooManyRequests())
+              .andReturn();
+        assertThat(result.getResponse().getContentAsString()).isEqualTo("Too many requests: " + TOO_MANY_FAILED_LOGINS);
+    }
+
+    /**
+     * Writes the user as a request body. The password is write-only, so Jackson leaves it out and it is added here.
+     */
+    private ObjectNode requestBody(User user) {
+        return objectMapper.<ObjectNode>valueToTree(user).put("password", user.getPassword());
+    }
 }
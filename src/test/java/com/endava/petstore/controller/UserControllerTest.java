@@ -1,7 +1,10 @@
 package com.endava.petstore.controller;
 
+import com.endava.petstore.model.BatchError;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.service.UserService;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,9 +13,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import static com.endava.petstore.constants.Constants.NEXT_PAGE_HEADER;
 import static com.endava.petstore.mock.UserMock.getMockedUser1;
 import static com.endava.petstore.mock.UserMock.getMockedUser2;
 import static com.endava.petstore.mock.UserMock.getMockedUsers;
@@ -33,9 +41,11 @@ class UserControllerTest {
     private User user1;
     private User user2;
     private List<User> users;
+    private ServletWebRequest webRequest;
 
     @BeforeEach
     void setUp() {
+        webRequest = new ServletWebRequest(new MockHttpServletRequest(), new MockHttpServletResponse());
         user1 = getMockedUser1();
         user2 = getMockedUser2();
         users = getMockedUsers();
@@ -44,18 +54,27 @@ class UserControllerTest {
     @Test
     void getAllUsers_shouldReturnAllUsers() {
         given(userService.getAllUsers()).willReturn(users);
-        ResponseEntity<List<User>> response = userController.getAllUsers();
+        ResponseEntity<List<User>> response = userController.getAllUsers(null, 100, true, webRequest);
         verify(userService).getAllUsers();
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(users);
     }
 
+    @Test
+    void getAllUsers_withFullPage_shouldReturnNextPageCursor() {
+        given(userService.getUsersPage(null, 2)).willReturn(List.of(user1, user2));
+        ResponseEntity<List<User>> response = userController.getAllUsers(null, 2, false, webRequest);
+        verify(userService).getUsersPage(null, 2);
+        assertThat(response.getHeaders().getFirst(NEXT_PAGE_HEADER)).isEqualTo(String.valueOf(user2.getId()));
+        assertThat(response.getBody()).isEqualTo(List.of(user1, user2));
+    }
+
     @Test
     void getUserById_shouldReturnUserWithGivenId() {
-        given(userService.getUserById(1L)).willReturn(user1);
-        ResponseEntity<User> response = userController.getUserById(1L);
-        verify(userService).getUserById(1L);
+        given(userService.getVersionedUserById(1L)).willReturn(new Versioned<>(user1, 1L));
+        ResponseEntity<User> response = userController.getUserById(1L, webRequest);
+        verify(userService).getVersionedUserById(1L);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).isEqualTo(user1);
@@ -92,23 +111,36 @@ class UserControllerTest {
     @Test
     void saveUsersArray_shouldAddMultipleUsersToList() {
         User[] users = new User[]{user1, user2};
-        given(userService.saveUsersArray(users)).willReturn(List.of(user1, user2));
-        ResponseEntity<List<User>> response = userController.saveUsersArray(users);
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userService.saveUsersArray(users)).willReturn(report);
+        ResponseEntity<UserBatchReport> response = userController.saveUsersArray(users);
         verify(userService).saveUsersArray(users);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
-        assertThat(response.getBody()).isEqualTo(List.of(user1, user2));
+        assertThat(response.getBody()).isEqualTo(report);
     }
 
     @Test
     void saveUsersList_shouldAddMultipleUsersToList() {
         List<User> users = List.of(user1, user2);
-        given(userService.saveUsersList(users)).willReturn(List.of(user1, user2));
-        ResponseEntity<List<User>> response = userController.saveUsersList(users);
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userService.saveUsersList(users)).willReturn(report);
+        ResponseEntity<UserBatchReport> response = userController.saveUsersList(users);
         verify(userService).saveUsersList(users);
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
-        assertThat(response.getBody()).isEqualTo(List.of(user1, user2));
+        assertThat(response.getBody()).isEqualTo(report);
+    }
+
+    @Test
+    void saveUsersList_withEveryElementRejected_shouldReturnBadRequest() {
+        List<User> users = List.of(user1);
+        UserBatchReport report = UserBatchReport.builder().received(1).created(List.of()).rejected(1)
+              .errors(List.of(new BatchError(0, "phone: must match"))).build();
+        given(userService.saveUsersList(users)).willReturn(report);
+        ResponseEntity<UserBatchReport> response = userController.saveUsersList(users);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getBody()).isEqualTo(report);
     }
 
     @Test
@@ -144,24 +176,47 @@ class UserControllerTest {
     }
 
     @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() {
+    void login_shouldReturnSessionToken() {
         String username = "test_username1", password = "#Test_password1", message = "Logged in successfully";
-        given(userService.login(username, password)).willReturn(message);
-        ResponseEntity<Map<String, String>> response = userController.login(username, password);
-        verify(userService).login(username, password);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/login");
+        request.setRemoteAddr("192.0.2.1");
+        given(userService.login(username, password, "192.0.2.1")).willReturn("token");
+        ResponseEntity<Map<String, String>> response = userController.login(username, password, request);
+        verify(userService).login(username, password, "192.0.2.1");
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody()).containsEntry("message", message);
+        assertThat(response.getBody()).containsEntry("message", message).containsEntry("token", "token");
     }
 
     @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() {
+    void logout_shouldRevokeBearerToken() {
         String message = "Logged out successfully";
-        given(userService.logout()).willReturn(message);
-        ResponseEntity<Map<String, String>> response = userController.logout();
-        verify(userService).logout();
+        ResponseEntity<Map<String, String>> response = userController.logout("Bearer token");
+        verify(userService).logout("token");
         assertNotNull(response);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(response.getBody()).containsEntry("message", message);
     }
+
+    @Test
+    void getSessionUser_shouldReturnUserOfBearerToken() {
+        given(userService.getSessionUser("token")).willReturn(user1);
+        ResponseEntity<User> response = userController.getSessionUser("Bearer token");
+        verify(userService).getSessionUser("token");
+        assertNotNull(response);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(user1);
+    }
+
+    @Test
+    void getAllUsers_withMatchingIfNoneMatch_shouldNotReadPage() {
+        given(userService.getUsersVersion()).willReturn(5L);
+        given(userService.getUsersPage(null, 2)).willReturn(List.of(user1, user2));
+        String etag = userController.getAllUsers(null, 2, false, webRequest).getHeaders().getETag();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        ResponseEntity<List<User>> response = userController.getAllUsers(null, 2, false, new ServletWebRequest(request, new MockHttpServletResponse()));
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        verify(userService).getUsersPage(null, 2);
+    }
 }
@@ -12,10 +12,7 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
-import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.web.multipart.MultipartFile;
 
-import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
 import static com.endava.petstore.mock.PetMock.getMockedPet2;
@@ -24,7 +21,6 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
-import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 
 @ExtendWith(MockitoExtension.class)
 class PetRepositoryImplTest {
@@ -59,6 +55,13 @@ class PetRepositoryImplTest {
         assertThat(result).isEqualTo(pet1);
     }
 
+    @Test
+    void getPetsByIds_shouldReturnPetsWithGivenIds() {
+        given(petRepository.getPetsByIds(List.of(1L, 2L))).willReturn(List.of(pet1, pet2));
+        List<Pet> result = petRepository.getPetsByIds(List.of(1L, 2L));
+        assertThat(result).isEqualTo(List.of(pet1, pet2));
+    }
+
     @Test
     void savePet_shouldAddPetToList() {
         given(petRepository.savePet(any(Pet.class))).willReturn(pet1);
@@ -105,12 +108,10 @@ class PetRepositoryImplTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
-        MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
-        String additionalMetadata = "test_image";
-        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
-        given(petRepository.uploadPetImage(1L, additionalMetadata, file)).willReturn(httpResponse);
-        HttpResponse result = petRepository.uploadPetImage(1L, additionalMetadata, file);
-        assertThat(result).isEqualTo(httpResponse);
+    void addPetImage_shouldAppendToImageIdsOfCurrentPet() {
+        Pet updatedPet = pet1.toBuilder().imageIds(List.of("test_image")).build();
+        given(petRepository.addPetImage(1L, "test_image")).willReturn(updatedPet);
+        Pet result = petRepository.addPetImage(1L, "test_image");
+        assertThat(result).isEqualTo(updatedPet);
     }
 }
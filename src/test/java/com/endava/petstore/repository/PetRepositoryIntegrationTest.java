@@ -10,10 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
-import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.web.multipart.MultipartFile;
 
-import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
 import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
@@ -21,7 +18,6 @@ import static com.endava.petstore.mock.PetMock.getMockedPet2;
 import static com.endava.petstore.mock.PetMock.getMockedPets;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
-import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 
 @SpringBootTest
 class PetRepositoryIntegrationTest {
@@ -59,6 +55,21 @@ class PetRepositoryIntegrationTest {
               .hasMessage(String.format(PET_NOT_FOUND, 999L));
     }
 
+    @Test
+    void getPetsByIds_shouldSkipMissingAndDuplicateIds() {
+        petRepository.savePet(pet1);
+        List<Pet> result = petRepository.getPetsByIds(List.of(1L, 999L, 1L));
+        assertThat(result).isEqualTo(List.of(pet1));
+    }
+
+    @Test
+    void getPetsPage_shouldReturnPetsAfterGivenIdInIdOrder() {
+        petRepository.savePet(pet2);
+        petRepository.savePet(pet1);
+        assertThat(petRepository.getPetsPage(null, 1)).isEqualTo(List.of(pet1));
+        assertThat(petRepository.getPetsPage(pet1.getId(), 1)).isEqualTo(List.of(pet2));
+    }
+
     @Test
     void savePet_shouldAddPetToList() {
         Pet result = petRepository.savePet(pet1);
@@ -93,6 +104,14 @@ class PetRepositoryIntegrationTest {
         assertThat(result).isEqualTo(List.of(pet1, pet2));
     }
 
+    @Test
+    void getPetsByAllTags_shouldReturnOnlyPetsWithEveryGivenTag() {
+        petRepository.savePet(pet1);
+        List<String> tagNames = List.of("test_tag1", "test_tag2", "test_tag3");
+        assertThat(petRepository.getPetsByAllTags(tagNames)).isEmpty();
+        assertThat(petRepository.getPetsByAllTags(List.of("test_tag1", "test_tag2"))).isEqualTo(List.of(pet1));
+    }
+
     @Test
     void updatePetFormData_shouldModifyCurrentPetAccordingToForm() {
         String name = "test_pet1";
@@ -103,11 +122,19 @@ class PetRepositoryIntegrationTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
-        MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
-        String additionalMetadata = "test_image";
-        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
-        HttpResponse result = petRepository.uploadPetImage(1L, additionalMetadata, file);
-        assertThat(result).isEqualTo(httpResponse);
+    void addPetImage_shouldAppendToImageIdsOfCurrentPet() {
+        petRepository.savePet(pet1.toBuilder().id(80L).build());
+        petRepository.addPetImage(80L, "test_image1");
+        Pet result = petRepository.addPetImage(80L, "test_image2");
+        assertThat(result.getImageIds()).containsExactly("test_image1", "test_image2");
+        assertThat(petRepository.getPetById(80L)).isEqualTo(result);
+        petRepository.deletePetById(80L);
+    }
+
+    @Test
+    void addPetImage_withInvalidId_shouldThrowException() {
+        assertThatThrownBy(() -> petRepository.addPetImage(999L, "test_image"))
+              .isInstanceOf(ResourceNotFoundException.class)
+              .hasMessage(String.format(PET_NOT_FOUND, 999L));
     }
 }
@@ -1,6 +1,7 @@
 package com.endava.petstore.repository;
 
 import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
@@ -97,4 +98,12 @@ class StoreRepositoryIntegrationTest {
         List<Pet> result = storeRepository.getPetsByOrderStatus(orderStatus);
         assertThat(result).isEqualTo(List.of(pet1));
     }
+
+    @Test
+    void getInventorySummary_shouldCountEveryStoredOrderOnce() {
+        InventorySummary result = storeRepository.getInventorySummary();
+        assertThat(result.getPets()).containsOnlyKeys("available", "pending", "sold");
+        assertThat(result.getOrders()).containsOnlyKeys("placed", "approved", "delivered");
+        assertThat(result.getOrders().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(storeRepository.getAllOrders().size());
+    }
 }
@@ -2,6 +2,7 @@ package com.endava.petstore.repository;
 
 import com.endava.petstore.model.User;
 import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -72,19 +73,11 @@ class UserRepositoryImplTest {
     }
 
     @Test
-    void saveUsersArray_shouldAddMultipleUsersToList() {
-        User[] users = new User[]{user1, user2};
-        given(userRepository.saveUsersArray(users)).willReturn(List.of(user1, user2));
-        List<User> result = userRepository.saveUsersArray(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
-    }
-
-    @Test
-    void saveUsersList_shouldAddMultipleUsersToList() {
+    void saveUsers_shouldAddMultipleUsersToList() {
         List<User> users = List.of(user1, user2);
-        given(userRepository.saveUsersList(users)).willReturn(List.of(user1, user2));
-        List<User> result = userRepository.saveUsersList(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        given(userRepository.saveUsers(users)).willReturn(Set.of());
+        Set<Long> result = userRepository.saveUsers(users);
+        assertThat(result).isEmpty();
     }
 
     @Test
@@ -109,20 +102,4 @@ class UserRepositoryImplTest {
     void deleteUserByUsername_shouldRemoveUserFromList() {
         userRepository.deleteUserByUsername(user1.getUsername());
     }
-
-    @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() {
-        String username = "test_username1", password = "#Test_password1", message = "Logged in successfully";
-        given(userRepository.login(username, password)).willReturn(message);
-        String result = userRepository.login(username, password);
-        assertThat(result).isEqualTo(message);
-    }
-
-    @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() {
-        String message = "Logged out successfully";
-        given(userRepository.logout()).willReturn(message);
-        String result = userRepository.logout();
-        assertThat(result).isEqualTo(message);
-    }
 }
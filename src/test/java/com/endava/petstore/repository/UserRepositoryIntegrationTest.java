@@ -4,12 +4,13 @@ import com.endava.petstore.exception.InvalidResourceException;
 import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.User;
 import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
-import static com.endava.petstore.constants.Constants.INVALID_USER_CREDENTIALS;
+import static com.endava.petstore.constants.Constants.USERNAME_ALREADY_EXISTS;
 import static com.endava.petstore.constants.Constants.USERNAME_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.USER_NOT_FOUND;
 import static com.endava.petstore.mock.UserMock.getMockedUser1;
@@ -72,24 +73,35 @@ class UserRepositoryIntegrationTest {
 
     @Test
     void deleteUser_shouldRemoveUserFromList() {
-        userRepository.deleteUserById(user2.getId());
-        assertThatThrownBy(() -> userRepository.getUserById(999L))
+        userRepository.saveUser(user1.toBuilder().id(63L).username("delete_by_id").build());
+        userRepository.deleteUserById(63L);
+        assertThatThrownBy(() -> userRepository.getUserById(63L))
               .isInstanceOf(ResourceNotFoundException.class)
-              .hasMessage(String.format(USER_NOT_FOUND, 999L));
+              .hasMessage(String.format(USER_NOT_FOUND, 63L));
     }
 
     @Test
-    void saveUsersArray_shouldAddMultipleUsersToList() {
-        User[] users = new User[]{user1, user2};
-        List<User> result = userRepository.saveUsersArray(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+    void saveUsers_shouldAddMultipleUsersToList() {
+        List<User> users = List.of(user1, user2);
+        Set<Long> result = userRepository.saveUsers(users);
+        assertThat(result).isEmpty();
+        assertThat(userRepository.getUserById(user1.getId())).isEqualTo(user1);
+        assertThat(userRepository.getUserById(user2.getId())).isEqualTo(user2);
     }
 
     @Test
-    void saveUsersList_shouldAddMultipleUsersToList() {
-        List<User> users = List.of(user1, user2);
-        List<User> result = userRepository.saveUsersList(users);
-        assertThat(result).isEqualTo(users);
+    void saveUsers_withTakenUsername_shouldSkipAndReturnThatId() {
+        User owner = user1.toBuilder().id(60L).username("batch_owner").build();
+        userRepository.saveUser(owner);
+        User conflicting = user1.toBuilder().id(61L).username("batch_owner").build();
+        User fresh = user1.toBuilder().id(62L).username("batch_fresh").build();
+        Set<Long> result = userRepository.saveUsers(List.of(conflicting, fresh));
+        assertThat(result).containsExactly(61L);
+        assertThat(userRepository.getUserByUsername("batch_owner")).isEqualTo(owner);
+        assertThat(userRepository.getUserById(62L)).isEqualTo(fresh);
+        assertThatThrownBy(() -> userRepository.getUserById(61L)).isInstanceOf(ResourceNotFoundException.class);
+        userRepository.deleteUserById(60L);
+        userRepository.deleteUserById(62L);
     }
 
     @Test
@@ -112,38 +124,30 @@ class UserRepositoryIntegrationTest {
         String username = "test_username1";
         User resultUser = user2;
         resultUser.setId(1L);
+        resultUser.setUsername(username);
         User result = userRepository.updateUserByUsername(user2, username);
         assertThat(result).isEqualTo(resultUser);
     }
 
+    @Test
+    void saveUser_withUsernameOfAnotherUser_shouldThrowException() {
+        User duplicateUser = getMockedUser3();
+        duplicateUser.setId(999L);
+        assertThatThrownBy(() -> userRepository.saveUser(duplicateUser))
+              .isInstanceOf(InvalidResourceException.class)
+              .hasMessage(String.format(USERNAME_ALREADY_EXISTS, duplicateUser.getUsername()));
+        assertThatThrownBy(() -> userRepository.getUserById(999L))
+              .isInstanceOf(ResourceNotFoundException.class);
+    }
+
     @Test
     void deleteUserByUsername_shouldRemoveUserFromList() {
         String invalidUsername = "invalid username";
-        userRepository.deleteUserByUsername(user2.getUsername());
+        userRepository.saveUser(user1.toBuilder().id(64L).username("delete_by_username").build());
+        userRepository.deleteUserByUsername("delete_by_username");
+        assertThatThrownBy(() -> userRepository.getUserById(64L)).isInstanceOf(ResourceNotFoundException.class);
         assertThatThrownBy(() -> userRepository.deleteUserByUsername(invalidUsername))
               .isInstanceOf(ResourceNotFoundException.class)
               .hasMessage(String.format(USERNAME_NOT_FOUND, invalidUsername));
     }
-
-    @Test
-    void login_withValidCredentials_shouldAuthenticateTheUserIntoTheSystem() {
-        String username = "test_username1", password = "#Test_password1", message = "Logged in successfully";
-        String result = userRepository.login(username, password);
-        assertThat(result).isEqualTo(message);
-    }
-
-    @Test
-    void login_withInvalidCredentials_shouldThrowException() {
-        String username = "test_username1", password = "#Test_password";
-        assertThatThrownBy(() -> userRepository.login(username, password))
-              .isInstanceOf(InvalidResourceException.class)
-              .hasMessage(String.format(INVALID_USER_CREDENTIALS, username, password));
-    }
-
-    @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() {
-        String message = "Logged out successfully";
-        String result = userRepository.logout();
-        assertThat(result).isEqualTo(message);
-    }
 }
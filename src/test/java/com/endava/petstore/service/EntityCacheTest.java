@@ -0,0 +1,130 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.Versioned;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EntityCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+    private EntityStore<String> store;
+    private EntityCache<String> cache;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+        cache = new EntityCache<>("test", store, 2, 60, 5, meterRegistry);
+        ReflectionTestUtils.setField(cache, "nanoTime", (LongSupplier) now::get);
+    }
+
+    @Test
+    void get_afterMiss_shouldAnswerFromCache() {
+        Versioned<String> first = get(1L);
+        Versioned<String> second = get(1L);
+
+        assertThat(second).isSameAs(first);
+        assertThat(loads).hasValue(1);
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void get_withMissingId_shouldCacheNotFoundUntilTheIdIsWritten() {
+        assertThatThrownBy(() -> get(4L)).isInstanceOf(ResourceNotFoundException.class).hasMessage("No entity with id 4");
+        assertThatThrownBy(() -> get(4L)).isInstanceOf(ResourceNotFoundException.class).hasMessage("No entity with id 4");
+        assertThat(loads).hasValue(1);
+        assertThat(gets("negative-hit")).isEqualTo(1);
+
+        store.put(4L, "four");
+
+        assertThat(get(4L).value()).isEqualTo("four");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void write_shouldReplaceOrDropCachedEntry() {
+        Versioned<String> cached = get(1L);
+
+        store.update(1L, value -> "uno");
+        Versioned<String> updated = get(1L);
+        assertThat(updated.value()).isEqualTo("uno");
+        assertThat(updated.version()).isGreaterThan(cached.version());
+        assertThat(loads).hasValue(1);
+
+        store.remove(1L);
+        assertThatThrownBy(() -> get(1L)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void get_afterTimeToLive_shouldReload() {
+        get(1L);
+        assertThatThrownBy(() -> get(4L)).isInstanceOf(ResourceNotFoundException.class);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        get(1L);
+        assertThatThrownBy(() -> get(4L)).isInstanceOf(ResourceNotFoundException.class);
+        assertThat(loads).hasValue(3);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(55));
+        get(1L);
+        assertThat(loads).hasValue(4);
+        assertThat(meterRegistry.get("petstore.entity-cache.evictions").tag("cause", "expired").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void get_beyondMaxEntries_shouldEvictLeastRecentlyUsed() {
+        get(1L);
+        get(2L);
+        get(1L);
+        get(3L);
+
+        get(1L);
+        assertThat(loads).hasValue(3);
+        get(2L);
+        assertThat(loads).hasValue(4);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(meterRegistry.get("petstore.entity-cache.evictions").tag("cause", "size").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void get_whenEntityIsWrittenDuringLoad_shouldNotCacheLoadedValue() {
+        Versioned<String> loaded = cache.get("get", 1L, () -> {
+            Versioned<String> value = store.getVersioned(1L).orElseThrow();
+            store.update(1L, current -> "uno");
+            return value;
+        });
+
+        assertThat(loaded.value()).isEqualTo("one");
+        assertThat(get(1L).value()).isEqualTo("uno");
+        assertThat(loads).hasValue(1);
+    }
+
+    private Versioned<String> get(Long id) {
+        return cache.get("get", id, () -> {
+            loads.incrementAndGet();
+            return store.getVersioned(id).orElseThrow(() -> new ResourceNotFoundException("No entity with id " + id));
+        });
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("petstore.entity-cache.gets").tag("result", result).timer().count();
+    }
+}
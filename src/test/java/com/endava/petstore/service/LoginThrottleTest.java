@@ -0,0 +1,133 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.endava.petstore.constants.Constants.TOO_MANY_FAILED_LOGINS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class LoginThrottleTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private LoginThrottle loginThrottle;
+
+    @BeforeEach
+    void setUp() {
+        loginThrottle = new LoginThrottle(meterRegistry);
+        ReflectionTestUtils.setField(loginThrottle, "windowSeconds", 60L);
+        ReflectionTestUtils.setField(loginThrottle, "buckets", 6);
+        ReflectionTestUtils.setField(loginThrottle, "maxFailuresPerUsername", 3);
+        ReflectionTestUtils.setField(loginThrottle, "maxFailuresPerAddress", 5);
+        ReflectionTestUtils.setField(loginThrottle, "blockSeconds", 120L);
+        ReflectionTestUtils.setField(loginThrottle, "nanoTime", (LongSupplier) now::get);
+        loginThrottle.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginThrottle.stop();
+    }
+
+    @Test
+    void recordFailure_atUsernameLimit_shouldBlockTheUsernameForTheBlockTime() {
+        IntStream.range(0, 3).forEach(i -> loginThrottle.recordFailure("test_username1", "192.0.2." + i));
+
+        assertThatThrownBy(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.9"))
+              .isInstanceOf(TooManyRequestsException.class)
+              .hasMessage(TOO_MANY_FAILED_LOGINS);
+        assertThatCode(() -> loginThrottle.checkAllowed("test_username2", "192.0.2.1")).doesNotThrowAnyException();
+        advance(119);
+        assertThatThrownBy(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.9")).isInstanceOf(TooManyRequestsException.class);
+        advance(1);
+        assertThatCode(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.9")).doesNotThrowAnyException();
+        assertThat(meterRegistry.get("petstore.login-throttle.blocks").tag("scope", "username").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("petstore.login-throttle.rejected").tag("scope", "username").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void recordFailure_atAddressLimit_shouldBlockTheAddressForEveryUsername() {
+        IntStream.range(0, 5).forEach(i -> loginThrottle.recordFailure("guess_" + i, "192.0.2.1"));
+
+        assertThatThrownBy(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.1")).isInstanceOf(TooManyRequestsException.class);
+        assertThatCode(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.2")).doesNotThrowAnyException();
+        assertThat(meterRegistry.get("petstore.login-throttle.blocks").tag("scope", "address").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordFailure_spreadBeyondTheWindow_shouldNotBlock() {
+        loginThrottle.recordFailure("test_username1", "192.0.2.1");
+        loginThrottle.recordFailure("test_username1", "192.0.2.1");
+        advance(60);
+        loginThrottle.recordFailure("test_username1", "192.0.2.1");
+
+        assertThatCode(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.1")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void recordSuccess_shouldForgetFailuresOfTheUsernameButNotOfTheAddress() {
+        IntStream.range(0, 2).forEach(i -> loginThrottle.recordFailure("test_username1", "192.0.2.1"));
+        loginThrottle.recordSuccess("test_username1");
+        IntStream.range(0, 2).forEach(i -> loginThrottle.recordFailure("test_username1", "192.0.2.1"));
+        assertThatCode(() -> loginThrottle.checkAllowed("test_username1", "192.0.2.2")).doesNotThrowAnyException();
+
+        loginThrottle.recordFailure("test_username2", "192.0.2.1");
+        assertThatThrownBy(() -> loginThrottle.checkAllowed("test_username3", "192.0.2.1")).isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void sweep_shouldDropCountersWithoutFailuresInTheWindowThatAreNotBlocking() {
+        loginThrottle.recordFailure("test_username1", "192.0.2.1");
+        IntStream.range(0, 3).forEach(i -> loginThrottle.recordFailure("test_username2", "192.0.2.2"));
+        assertThat(loginThrottle.tracked()).isEqualTo(4);
+
+        advance(60);
+        loginThrottle.sweep();
+        assertThat(loginThrottle.tracked()).isEqualTo(1);
+        advance(60);
+        loginThrottle.sweep();
+        assertThat(loginThrottle.tracked()).isZero();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void checkAllowed_successfulLoginOverhead() {
+        ReflectionTestUtils.setField(loginThrottle, "nanoTime", (LongSupplier) System::nanoTime);
+        IntStream.range(0, 10_000).forEach(i -> loginThrottle.recordFailure("failing_" + i, "198.51.100." + i % 256));
+        int threads = Runtime.getRuntime().availableProcessors();
+        int logins = Integer.getInteger("petstore.benchmark.logins", 2_000_000);
+        String[] usernames = IntStream.range(0, 1024).mapToObj(i -> "test_username" + i).toArray(String[]::new);
+
+        long begin = System.nanoTime();
+        IntStream.range(0, threads).parallel().forEach(thread -> {
+            for(int i = 0; i < logins / threads; i++) {
+                String username = usernames[i & 1023];
+                loginThrottle.checkAllowed(username, "192.0.2.1");
+                loginThrottle.recordSuccess(username);
+            }
+        });
+        long elapsed = System.nanoTime() - begin;
+
+        log.info("LoginThrottle: {} successful logins on {} threads, {} ns per login per thread, {} logins/s",
+              logins, threads, String.format("%.0f", (double) elapsed * threads / logins), String.format("%.0f", logins * 1e9 / elapsed));
+        assertThat(loginThrottle.tracked()).isGreaterThan(10_000);
+    }
+
+    private void advance(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
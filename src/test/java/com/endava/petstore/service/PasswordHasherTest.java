@@ -0,0 +1,179 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class PasswordHasherTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private PasswordHasher passwordHasher;
+
+    @BeforeEach
+    void setUp() {
+        passwordHasher = passwordHasher(1000, 60);
+        ReflectionTestUtils.setField(passwordHasher, "nanoTime", (LongSupplier) now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.stop();
+    }
+
+    @Test
+    void hash_shouldSaltEveryHashAndVerifyOnlyTheSamePassword() {
+        String first = passwordHasher.hash("#Test_password1");
+        String second = passwordHasher.hash("#Test_password1");
+
+        assertThat(first).startsWith("pbkdf2-sha512$1000$").isNotEqualTo(second);
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", first)).isTrue();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", second)).isTrue();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", first)).isFalse();
+        assertThat(passwordHasher.verify("test_username1", null, first)).isFalse();
+    }
+
+    @Test
+    void verify_withHashOfAnotherCost_shouldUseTheCostOfTheHash() {
+        String stored = passwordHasher.hash("#Test_password1");
+        passwordHasher.stop();
+        passwordHasher = passwordHasher(2000, 60);
+
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", stored)).isTrue();
+        assertThat(passwordHasher.hash("#Test_password1")).startsWith("pbkdf2-sha512$2000$");
+    }
+
+    @Test
+    void verify_withPasswordStoredBeforeHashing_shouldComparePasswords() {
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", "#Test_password1")).isTrue();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", "#Test_password1")).isFalse();
+    }
+
+    @Test
+    void dummyHash_shouldCostTheConfiguredIterationsAndVerifyNoPassword() {
+        String dummy = passwordHasher.dummyHash();
+
+        assertThat(dummy).startsWith("pbkdf2-sha512$1000$");
+        assertThat(passwordHasher.verify("unknown_username", "#Test_password1", dummy)).isFalse();
+        assertThat(passwordHasher.verify("unknown_username", "", dummy)).isFalse();
+        assertThat(hashes("verify")).isEqualTo(2);
+    }
+
+    @Test
+    void hashIfChanged_shouldKeepTheStoredHashOnlyForTheSamePassword() {
+        String stored = passwordHasher.hash("#Test_password1");
+
+        assertThat(passwordHasher.hashIfChanged("test_username1", "#Test_password1", stored)).isEqualTo(stored);
+        String changed = passwordHasher.hashIfChanged("test_username1", "#Test_password2", stored);
+        assertThat(changed).startsWith("pbkdf2-sha512$1000$").isNotEqualTo(stored);
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", changed)).isTrue();
+        assertThat(passwordHasher.hashIfChanged("test_username1", "#Test_password1", "#Test_password1")).startsWith("pbkdf2-sha512$");
+    }
+
+    @Test
+    void verify_afterSuccess_shouldSkipTheHashUntilTheEntryExpiresOrTheHashChanges() {
+        String stored = passwordHasher.hash("#Test_password1");
+
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", stored)).isTrue();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", stored)).isTrue();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", stored)).isFalse();
+        assertThat(verifiedCache("hit")).isEqualTo(1);
+        assertThat(hashes("verify")).isEqualTo(2);
+
+        String changed = passwordHasher.hash("#Test_password2");
+        assertThat(passwordHasher.verify("test_username1", "#Test_password1", changed)).isFalse();
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", changed)).isTrue();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertThat(passwordHasher.verify("test_username1", "#Test_password2", changed)).isTrue();
+        assertThat(verifiedCache("hit")).isEqualTo(1);
+        assertThat(hashes("verify")).isEqualTo(5);
+    }
+
+    @Test
+    void hash_whenQueueIsFull_shouldThrowException() throws Exception {
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(passwordHasher, "executor");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        started.await();
+        executor.execute(() -> awaitQuietly(release));
+
+        assertThatThrownBy(() -> passwordHasher.hash("#Test_password1")).isInstanceOf(ServiceUnavailableException.class);
+        assertThat(meterRegistry.counter("petstore.passwords.rejected").count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void verify_loginThroughputPerCoreAtEachCost() {
+        String[] costs = System.getProperty("petstore.benchmark.password-iterations", "10000,100000,210000").split(",");
+        int logins = Integer.getInteger("petstore.benchmark.logins", 10);
+        for(String cost : costs) {
+            PasswordHasher uncached = passwordHasher(Integer.parseInt(cost.trim()), 0);
+            String stored = uncached.hash("#Test_password1");
+            long begin = System.nanoTime();
+            for(int i = 0; i < logins; i++) {
+                assertThat(uncached.verify("test_username1", "#Test_password1", stored)).isTrue();
+            }
+            long hashed = System.nanoTime() - begin;
+            uncached.stop();
+
+            PasswordHasher cached = passwordHasher(Integer.parseInt(cost.trim()), 60);
+            cached.verify("test_username1", "#Test_password1", stored);
+            begin = System.nanoTime();
+            for(int i = 0; i < logins * 1000; i++) {
+                assertThat(cached.verify("test_username1", "#Test_password1", stored)).isTrue();
+            }
+            long remembered = System.nanoTime() - begin;
+            cached.stop();
+
+            log.info("PasswordHasher: {} iterations, {} logins/s per core hashed, {} logins/s per core remembered",
+                  cost.trim(), String.format("%.1f", logins * 1e9 / hashed), String.format("%.0f", logins * 1000 * 1e9 / remembered));
+        }
+    }
+
+    private PasswordHasher passwordHasher(int iterations, long verifiedTtlSeconds) {
+        PasswordHasher hasher = new PasswordHasher(meterRegistry);
+        ReflectionTestUtils.setField(hasher, "iterations", iterations);
+        ReflectionTestUtils.setField(hasher, "threads", 1);
+        ReflectionTestUtils.setField(hasher, "queueCapacity", 1);
+        ReflectionTestUtils.setField(hasher, "verifiedTtlSeconds", verifiedTtlSeconds);
+        ReflectionTestUtils.setField(hasher, "verifiedMaxEntries", 100);
+        hasher.start();
+        return hasher;
+    }
+
+    private double verifiedCache(String result) {
+        return meterRegistry.get("petstore.passwords.verified-cache").tag("result", result).counter().count();
+    }
+
+    private long hashes(String operation) {
+        return meterRegistry.get("petstore.passwords.hashing").tag("operation", operation).timer().count();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.Status;
+import com.endava.petstore.model.Tag;
+import com.endava.petstore.repository.PetRepositoryImpl;
+import com.endava.petstore.storage.EntityStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PetQueryCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger queries = new AtomicInteger();
+    private EntityStore<Pet> petStore;
+    private PetRepositoryImpl petRepository;
+    private PetQueryCache petQueryCache;
+
+    @BeforeEach
+    void setUp() {
+        petStore = new EntityStore<>();
+        petRepository = new PetRepositoryImpl(petStore);
+        petRepository.initializePets();
+        petQueryCache = new PetQueryCache(petStore, meterRegistry);
+        ReflectionTestUtils.setField(petQueryCache, "maxEntries", 2);
+        petQueryCache.start();
+    }
+
+    @Test
+    void getPetsByStatus_withEquivalentQueries_shouldRunTheQueryOnce() {
+        List<Pet> first = byStatus(Status.SOLD, Status.AVAILABLE);
+        List<Pet> second = byStatus(Status.AVAILABLE, Status.SOLD, Status.AVAILABLE);
+
+        assertThat(second).isSameAs(first).extracting(Pet::getId).containsExactly(1L, 3L);
+        assertThat(queries).hasValue(1);
+        assertThat(meterRegistry.counter("petstore.query-cache.hits").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("petstore.query-cache.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    void write_shouldInvalidateOnlyQueriesThePetWasOrIsPartOf() {
+        byStatus(Status.AVAILABLE);
+        byStatus(Status.PENDING);
+
+        petRepository.updatePetFormData(1L, "renamed", "SOLD");
+
+        assertThat(byStatus(Status.AVAILABLE)).isEmpty();
+        assertThat(byStatus(Status.PENDING)).extracting(Pet::getId).containsExactly(2L);
+        assertThat(queries).hasValue(3);
+        assertThat(meterRegistry.counter("petstore.query-cache.invalidations").count()).isEqualTo(1);
+    }
+
+    @Test
+    void write_withTagChange_shouldInvalidateMatchingTagQueries() {
+        byTags(List.of("test_tag1", "test_tag3"), true);
+        byTags(List.of("test_tag3"), false);
+
+        petStore.update(2L, pet -> pet.toBuilder().tags(List.of(Tag.builder().id(1L).name("test_tag7").build())).build());
+
+        assertThat(byTags(List.of("test_tag3", "test_tag1"), true)).isEmpty();
+        assertThat(byTags(List.of("test_tag3"), false)).isEmpty();
+        assertThat(queries).hasValue(3);
+    }
+
+    @Test
+    void getPetsByStatus_beyondMaxEntries_shouldEvictLeastRecentlyUsed() {
+        byStatus(Status.AVAILABLE);
+        byStatus(Status.PENDING);
+        byStatus(Status.AVAILABLE);
+        byStatus(Status.SOLD);
+
+        byStatus(Status.AVAILABLE);
+        assertThat(queries).hasValue(3);
+        byStatus(Status.PENDING);
+        assertThat(queries).hasValue(4);
+        assertThat(petQueryCache.size()).isEqualTo(2);
+        assertThat(meterRegistry.counter("petstore.query-cache.evictions").count()).isEqualTo(2);
+    }
+
+    @Test
+    void getPetsByStatus_whenPetIsWrittenDuringQuery_shouldNotCacheResult() {
+        Status[] statuses = {Status.AVAILABLE};
+        Supplier<List<Pet>> racingQuery = () -> {
+            List<Pet> result = petRepository.getPetsByStatus(statuses);
+            petRepository.updatePetFormData(1L, "renamed", "AVAILABLE");
+            return result;
+        };
+        petQueryCache.getPetsByStatus(statuses, racingQuery);
+
+        assertThat(byStatus(Status.AVAILABLE)).extracting(Pet::getName).containsExactly("renamed");
+        assertThat(queries).hasValue(1);
+    }
+
+    private List<Pet> byStatus(Status... statuses) {
+        return petQueryCache.getPetsByStatus(statuses, () -> {
+            queries.incrementAndGet();
+            return petRepository.getPetsByStatus(statuses);
+        });
+    }
+
+    private List<Pet> byTags(List<String> tagNames, boolean matchAll) {
+        return petQueryCache.getPetsByTags(tagNames, matchAll, () -> {
+            queries.incrementAndGet();
+            return matchAll ? petRepository.getPetsByAllTags(tagNames) : petRepository.getPetsByTags(tagNames);
+        });
+    }
+}
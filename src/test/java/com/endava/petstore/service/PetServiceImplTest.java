@@ -1,10 +1,17 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.repository.PetRepository;
+import com.endava.petstore.storage.ImageStore;
+import com.endava.petstore.storage.Versioned;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,15 +24,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
+import static com.endava.petstore.constants.Constants.IMAGE_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
+import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
+import static com.endava.petstore.constants.Constants.THUMBNAIL_NOT_FOUND;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
 import static com.endava.petstore.mock.PetMock.getMockedPet2;
 import static com.endava.petstore.mock.PetMock.getMockedPets;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,6 +49,14 @@ class PetServiceImplTest {
     private PetServiceImpl petService;
     @Mock
     private PetRepository petRepository;
+    @Mock
+    private ImageStore imageStore;
+    @Mock
+    private ThumbnailPipeline thumbnailPipeline;
+    @Mock
+    private PetQueryCache petQueryCache;
+    @Mock
+    private EntityCache<Pet> petCache;
     @Captor
     private ArgumentCaptor<Pet> petCaptor;
 
@@ -58,7 +80,8 @@ class PetServiceImplTest {
 
     @Test
     void getPetById_shouldReturnPetWithGivenId() {
-        given(petRepository.getPetById(1L)).willReturn(pet1);
+        given(petCache.get(eq("getPetById"), eq(1L), any())).willAnswer(invocation -> invocation.<Supplier<Versioned<Pet>>>getArgument(2).get());
+        given(petRepository.getVersionedPetById(1L)).willReturn(new Versioned<>(pet1, 1L));
         Pet result = petService.getPetById(1L);
         assertThat(result).isEqualTo(pet1);
     }
@@ -87,6 +110,7 @@ class PetServiceImplTest {
     @Test
     void getPetsByStatus_shouldReturnPetsWithGivenStatuses() {
         Status[] statuses = new Status[]{Status.AVAILABLE, Status.PENDING};
+        given(petQueryCache.getPetsByStatus(eq(statuses), any())).willAnswer(invocation -> invocation.<Supplier<List<Pet>>>getArgument(1).get());
         given(petRepository.getPetsByStatus(statuses)).willReturn(List.of(pet1, pet2));
         List<Pet> result = petService.getPetsByStatus(statuses);
         assertThat(result).isEqualTo(List.of(pet1, pet2));
@@ -95,11 +119,21 @@ class PetServiceImplTest {
     @Test
     void getPetsByTags_shouldReturnPetsWithGivenTags() {
         List<String> tagNames = List.of("test_tag1", "test_tag2", "test_tag3", "test_tag4");
+        given(petQueryCache.getPetsByTags(eq(tagNames), eq(false), any())).willAnswer(invocation -> invocation.<Supplier<List<Pet>>>getArgument(2).get());
         given(petRepository.getPetsByTags(tagNames)).willReturn(List.of(pet1, pet2));
         List<Pet> result = petService.getPetsByTags(tagNames);
         assertThat(result).isEqualTo(List.of(pet1, pet2));
     }
 
+    @Test
+    void getPetsByAllTags_shouldReturnPetsWithAllGivenTags() {
+        List<String> tagNames = List.of("test_tag1", "test_tag2");
+        given(petQueryCache.getPetsByTags(eq(tagNames), eq(true), any())).willAnswer(invocation -> invocation.<Supplier<List<Pet>>>getArgument(2).get());
+        given(petRepository.getPetsByAllTags(tagNames)).willReturn(List.of(pet1));
+        List<Pet> result = petService.getPetsByAllTags(tagNames);
+        assertThat(result).isEqualTo(List.of(pet1));
+    }
+
     @Test
     void updatePetFormData_shouldModifyCurrentPetAccordingToForm() {
         String name = "test_pet1", status = "available";
@@ -110,12 +144,80 @@ class PetServiceImplTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
+    void uploadPetImage_shouldStoreFileAndAddImageIdToPet() throws Exception {
         MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
         String additionalMetadata = "test_image";
-        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
-        given(petRepository.uploadPetImage(1L, additionalMetadata, file)).willReturn(httpResponse);
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(imageStore.save(any(InputStream.class), eq(IMAGE_JPEG_VALUE))).willReturn(imageId);
+        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, imageId, file.getSize()));
         HttpResponse result = petService.uploadPetImage(1L, additionalMetadata, file);
+        verify(petRepository).addPetImage(1L, imageId);
+        verify(thumbnailPipeline).submit(imageId);
         assertThat(result).isEqualTo(httpResponse);
     }
+
+    @Test
+    void uploadPetImage_whenPetIsDeletedMeanwhile_shouldLeaveStoredFileToSweep() throws Exception {
+        MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(imageStore.save(any(InputStream.class), eq(IMAGE_JPEG_VALUE))).willReturn(imageId);
+        given(petRepository.addPetImage(1L, imageId)).willThrow(new ResourceNotFoundException(String.format(PET_NOT_FOUND, 1L)));
+        assertThatThrownBy(() -> petService.uploadPetImage(1L, "test_image", file)).isInstanceOf(ResourceNotFoundException.class);
+        verify(imageStore).save(any(InputStream.class), eq(IMAGE_JPEG_VALUE));
+        verifyNoMoreInteractions(imageStore, thumbnailPipeline);
+    }
+
+    @Test
+    void getPetImage_shouldReturnStoredFileOfPetImage() {
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        Path file = Path.of("images", imageId);
+        given(petRepository.getPetById(1L)).willReturn(pet1.toBuilder().imageIds(List.of(imageId)).build());
+        given(imageStore.find(imageId)).willReturn(Optional.of(file));
+        assertThat(petService.getPetImage(1L, imageId)).isEqualTo(file);
+    }
+
+    @Test
+    void getPetImage_withImageOfAnotherPet_shouldThrowException() {
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(petRepository.getPetById(1L)).willReturn(pet1);
+        assertThatThrownBy(() -> petService.getPetImage(1L, imageId))
+              .isInstanceOf(ResourceNotFoundException.class)
+              .hasMessage(String.format(IMAGE_NOT_FOUND, imageId, 1L));
+    }
+
+    @Test
+    void getPetThumbnail_shouldReturnStoredThumbnail() {
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        Path thumbnail = Path.of("images", "thumbnails", "0123456789abcdef0123456789abcdef-128.png");
+        given(petRepository.getPetById(1L)).willReturn(pet1.toBuilder().imageIds(List.of(imageId)).build());
+        given(imageStore.find(imageId)).willReturn(Optional.of(Path.of("images", imageId)));
+        given(thumbnailPipeline.supports(128)).willReturn(true);
+        given(imageStore.findThumbnail(imageId, 128)).willReturn(Optional.of(thumbnail));
+        assertThat(petService.getPetThumbnail(1L, imageId, 128)).isEqualTo(thumbnail);
+        verify(thumbnailPipeline, never()).submit(imageId);
+    }
+
+    @Test
+    void getPetThumbnail_whenNotGeneratedYet_shouldRequestItAndThrowException() {
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(petRepository.getPetById(1L)).willReturn(pet1.toBuilder().imageIds(List.of(imageId)).build());
+        given(imageStore.find(imageId)).willReturn(Optional.of(Path.of("images", imageId)));
+        given(thumbnailPipeline.supports(128)).willReturn(true);
+        given(imageStore.findThumbnail(imageId, 128)).willReturn(Optional.empty());
+        assertThatThrownBy(() -> petService.getPetThumbnail(1L, imageId, 128))
+              .isInstanceOf(ResourceNotFoundException.class)
+              .hasMessage(String.format(THUMBNAIL_NOT_FOUND, 128, imageId));
+        verify(thumbnailPipeline).submit(imageId);
+    }
+
+    @Test
+    void getPetThumbnail_withUnsupportedSize_shouldThrowException() {
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(petRepository.getPetById(1L)).willReturn(pet1.toBuilder().imageIds(List.of(imageId)).build());
+        given(imageStore.find(imageId)).willReturn(Optional.of(Path.of("images", imageId)));
+        assertThatThrownBy(() -> petService.getPetThumbnail(1L, imageId, 100))
+              .isInstanceOf(ResourceNotFoundException.class)
+              .hasMessage(String.format(THUMBNAIL_NOT_FOUND, 100, imageId));
+        verify(thumbnailPipeline, never()).submit(imageId);
+    }
 }
@@ -1,9 +1,13 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.ResourceNotFoundException;
 import com.endava.petstore.model.HttpResponse;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.model.Status;
 import com.endava.petstore.repository.PetRepository;
+import com.endava.petstore.storage.ImageStore;
+import com.endava.petstore.storage.Versioned;
+import java.io.InputStream;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,14 +21,18 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import static com.endava.petstore.constants.Constants.IMAGE_UPLOADED;
+import static com.endava.petstore.constants.Constants.PET_NOT_FOUND;
 import static com.endava.petstore.constants.Constants.PET_UPDATED;
 import static com.endava.petstore.mock.PetMock.getMockedPet1;
 import static com.endava.petstore.mock.PetMock.getMockedPet2;
 import static com.endava.petstore.mock.PetMock.getMockedPets;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
@@ -34,6 +42,10 @@ class PetServiceIntegrationTest {
     private PetServiceImpl petService;
     @MockBean
     private PetRepository petRepository;
+    @MockBean
+    private ImageStore imageStore;
+    @MockBean
+    private ThumbnailPipeline thumbnailPipeline;
     @Captor
     private ArgumentCaptor<Pet> petCaptor;
 
@@ -57,7 +69,7 @@ class PetServiceIntegrationTest {
 
     @Test
     void getPetById_shouldReturnPetWithGivenId() {
-        given(petRepository.getPetById(1L)).willReturn(pet1);
+        given(petRepository.getVersionedPetById(1L)).willReturn(new Versioned<>(pet1, 1L));
         Pet result = petService.getPetById(1L);
         assertThat(result).isEqualTo(pet1);
     }
@@ -109,12 +121,26 @@ class PetServiceIntegrationTest {
     }
 
     @Test
-    void uploadPetImage_shouldAppendToPhotoUrlsOfCurrentPet() {
+    void uploadPetImage_shouldStoreFileAndAddImageIdToPet() throws Exception {
         MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
         String additionalMetadata = "test_image";
-        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, file.getOriginalFilename(), file.getSize()));
-        given(petRepository.uploadPetImage(1L, additionalMetadata, file)).willReturn(httpResponse);
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(imageStore.save(any(InputStream.class), eq(IMAGE_JPEG_VALUE))).willReturn(imageId);
+        HttpResponse httpResponse = new HttpResponse(HttpStatus.OK.value(), "unknown", String.format(IMAGE_UPLOADED, additionalMetadata, imageId, file.getSize()));
         HttpResponse result = petService.uploadPetImage(1L, additionalMetadata, file);
+        verify(petRepository).addPetImage(1L, imageId);
+        verify(thumbnailPipeline).submit(imageId);
         assertThat(result).isEqualTo(httpResponse);
     }
+
+    @Test
+    void uploadPetImage_whenPetIsDeletedMeanwhile_shouldLeaveStoredFileToSweep() throws Exception {
+        MultipartFile file = new MockMultipartFile("https:///www.test_image.jpg", "test_image.jpg", IMAGE_JPEG_VALUE, "content".getBytes());
+        String imageId = "0123456789abcdef0123456789abcdef.jpg";
+        given(imageStore.save(any(InputStream.class), eq(IMAGE_JPEG_VALUE))).willReturn(imageId);
+        given(petRepository.addPetImage(1L, imageId)).willThrow(new ResourceNotFoundException(String.format(PET_NOT_FOUND, 1L)));
+        assertThatThrownBy(() -> petService.uploadPetImage(1L, "test_image", file)).isInstanceOf(ResourceNotFoundException.class);
+        verify(imageStore).save(any(InputStream.class), eq(IMAGE_JPEG_VALUE));
+        verifyNoMoreInteractions(imageStore, thumbnailPipeline);
+    }
 }
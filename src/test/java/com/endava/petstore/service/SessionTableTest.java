@@ -0,0 +1,127 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.InvalidCredentialsException;
+import com.endava.petstore.model.User;
+import com.endava.petstore.storage.EntityStore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.endava.petstore.constants.Constants.INVALID_CREDENTIALS;
+import static com.endava.petstore.mock.UserMock.getMockedUser1;
+import static com.endava.petstore.mock.UserMock.getMockedUser2;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionTableTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private EntityStore<User> userStore;
+    private SessionTable sessionTable;
+    private User user1;
+    private User user2;
+
+    @BeforeEach
+    void setUp() {
+        user1 = getMockedUser1();
+        user2 = getMockedUser2();
+        userStore = new EntityStore<>();
+        userStore.put(user1.getId(), user1);
+        userStore.put(user2.getId(), user2);
+        sessionTable = new SessionTable(userStore);
+        ReflectionTestUtils.setField(sessionTable, "idleTimeoutSeconds", 60L);
+        ReflectionTestUtils.setField(sessionTable, "tickMillis", 1000L);
+        ReflectionTestUtils.setField(sessionTable, "nanoTime", (LongSupplier) now::get);
+        sessionTable.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessionTable.stop();
+    }
+
+    @Test
+    void open_shouldIssueDistinctTokensOfTheUser() {
+        String first = sessionTable.open(user1);
+        String second = sessionTable.open(user1);
+
+        assertThat(first).isNotEqualTo(second).hasSize(43);
+        assertThat(sessionTable.validate(first)).contains(user1.getId());
+        assertThat(sessionTable.validate(second)).contains(user1.getId());
+        assertThat(sessionTable.validate("unknown")).isEmpty();
+        assertThat(sessionTable.validate(null)).isEmpty();
+    }
+
+    @Test
+    void validate_shouldSlideExpiryUntilSessionIsIdleTooLong() {
+        String token = sessionTable.open(user1);
+
+        advance(50);
+        assertThat(sessionTable.validate(token)).isPresent();
+        advance(50);
+        assertThat(sessionTable.validate(token)).isPresent();
+        advance(60);
+        assertThat(sessionTable.validate(token)).isEmpty();
+        assertThat(sessionTable.size()).isZero();
+    }
+
+    @Test
+    void revoke_shouldEndSession() {
+        String token = sessionTable.open(user1);
+
+        assertThat(sessionTable.revoke(token)).isTrue();
+        assertThat(sessionTable.revoke(token)).isFalse();
+        assertThat(sessionTable.validate(token)).isEmpty();
+    }
+
+    @Test
+    void reap_shouldRemoveOnlyExpiredSessions() {
+        String idle = sessionTable.open(user1);
+        String active = sessionTable.open(user2);
+        advance(50);
+        sessionTable.validate(active);
+
+        advance(20);
+        sessionTable.reap();
+
+        assertThat(sessionTable.size()).isEqualTo(1);
+        assertThat(sessionTable.validate(active)).contains(user2.getId());
+        assertThat(sessionTable.revoke(idle)).isFalse();
+        advance(70);
+        sessionTable.reap();
+        assertThat(sessionTable.size()).isZero();
+    }
+
+    @Test
+    void passwordChangeOrDeletion_shouldRevokeSessionsOfTheUser() {
+        String token1 = sessionTable.open(user1);
+        String token2 = sessionTable.open(user2);
+
+        userStore.update(user1.getId(), user -> user.toBuilder().phone("+40700 000 009").build());
+        assertThat(sessionTable.validate(token1)).isPresent();
+        userStore.update(user1.getId(), user -> user.toBuilder().password("#Changed_password1").build());
+        assertThat(sessionTable.validate(token1)).isEmpty();
+        userStore.remove(user2.getId());
+        assertThat(sessionTable.validate(token2)).isEmpty();
+    }
+
+    @Test
+    void open_afterUserChangedSinceAuthentication_shouldNotKeepSession() {
+        userStore.update(user1.getId(), user -> user.toBuilder().password("#Changed_password1").build());
+
+        assertThatThrownBy(() -> sessionTable.open(user1))
+              .isInstanceOf(InvalidCredentialsException.class)
+              .hasMessage(INVALID_CREDENTIALS);
+        userStore.remove(user2.getId());
+        assertThatThrownBy(() -> sessionTable.open(user2)).isInstanceOf(InvalidCredentialsException.class);
+        assertThat(sessionTable.size()).isZero();
+    }
+
+    private void advance(long seconds) {
+        now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+}
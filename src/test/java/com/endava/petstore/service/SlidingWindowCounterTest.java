@@ -0,0 +1,41 @@
+package com.endava.petstore.service;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterTest {
+
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(4, 40, 0);
+
+    @Test
+    void sum_shouldDropEventsOneSliceAtATimeOnceTheyLeaveTheWindow() {
+        counter.increment(5);
+        counter.increment(15);
+        counter.increment(19);
+        counter.increment(35);
+
+        assertThat(counter.sum(39)).isEqualTo(4);
+        assertThat(counter.sum(40)).isEqualTo(3);
+        assertThat(counter.sum(50)).isEqualTo(1);
+        assertThat(counter.sum(69)).isEqualTo(1);
+        assertThat(counter.sum(70)).isZero();
+    }
+
+    @Test
+    void increment_inReusedBucket_shouldStartItOver() {
+        counter.increment(5);
+        counter.increment(6);
+        counter.increment(45);
+
+        assertThat(counter.sum(45)).isEqualTo(1);
+    }
+
+    @Test
+    void increment_fromManyThreads_shouldCountEveryEvent() {
+        IntStream.range(0, 100_000).parallel().forEach(i -> counter.increment(i % 10));
+
+        assertThat(counter.sum(9)).isEqualTo(100_000);
+    }
+}
@@ -1,10 +1,14 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.model.InventorySummary;
 import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.repository.StoreRepository;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,6 +24,7 @@ import static com.endava.petstore.mock.StoreMock.getMockedOrder2;
 import static com.endava.petstore.mock.StoreMock.getMockedOrders;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 
@@ -30,6 +35,8 @@ class StoreServiceImplTest {
     private StoreServiceImpl storeService;
     @Mock
     private StoreRepository storeRepository;
+    @Mock
+    private EntityCache<Order> orderCache;
     @Captor
     private ArgumentCaptor<Order> orderCaptor;
 
@@ -55,7 +62,8 @@ class StoreServiceImplTest {
 
     @Test
     void getOrderById_shouldReturnOrderWithGivenId() {
-        given(storeRepository.getOrderById(1L)).willReturn(order1);
+        given(orderCache.get(eq("getOrderById"), eq(1L), any())).willAnswer(invocation -> invocation.<Supplier<Versioned<Order>>>getArgument(2).get());
+        given(storeRepository.getVersionedOrderById(1L)).willReturn(new Versioned<>(order1, 1L));
         Order result = storeService.getOrderById(1L);
         assertThat(result).isEqualTo(order1);
     }
@@ -88,4 +96,12 @@ class StoreServiceImplTest {
         List<Pet> result = storeService.getPetsByOrderStatus(orderStatus);
         assertThat(result).isEqualTo(List.of(pet1));
     }
+
+    @Test
+    void getInventorySummary_shouldReturnCountersPerStatus() {
+        InventorySummary summary = new InventorySummary(Map.of("available", 1L), Map.of("placed", 1L));
+        given(storeRepository.getInventorySummary()).willReturn(summary);
+        InventorySummary result = storeService.getInventorySummary();
+        assertThat(result).isEqualTo(summary);
+    }
 }
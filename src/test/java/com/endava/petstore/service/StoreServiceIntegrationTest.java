@@ -4,6 +4,7 @@ import com.endava.petstore.model.Order;
 import com.endava.petstore.model.OrderStatus;
 import com.endava.petstore.model.Pet;
 import com.endava.petstore.repository.StoreRepository;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -54,7 +55,7 @@ class StoreServiceIntegrationTest {
 
     @Test
     void getPetById_shouldReturnPetWithGivenId() {
-        given(storeRepository.getOrderById(1L)).willReturn(order1);
+        given(storeRepository.getVersionedOrderById(1L)).willReturn(new Versioned<>(order1, 1L));
         Order result = storeService.getOrderById(1L);
         assertThat(result).isEqualTo(order1);
     }
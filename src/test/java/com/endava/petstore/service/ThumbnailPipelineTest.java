@@ -0,0 +1,135 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.ImageStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
+
+class ThumbnailPipelineTest {
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ImageStore imageStore;
+    private ThumbnailPipeline thumbnailPipeline;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        imageStore = new ImageStore(new EntityStore<>());
+        ReflectionTestUtils.setField(imageStore, "directory", directory.toString());
+        ReflectionTestUtils.setField(imageStore, "sweepIntervalSeconds", 0L);
+        imageStore.open();
+        thumbnailPipeline = new ThumbnailPipeline(imageStore, meterRegistry);
+        ReflectionTestUtils.setField(thumbnailPipeline, "sizes", new int[]{256, 64, 128});
+        ReflectionTestUtils.setField(thumbnailPipeline, "workers", 1);
+        ReflectionTestUtils.setField(thumbnailPipeline, "queueCapacity", 1);
+        thumbnailPipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailPipeline.stop();
+        imageStore.close();
+    }
+
+    @Test
+    void submit_shouldStoreEveryThumbnailSizeKeepingAspectRatio() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream(png(1600, 1200)), IMAGE_PNG_VALUE);
+
+        assertThat(thumbnailPipeline.submit(imageId)).isTrue();
+
+        awaitThumbnail(imageId, 256);
+        assertThat(dimensions(imageId, 256)).containsExactly(256, 192);
+        assertThat(dimensions(imageId, 128)).containsExactly(128, 96);
+        assertThat(dimensions(imageId, 64)).containsExactly(64, 48);
+    }
+
+    @Test
+    void submit_withUndecodableImage_shouldCountFailure() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("not an image".getBytes()), IMAGE_JPEG_VALUE);
+
+        thumbnailPipeline.submit(imageId);
+
+        awaitCount("petstore.thumbnails.failed", 1);
+        assertThat(imageStore.findThumbnail(imageId, 64)).isEmpty();
+    }
+
+    @Test
+    void submit_whenQueueIsFull_shouldRejectWithoutBlocking() throws Exception {
+        String queued = imageStore.save(new ByteArrayInputStream(png(40, 30)), IMAGE_PNG_VALUE);
+        String shed = imageStore.save(new ByteArrayInputStream(png(30, 40)), IMAGE_PNG_VALUE);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(thumbnailPipeline, "executor");
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertThat(thumbnailPipeline.submit(queued)).isTrue();
+        assertThat(thumbnailPipeline.submit(shed)).isFalse();
+        assertThat(meterRegistry.get("petstore.thumbnails.queue.depth").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.counter("petstore.thumbnails.rejected").count()).isEqualTo(1);
+
+        release.countDown();
+        awaitThumbnail(queued, 64);
+        assertThat(dimensions(queued, 64)).containsExactly(40, 30);
+        assertThat(thumbnailPipeline.submit(shed)).isTrue();
+        awaitThumbnail(shed, 64);
+    }
+
+    private void awaitThumbnail(String imageId, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(imageStore.findThumbnail(imageId, size).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(imageStore.findThumbnail(imageId, size)).isPresent();
+    }
+
+    private void awaitCount(String counter, double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(meterRegistry.counter(counter).count() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(meterRegistry.counter(counter).count()).isEqualTo(count);
+    }
+
+    private int[] dimensions(String imageId, int size) throws IOException {
+        BufferedImage thumbnail = ImageIO.read(imageStore.findThumbnail(imageId, size).orElseThrow().toFile());
+        return new int[]{thumbnail.getWidth(), thumbnail.getHeight()};
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+}
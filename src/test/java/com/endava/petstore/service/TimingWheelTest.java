@@ -0,0 +1,50 @@
+package com.endava.petstore.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(8, 10, 0);
+    private final List<String> visited = new ArrayList<>();
+
+    @Test
+    void advance_shouldVisitKeysOnlyOnceTheirTickHasCome() {
+        wheel.schedule("early", 15);
+        wheel.schedule("late", 45);
+
+        wheel.advance(9, visited::add);
+        assertThat(visited).isEmpty();
+        wheel.advance(19, visited::add);
+        assertThat(visited).containsExactly("early");
+        wheel.advance(49, visited::add);
+        assertThat(visited).containsExactly("early", "late");
+        wheel.advance(200, visited::add);
+        assertThat(visited).hasSize(2);
+    }
+
+    @Test
+    void schedule_withPassedDeadline_shouldVisitKeyOnNextTick() {
+        wheel.advance(35, visited::add);
+        wheel.schedule("overdue", 5);
+
+        wheel.advance(45, visited::add);
+        assertThat(visited).containsExactly("overdue");
+    }
+
+    @Test
+    void schedule_beyondOneRevolution_shouldVisitKeyEarlyToBeRescheduled() {
+        wheel.schedule("distant", 500);
+
+        wheel.advance(79, key -> {
+            visited.add(key);
+            wheel.schedule(key, 500);
+        });
+        assertThat(visited).containsExactly("distant");
+        wheel.advance(149, visited::add);
+        assertThat(visited).containsExactly("distant", "distant");
+    }
+}
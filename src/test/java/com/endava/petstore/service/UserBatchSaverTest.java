@@ -0,0 +1,131 @@
+package com.endava.petstore.service;
+
+import com.endava.petstore.exception.ServiceUnavailableException;
+import com.endava.petstore.model.BatchError;
+import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
+import com.endava.petstore.repository.UserRepositoryImpl;
+import com.endava.petstore.storage.EntityStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.endava.petstore.constants.Constants.DUPLICATE_BATCH_USER_ID;
+import static com.endava.petstore.constants.Constants.INVALID_BATCH_USER;
+import static com.endava.petstore.constants.Constants.PASSWORD_HASHING_BUSY;
+import static com.endava.petstore.constants.Constants.USERNAME_ALREADY_EXISTS;
+import static com.endava.petstore.mock.UserMock.getMockedUser1;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.spy;
+
+@Slf4j
+class UserBatchSaverTest {
+
+    private UserRepositoryImpl userRepository;
+    private PasswordHasher passwordHasher;
+    private UserBatchSaver userBatchSaver;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = new UserRepositoryImpl(new EntityStore<>());
+        userRepository.initializeUsers();
+        passwordHasher = new PasswordHasher(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(passwordHasher, "iterations", 10);
+        ReflectionTestUtils.setField(passwordHasher, "queueCapacity", 1000);
+        passwordHasher.start();
+        userBatchSaver = new UserBatchSaver(Validation.buildDefaultValidatorFactory().getValidator(), userRepository, passwordHasher);
+        ReflectionTestUtils.setField(userBatchSaver, "chunkSize", 2);
+        ReflectionTestUtils.setField(userBatchSaver, "parallelism", 4);
+        userBatchSaver.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userBatchSaver.stop();
+        passwordHasher.stop();
+    }
+
+    @Test
+    void saveUsers_shouldStoreValidElementsAndReportTheOthers() {
+        User valid = user(100L, "batch_user100");
+        User invalid = user(101L, "batch_user101").toBuilder().password("weak").build();
+        User duplicateId = user(100L, "batch_other");
+        User duplicateUsername = user(102L, "batch_user100");
+        User takenUsername = user(103L, "test_username1");
+        User last = user(104L, "batch_user104");
+
+        UserBatchReport report = userBatchSaver.saveUsers(Arrays.asList(valid, invalid, null, duplicateId, duplicateUsername, takenUsername, last));
+
+        assertThat(report.getReceived()).isEqualTo(7);
+        assertThat(report.getCreated()).usingElementComparatorIgnoringFields("password").containsExactly(valid, last);
+        assertThat(report.getRejected()).isEqualTo(5);
+        assertThat(report.getErrors()).extracting(BatchError::getIndex).containsExactly(1, 2, 3, 4, 5);
+        assertThat(report.getErrors().get(0).getMessage()).startsWith("password: ");
+        assertThat(report.getErrors().subList(1, 5)).extracting(BatchError::getMessage).containsExactly(
+              INVALID_BATCH_USER,
+              String.format(DUPLICATE_BATCH_USER_ID, 100L),
+              String.format(USERNAME_ALREADY_EXISTS, "batch_user100"),
+              String.format(USERNAME_ALREADY_EXISTS, "test_username1"));
+        User stored = userRepository.getUserById(100L);
+        assertThat(stored).usingRecursiveComparison().ignoringFields("password").isEqualTo(valid);
+        assertThat(passwordHasher.verify(stored.getUsername(), valid.getPassword(), stored.getPassword())).isTrue();
+        assertThat(userRepository.getUserByUsername("test_username1").getId()).isEqualTo(1L);
+        assertThat(userRepository.getAllUsers()).hasSize(5);
+    }
+
+    @Test
+    void saveUsers_whenAHashIsTurnedAway_shouldReportOnlyThatElement() {
+        PasswordHasher busyHasher = spy(passwordHasher);
+        willThrow(new ServiceUnavailableException(PASSWORD_HASHING_BUSY)).given(busyHasher).hash("#Busy_password1");
+        UserBatchSaver saver = new UserBatchSaver(Validation.buildDefaultValidatorFactory().getValidator(), userRepository, busyHasher);
+        ReflectionTestUtils.setField(saver, "chunkSize", 2);
+        ReflectionTestUtils.setField(saver, "parallelism", 2);
+        saver.start();
+        try {
+            User busy = user(110L, "batch_user110").toBuilder().password("#Busy_password1").build();
+            User valid = user(111L, "batch_user111");
+
+            UserBatchReport report = saver.saveUsers(List.of(busy, valid));
+
+            assertThat(report.getCreated()).extracting(User::getId).containsExactly(111L);
+            assertThat(report.getErrors()).extracting(BatchError::getIndex, BatchError::getMessage).containsExactly(tuple(0, PASSWORD_HASHING_BUSY));
+            assertThat(userRepository.getAllUsers()).extracting(User::getId).contains(111L).doesNotContain(110L);
+        } finally {
+            saver.stop();
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void saveUsers_throughput() {
+        ReflectionTestUtils.setField(userBatchSaver, "chunkSize", 500);
+        int count = Integer.getInteger("petstore.benchmark.users", 50_000);
+        List<User> users = new ArrayList<>(count);
+        for(long id = 1_000; id < 1_000 + count; id++) {
+            users.add(user(id, "bulk_" + id));
+        }
+
+        long begin = System.nanoTime();
+        UserBatchReport report = userBatchSaver.saveUsers(users);
+        long elapsed = System.nanoTime() - begin;
+
+        log.info("UserBatchSaver: {} users in {} ms, {} users/s", count, TimeUnit.NANOSECONDS.toMillis(elapsed), String.format("%.0f", count * 1e9 / elapsed));
+        assertThat(report.getCreated()).hasSize(count);
+        assertThat(report.getRejected()).isZero();
+    }
+
+    private static User user(Long id, String username) {
+        return getMockedUser1().toBuilder().id(id).username(username).build();
+    }
+}
@@ -1,8 +1,16 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.InvalidCredentialsException;
+import com.endava.petstore.exception.ResourceNotFoundException;
+import com.endava.petstore.exception.TooManyRequestsException;
+import com.endava.petstore.exception.UnauthorizedException;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.repository.UserRepository;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,13 +20,21 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import static com.endava.petstore.constants.Constants.INVALID_CREDENTIALS;
+import static com.endava.petstore.constants.Constants.INVALID_SESSION;
+import static com.endava.petstore.constants.Constants.TOO_MANY_FAILED_LOGINS;
+import static com.endava.petstore.constants.Constants.USERNAME_NOT_FOUND;
 import static com.endava.petstore.mock.UserMock.getMockedUser1;
 import static com.endava.petstore.mock.UserMock.getMockedUser2;
 import static com.endava.petstore.mock.UserMock.getMockedUsers;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 @ExtendWith(MockitoExtension.class)
 class UserServiceImplTest {
@@ -27,6 +43,16 @@ class UserServiceImplTest {
     private UserServiceImpl userService;
     @Mock
     private UserRepository userRepository;
+    @Mock
+    private UserBatchSaver userBatchSaver;
+    @Mock
+    private EntityCache<User> userCache;
+    @Mock
+    private SessionTable sessionTable;
+    @Mock
+    private PasswordHasher passwordHasher;
+    @Mock
+    private LoginThrottle loginThrottle;
     @Captor
     private ArgumentCaptor<User> userCaptor;
 
@@ -50,24 +76,32 @@ class UserServiceImplTest {
 
     @Test
     void getUserById_shouldReturnUserWithGivenId() {
-        given(userRepository.getUserById(1L)).willReturn(user1);
+        given(userCache.get(eq("getUserById"), eq(1L), any())).willAnswer(invocation -> invocation.<Supplier<Versioned<User>>>getArgument(2).get());
+        given(userRepository.getVersionedUserById(1L)).willReturn(new Versioned<>(user1, 1L));
         User result = userService.getUserById(1L);
         assertThat(result).isEqualTo(user1);
     }
 
     @Test
     void saveUser_shouldAddUserToList() {
+        given(passwordHasher.hash(user1.getPassword())).willReturn("hashed");
         given(userRepository.saveUser(any(User.class))).willReturn(user1);
         User result = userService.saveUser(user1);
         verify(userRepository).saveUser(userCaptor.capture());
-        assertThat(result).isEqualTo(userCaptor.getValue());
+        assertThat(result).isEqualTo(user1);
+        assertThat(userCaptor.getValue()).isEqualTo(user1.toBuilder().password("hashed").build());
     }
 
     @Test
     void updateUser_shouldModifyCurrentUser() {
+        User stored = user1.toBuilder().password("stored").build();
+        given(userRepository.getUserById(user1.getId())).willReturn(stored);
+        given(passwordHasher.hashIfChanged(user1.getUsername(), user1.getPassword(), "stored")).willReturn("hashed");
         given(userRepository.updateUser(any(User.class))).willReturn(user2);
         User result = userService.updateUser(user1);
+        verify(userRepository).updateUser(userCaptor.capture());
         assertThat(result).isEqualTo(user2);
+        assertThat(userCaptor.getValue().getPassword()).isEqualTo("hashed");
     }
 
     @Test
@@ -79,17 +113,19 @@ class UserServiceImplTest {
     @Test
     void saveUsersArray_shouldAddMultipleUsersToList() {
         User[] users = new User[]{user1, user2};
-        given(userRepository.saveUsersArray(users)).willReturn(List.of(user1, user2));
-        List<User> result = userService.saveUsersArray(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userBatchSaver.saveUsers(List.of(user1, user2))).willReturn(report);
+        UserBatchReport result = userService.saveUsersArray(users);
+        assertThat(result).isEqualTo(report);
     }
 
     @Test
     void saveUsersList_shouldAddMultipleUsersToList() {
         List<User> users = List.of(user1, user2);
-        given(userRepository.saveUsersList(users)).willReturn(List.of(user1, user2));
-        List<User> result = userService.saveUsersList(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        UserBatchReport report = UserBatchReport.builder().received(2).created(List.of(user1, user2)).errors(List.of()).build();
+        given(userBatchSaver.saveUsers(users)).willReturn(report);
+        UserBatchReport result = userService.saveUsersList(users);
+        assertThat(result).isEqualTo(report);
     }
 
     @Test
@@ -105,7 +141,9 @@ class UserServiceImplTest {
         String username = "test_username1";
         User resultUser = user2;
         resultUser.setId(1L);
-        given(userRepository.updateUserByUsername(user2, username)).willReturn(resultUser);
+        given(userRepository.getUserByUsername(username)).willReturn(user1);
+        given(passwordHasher.hashIfChanged(username, user2.getPassword(), user1.getPassword())).willReturn("hashed");
+        given(userRepository.updateUserByUsername(user2.toBuilder().password("hashed").build(), username)).willReturn(resultUser);
         User result = userService.updateUserByUsername(user2, username);
         assertThat(result).isEqualTo(resultUser);
     }
@@ -117,18 +155,69 @@ class UserServiceImplTest {
     }
 
     @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() {
-        String username = "test_username1", password = "#Test_password1", message = "Logged in successfully";
-        given(userRepository.login(username, password)).willReturn(message);
-        String result = userService.login(username, password);
-        assertThat(result).isEqualTo(message);
+    void login_shouldOpenSessionForAuthenticatedUser() {
+        String username = "test_username1", password = "#Test_password1";
+        given(userRepository.getUserByUsername(username)).willReturn(user1);
+        given(passwordHasher.verify(username, password, user1.getPassword())).willReturn(true);
+        given(sessionTable.open(user1)).willReturn("token");
+        String result = userService.login(username, password, "192.0.2.1");
+        assertThat(result).isEqualTo("token");
+        verify(loginThrottle).recordSuccess(username);
+    }
+
+    @Test
+    void login_withWrongPassword_shouldThrowExceptionAndCountFailure() {
+        String username = "test_username1", password = "#Test_password2";
+        given(userRepository.getUserByUsername(username)).willReturn(user1);
+        assertThatThrownBy(() -> userService.login(username, password, "192.0.2.1"))
+              .isInstanceOf(InvalidCredentialsException.class)
+              .hasMessage(INVALID_CREDENTIALS)
+              .satisfies(exception -> assertThat(exception.getStackTrace()).isEmpty());
+        verify(loginThrottle).recordFailure(username, "192.0.2.1");
+        verifyNoInteractions(sessionTable);
+    }
+
+    @Test
+    void login_withUnknownUsername_shouldThrowExceptionAndCountFailure() {
+        String username = "unknown_username";
+        given(userRepository.getUserByUsername(username)).willThrow(new ResourceNotFoundException(String.format(USERNAME_NOT_FOUND, username)));
+        given(passwordHasher.dummyHash()).willReturn("pbkdf2-sha512$1000$dummy$dummy");
+        assertThatThrownBy(() -> userService.login(username, "#Test_password1", "192.0.2.1"))
+              .isInstanceOf(InvalidCredentialsException.class)
+              .hasMessage(INVALID_CREDENTIALS);
+        verify(passwordHasher).verify(username, "#Test_password1", "pbkdf2-sha512$1000$dummy$dummy");
+        verify(loginThrottle).recordFailure(username, "192.0.2.1");
     }
 
     @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() {
-        String message = "Logged out successfully";
-        given(userRepository.logout()).willReturn(message);
-        String result = userService.logout();
-        assertThat(result).isEqualTo(message);
+    void login_whenBlocked_shouldThrowExceptionBeforeLookingUpTheUser() {
+        String username = "test_username1";
+        willThrow(new TooManyRequestsException(TOO_MANY_FAILED_LOGINS)).given(loginThrottle).checkAllowed(username, "192.0.2.1");
+        assertThatThrownBy(() -> userService.login(username, "#Test_password1", "192.0.2.1"))
+              .isInstanceOf(TooManyRequestsException.class)
+              .hasMessage(TOO_MANY_FAILED_LOGINS);
+        verifyNoInteractions(userRepository, passwordHasher, sessionTable);
+    }
+
+    @Test
+    void logout_shouldRevokeSession() {
+        given(sessionTable.revoke("token")).willReturn(true);
+        userService.logout("token");
+        verify(sessionTable).revoke("token");
+    }
+
+    @Test
+    void logout_withUnknownToken_shouldThrowException() {
+        assertThatThrownBy(() -> userService.logout("token"))
+              .isInstanceOf(UnauthorizedException.class)
+              .hasMessage(INVALID_SESSION);
+    }
+
+    @Test
+    void getSessionUser_shouldReturnUserOfValidSession() {
+        given(sessionTable.validate("token")).willReturn(Optional.of(1L));
+        given(userCache.get(eq("getUserById"), eq(1L), any())).willReturn(new Versioned<>(user1, 1L));
+        User result = userService.getSessionUser("token");
+        assertThat(result).isEqualTo(user1);
     }
 }
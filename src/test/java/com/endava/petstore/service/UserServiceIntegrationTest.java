@@ -1,8 +1,15 @@
 package com.endava.petstore.service;
 
+import com.endava.petstore.exception.InvalidResourceException;
+import com.endava.petstore.exception.UnauthorizedException;
+import com.endava.petstore.model.BatchError;
 import com.endava.petstore.model.User;
+import com.endava.petstore.model.UserBatchReport;
 import com.endava.petstore.repository.UserRepository;
+import com.endava.petstore.storage.EntityStore;
+import com.endava.petstore.storage.Versioned;
 import java.util.List;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -15,7 +22,10 @@ import static com.endava.petstore.mock.UserMock.getMockedUser1;
 import static com.endava.petstore.mock.UserMock.getMockedUser2;
 import static com.endava.petstore.mock.UserMock.getMockedUsers;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 
@@ -24,6 +34,10 @@ class UserServiceIntegrationTest {
 
     @Autowired
     private UserServiceImpl userService;
+    @Autowired
+    private PasswordHasher passwordHasher;
+    @Autowired
+    private EntityStore<User> userStore;
     @MockBean
     private UserRepository userRepository;
     @Captor
@@ -49,7 +63,7 @@ class UserServiceIntegrationTest {
 
     @Test
     void getUserById_shouldReturnUserWithGivenId() {
-        given(userRepository.getUserById(1L)).willReturn(user1);
+        given(userRepository.getVersionedUserById(1L)).willReturn(new Versioned<>(user1, 1L));
         User result = userService.getUserById(1L);
         assertThat(result).isEqualTo(user1);
     }
@@ -59,11 +73,14 @@ class UserServiceIntegrationTest {
         given(userRepository.saveUser(any(User.class))).willReturn(user1);
         User result = userService.saveUser(user1);
         verify(userRepository).saveUser(userCaptor.capture());
-        assertThat(result).isEqualTo(userCaptor.getValue());
+        assertThat(result).isEqualTo(user1);
+        assertThat(userCaptor.getValue().getPassword()).startsWith("pbkdf2-sha512$");
+        assertThat(passwordHasher.verify(user1.getUsername(), user1.getPassword(), userCaptor.getValue().getPassword())).isTrue();
     }
 
     @Test
     void updateUser_shouldModifyCurrentUser() {
+        given(userRepository.getUserById(user1.getId())).willReturn(user1);
         given(userRepository.updateUser(any(User.class))).willReturn(user2);
         User result = userService.updateUser(user1);
         assertThat(result).isEqualTo(user2);
@@ -78,17 +95,20 @@ class UserServiceIntegrationTest {
     @Test
     void saveUsersArray_shouldAddMultipleUsersToList() {
         User[] users = new User[]{user1, user2};
-        given(userRepository.saveUsersArray(users)).willReturn(List.of(user1, user2));
-        List<User> result = userService.saveUsersArray(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        given(userRepository.saveUsers(anyList())).willReturn(Set.of());
+        UserBatchReport result = userService.saveUsersArray(users);
+        assertThat(result.getCreated()).usingElementComparatorIgnoringFields("password").containsExactly(user1, user2);
+        assertThat(result.getCreated()).extracting(User::getPassword).allMatch(password -> password.startsWith("pbkdf2-sha512$"));
+        assertThat(result.getErrors()).isEmpty();
     }
 
     @Test
-    void saveUsersList_shouldAddMultipleUsersToList() {
+    void saveUsersList_withTakenUsername_shouldReportThatElement() {
         List<User> users = List.of(user1, user2);
-        given(userRepository.saveUsersList(users)).willReturn(List.of(user1, user2));
-        List<User> result = userService.saveUsersList(users);
-        assertThat(result).isEqualTo(List.of(user1, user2));
+        given(userRepository.saveUsers(anyList())).willReturn(Set.of(user2.getId()));
+        UserBatchReport result = userService.saveUsersList(users);
+        assertThat(result.getCreated()).usingElementComparatorIgnoringFields("password").containsExactly(user1);
+        assertThat(result.getErrors()).extracting(BatchError::getIndex).containsExactly(1);
     }
 
     @Test
@@ -104,30 +124,42 @@ class UserServiceIntegrationTest {
         String username = "test_username1";
         User resultUser = user2;
         resultUser.setId(1L);
-        given(userRepository.updateUserByUsername(user2, username)).willReturn(resultUser);
+        given(userRepository.getUserByUsername(username)).willReturn(user1);
+        given(userRepository.updateUserByUsername(any(User.class), eq(username))).willReturn(resultUser);
         User result = userService.updateUserByUsername(user2, username);
         assertThat(result).isEqualTo(resultUser);
     }
 
     @Test
-    void deleteUserByUsername_shouldRemoveUserFromList() {
-        userService.deleteUserByUsername(user1.getUsername());
-        verify(userRepository).deleteUserByUsername(user1.getUsername());
+    void updateUserByUsername_withUnchangedPassword_shouldKeepTheStoredHash() {
+        String username = "test_username1";
+        User stored = user1.toBuilder().password(passwordHasher.hash(user1.getPassword())).build();
+        given(userRepository.getUserByUsername(username)).willReturn(stored);
+        userService.updateUserByUsername(user1.toBuilder().firstName("Changed").build(), username);
+        verify(userRepository).updateUserByUsername(userCaptor.capture(), eq(username));
+        assertThat(userCaptor.getValue().getPassword()).isEqualTo(stored.getPassword());
     }
 
     @Test
-    void login_shouldAuthenticateTheUserIntoTheSystem() {
-        String username = "test_username1", password = "#Test_password1", message = "Logged in successfully";
-        given(userRepository.login(username, password)).willReturn(message);
-        String result = userService.login(username, password);
-        assertThat(result).isEqualTo(message);
+    void deleteUserByUsername_shouldRemoveUserFromList() {
+        userService.deleteUserByUsername(user1.getUsername());
+        verify(userRepository).deleteUserByUsername(user1.getUsername());
     }
 
     @Test
-    void logout_shouldTerminateCurrentLoggedInUserSession() {
-        String message = "Logged out successfully";
-        given(userRepository.logout()).willReturn(message);
-        String result = userService.logout();
-        assertThat(result).isEqualTo(message);
+    void login_shouldOpenSessionUntilLogout() {
+        String username = "test_username1", password = "#Test_password1";
+        // an id no other test reads, as the session lookup leaves the user in the user cache shared by this context
+        User stored = user1.toBuilder().id(3L).password(passwordHasher.hash(password)).build();
+        // the repository is mocked, but opening a session checks the user against the store
+        userStore.put(stored.getId(), stored);
+        given(userRepository.getUserByUsername(username)).willReturn(stored);
+        given(userRepository.getVersionedUserById(stored.getId())).willReturn(new Versioned<>(stored, 1L));
+        assertThatThrownBy(() -> userService.login(username, "#Test_password2", "192.0.2.1")).isInstanceOf(InvalidResourceException.class);
+        String token = userService.login(username, password, "192.0.2.1");
+        assertThat(userService.getSessionUser(token)).isEqualTo(stored);
+        userService.logout(token);
+        assertThatThrownBy(() -> userService.getSessionUser(token)).isInstanceOf(UnauthorizedException.class);
+        assertThatThrownBy(() -> userService.logout(token)).isInstanceOf(UnauthorizedException.class);
     }
 }
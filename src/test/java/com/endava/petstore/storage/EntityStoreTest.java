@@ -0,0 +1,166 @@
+package com.endava.petstore.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class EntityStoreTest {
+
+    private static final int KEYS = 256;
+    private static final int INCREMENTS_PER_THREAD = 20_000;
+
+    private EntityStore<Long> store;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+    }
+
+    static IntStream threadCounts() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return IntStream.iterate(1, threads -> threads <= Math.max(cores, 2), threads -> threads * 2);
+    }
+
+    static IntStream storeSizes() {
+        return IntStream.of(1_000, 10_000, 100_000, 1_000_000);
+    }
+
+    @Test
+    void put_shouldMakeValueVisibleToGet() {
+        store.put(1L, 10L);
+        assertThat(store.get(1L)).contains(10L);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void update_withMissingId_shouldReturnEmpty() {
+        assertThat(store.update(1L, value -> value + 1)).isEmpty();
+        assertThat(store.isEmpty()).isTrue();
+    }
+
+    @Test
+    void remove_shouldReturnRemovedValue() {
+        store.put(1L, 10L);
+        assertThat(store.remove(1L)).contains(10L);
+        assertThat(store.get(1L)).isEmpty();
+    }
+
+    @Test
+    void getVersioned_shouldChangeWithEveryWriteToTheId() {
+        store.put(1L, 10L);
+        long inserted = store.getVersioned(1L).orElseThrow().version();
+        store.put(2L, 20L);
+        assertThat(store.getVersioned(1L)).contains(new Versioned<>(10L, inserted));
+        store.update(1L, value -> value);
+        assertThat(store.getVersioned(1L).orElseThrow().version()).isGreaterThan(inserted);
+        store.remove(1L);
+        assertThat(store.getVersioned(1L)).isEmpty();
+    }
+
+    @Test
+    void version_shouldGrowWithEveryWrite() {
+        long initial = store.version();
+        store.put(1L, 10L);
+        long afterPut = store.version();
+        store.putAll(Map.of(2L, 20L, 3L, 30L));
+        long afterPutAll = store.version();
+        store.remove(1L);
+        assertThat(initial).isLessThan(afterPut);
+        assertThat(afterPut).isLessThan(afterPutAll);
+        assertThat(afterPutAll).isLessThan(store.version());
+    }
+
+    @Test
+    void snapshot_withoutWrites_shouldReuseCachedView() {
+        store.put(2L, 20L);
+        store.put(1L, 10L);
+        List<Long> first = store.snapshot();
+        assertThat(first).containsExactly(10L, 20L);
+        assertThat(store.snapshot()).isSameAs(first);
+        store.put(3L, 30L);
+        assertThat(store.snapshot()).containsExactly(10L, 20L, 30L);
+        assertThat(first).containsExactly(10L, 20L);
+    }
+
+    @Test
+    void snapshot_underConcurrentWriter_shouldReturnPointInTimeView() throws Exception {
+        LongStream.range(0, KEYS).forEach(id -> store.put(id, 0L));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> writer = executor.submit(() -> {
+            for(long round = 1; round <= 2_000; round++) {
+                for(long id = 0; id < KEYS; id++) {
+                    store.put(id, round);
+                }
+            }
+        });
+        while(!writer.isDone()) {
+            List<Long> snapshot = store.snapshot();
+            for(int i = 1; i < snapshot.size(); i++) {
+                assertThat(snapshot.get(i)).isBetween(snapshot.get(0) - 1, snapshot.get(i - 1));
+            }
+        }
+        writer.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+    }
+
+    @ParameterizedTest
+    @MethodSource("threadCounts")
+    void update_underConcurrentWriters_shouldNotLoseUpdates(int threads) throws Exception {
+        LongStream.range(0, KEYS).forEach(id -> store.put(id, 0L));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                    store.update((long) ((seed + i) % KEYS), value -> value + 1);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        long total = store.values().stream().mapToLong(Long::longValue).sum();
+        log.info("EntityStore: {} thread(s), {} updates/s", threads, String.format("%.0f", threads * INCREMENTS_PER_THREAD * 1e9 / elapsed));
+        assertThat(total).isEqualTo((long) threads * INCREMENTS_PER_THREAD);
+    }
+
+    @ParameterizedTest
+    @MethodSource("storeSizes")
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void get_latencyAtEachStoreSize(int size) {
+        LongStream.range(0, size).forEach(id -> store.put(id, id));
+        int lookups = 200_000;
+        long checksum = 0;
+        long begin = System.nanoTime();
+        for(int i = 0; i < lookups; i++) {
+            checksum += store.get((i * 7919L) % size).orElseThrow();
+        }
+        long elapsed = System.nanoTime() - begin;
+        log.info("EntityStore: {} entries, {} ns/lookup", size, String.format("%.1f", (double) elapsed / lookups));
+        assertThat(checksum).isPositive();
+    }
+}
@@ -0,0 +1,38 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.endava.petstore.mock.StoreMock.getMockedOrder1;
+import static com.endava.petstore.mock.StoreMock.getMockedOrder2;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnumCounterTest {
+
+    private EntityStore<Order> store;
+    private EnumCounter<Order, OrderStatus> orderStatusCounter;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+        orderStatusCounter = new EnumCounter<>(OrderStatus.class, Order::getOrderStatus);
+        store.addListener(orderStatusCounter);
+    }
+
+    @Test
+    void writes_shouldKeepCountersInStepWithStore() {
+        store.put(1L, getMockedOrder1());
+        store.put(2L, getMockedOrder2());
+        store.put(1L, getMockedOrder1());
+        assertThat(orderStatusCounter.count(OrderStatus.PLACED)).isEqualTo(1L);
+        assertThat(orderStatusCounter.count(OrderStatus.APPROVED)).isEqualTo(1L);
+        store.update(1L, order -> order.toBuilder().orderStatus(OrderStatus.DELIVERED).build());
+        store.remove(2L);
+        assertThat(orderStatusCounter.counts())
+              .containsEntry(OrderStatus.PLACED, 0L)
+              .containsEntry(OrderStatus.APPROVED, 0L)
+              .containsEntry(OrderStatus.DELIVERED, 1L);
+    }
+}
@@ -0,0 +1,47 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.endava.petstore.mock.PetMock.getMockedPet1;
+import static com.endava.petstore.mock.PetMock.getMockedPet2;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EnumIndexTest {
+
+    private EntityStore<Pet> store;
+    private EnumIndex<Pet, Status> statusIndex;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+        statusIndex = new EnumIndex<>(Status.class, Pet::getStatus);
+        store.addListener(statusIndex);
+    }
+
+    @Test
+    void put_shouldIndexPetUnderItsStatus() {
+        store.put(1L, getMockedPet1());
+        store.put(2L, getMockedPet2());
+        assertThat(statusIndex.getIds(Status.AVAILABLE)).containsExactly(1L);
+        assertThat(statusIndex.getIds(Status.PENDING)).containsExactly(2L);
+        assertThat(statusIndex.getIds(Status.SOLD)).isEmpty();
+    }
+
+    @Test
+    void update_shouldMovePetToNewStatus() {
+        store.put(1L, getMockedPet1());
+        store.update(1L, pet -> pet.toBuilder().status(Status.SOLD).build());
+        assertThat(statusIndex.getIds(Status.AVAILABLE)).isEmpty();
+        assertThat(statusIndex.getIds(Status.SOLD)).containsExactly(1L);
+    }
+
+    @Test
+    void remove_shouldDropPetFromIndex() {
+        store.put(1L, getMockedPet1());
+        store.remove(1L);
+        assertThat(statusIndex.getIds(Status.AVAILABLE)).isEmpty();
+    }
+}
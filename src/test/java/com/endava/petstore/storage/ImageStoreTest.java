@@ -0,0 +1,235 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Pet;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.endava.petstore.mock.PetMock.getMockedPet1;
+import static com.endava.petstore.mock.PetMock.getMockedPet2;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.http.MediaType.IMAGE_JPEG_VALUE;
+import static org.springframework.http.MediaType.IMAGE_PNG_VALUE;
+
+@Slf4j
+class ImageStoreTest {
+
+    private static final long LARGE_IMAGE_SIZE = 50L * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private EntityStore<Pet> petStore;
+    private ImageStore imageStore;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        petStore = new EntityStore<>();
+        imageStore = new ImageStore(petStore);
+        ReflectionTestUtils.setField(imageStore, "directory", directory.toString());
+        ReflectionTestUtils.setField(imageStore, "orphanGraceSeconds", 60L);
+        imageStore.open();
+    }
+
+    @Test
+    void save_shouldStoreContentUnderItsHash() throws Exception {
+        byte[] content = "content".getBytes();
+        String imageId = imageStore.save(new ByteArrayInputStream(content), IMAGE_PNG_VALUE);
+        assertThat(imageId).isEqualTo("ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73.png");
+        assertThat(Files.readAllBytes(imageStore.find(imageId).orElseThrow())).isEqualTo(content);
+    }
+
+    @Test
+    void save_withSameContent_shouldStoreItOnce() throws Exception {
+        byte[] content = "content".getBytes();
+        String imageId = imageStore.save(new ByteArrayInputStream(content), IMAGE_JPEG_VALUE);
+        assertThat(imageStore.save(new ByteArrayInputStream(content), IMAGE_JPEG_VALUE)).isEqualTo(imageId);
+        try(Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+        }
+    }
+
+    @Test
+    void save_whenUploadFails_shouldLeaveNoFileBehind() throws Exception {
+        InputStream failing = new InputStream() {
+            private int remaining = 100_000;
+
+            @Override
+            public int read() throws IOException {
+                if(remaining-- <= 0) {
+                    throw new IOException("connection reset");
+                }
+                return 1;
+            }
+        };
+        assertThatThrownBy(() -> imageStore.save(failing, IMAGE_JPEG_VALUE)).isInstanceOf(IOException.class);
+        try(Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(Files::isRegularFile)).isEmpty();
+        }
+    }
+
+    @Test
+    void find_withMalformedId_shouldReturnEmpty() {
+        assertThat(imageStore.find("../application.properties")).isEmpty();
+        assertThat(imageStore.find("0123456789abcdef0123456789abcdef.jpg")).isEmpty();
+        assertThat(imageStore.find("ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73.jpg")).isEmpty();
+    }
+
+    @Test
+    void referenceCount_shouldFollowImageIdsOfStoredPets() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("content".getBytes()), IMAGE_JPEG_VALUE);
+        petStore.put(1L, getMockedPet1().toBuilder().imageIds(List.of(imageId)).build());
+        petStore.put(2L, getMockedPet2().toBuilder().imageIds(List.of(imageId)).build());
+        assertThat(imageStore.referenceCount(imageId)).isEqualTo(2);
+        petStore.put(2L, getMockedPet2());
+        assertThat(imageStore.referenceCount(imageId)).isEqualTo(1);
+        petStore.remove(1L);
+        assertThat(imageStore.referenceCount(imageId)).isZero();
+    }
+
+    @Test
+    void referenceCount_afterRemovingAPetThatWasNeverCounted_shouldNotGoNegative() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("content".getBytes()), IMAGE_JPEG_VALUE);
+        petStore = new EntityStore<>();
+        petStore.put(1L, getMockedPet1().toBuilder().imageIds(List.of(imageId)).build());
+        imageStore = new ImageStore(petStore);
+        ReflectionTestUtils.setField(imageStore, "directory", directory.toString());
+        imageStore.open();
+
+        petStore.remove(1L);
+        assertThat(imageStore.referenceCount(imageId)).isZero();
+        petStore.put(2L, getMockedPet2().toBuilder().imageIds(List.of(imageId)).build());
+        assertThat(imageStore.referenceCount(imageId)).isEqualTo(1);
+    }
+
+    @Test
+    void sweep_shouldDeleteOnlyOldUnreferencedImages() throws Exception {
+        String referenced = imageStore.save(new ByteArrayInputStream("referenced".getBytes()), IMAGE_JPEG_VALUE);
+        String orphaned = imageStore.save(new ByteArrayInputStream("orphaned".getBytes()), IMAGE_JPEG_VALUE);
+        String recent = imageStore.save(new ByteArrayInputStream("recent".getBytes()), IMAGE_JPEG_VALUE);
+        petStore.put(1L, getMockedPet1().toBuilder().imageIds(List.of(referenced)).build());
+        FileTime old = FileTime.from(Instant.now().minusSeconds(120));
+        Files.setLastModifiedTime(imageStore.find(referenced).orElseThrow(), old);
+        Files.setLastModifiedTime(imageStore.find(orphaned).orElseThrow(), old);
+
+        assertThat(imageStore.sweep()).isEqualTo(1);
+        assertThat(imageStore.find(referenced)).isPresent();
+        assertThat(imageStore.find(orphaned)).isEmpty();
+        assertThat(imageStore.find(recent)).isPresent();
+    }
+
+    @Test
+    void sweep_afterPetIsRemoved_shouldReclaimItsImages() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("content".getBytes()), IMAGE_JPEG_VALUE);
+        petStore.put(1L, getMockedPet1().toBuilder().imageIds(List.of(imageId)).build());
+        Files.setLastModifiedTime(imageStore.find(imageId).orElseThrow(), FileTime.from(Instant.now().minusSeconds(120)));
+        assertThat(imageStore.sweep()).isZero();
+        petStore.remove(1L);
+        assertThat(imageStore.sweep()).isEqualTo(1);
+        assertThat(imageStore.find(imageId)).isEmpty();
+    }
+
+    @Test
+    void saveThumbnail_shouldStorePngFoundBySize() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("content".getBytes()), IMAGE_JPEG_VALUE);
+        imageStore.saveThumbnail(imageId, 64, new BufferedImage(64, 48, BufferedImage.TYPE_INT_ARGB));
+        BufferedImage thumbnail = ImageIO.read(imageStore.findThumbnail(imageId, 64).orElseThrow().toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(64);
+        assertThat(thumbnail.getHeight()).isEqualTo(48);
+        assertThat(imageStore.findThumbnail(imageId, 128)).isEmpty();
+    }
+
+    @Test
+    void sweep_shouldDeleteThumbnailsWithTheirImage() throws Exception {
+        String imageId = imageStore.save(new ByteArrayInputStream("content".getBytes()), IMAGE_JPEG_VALUE);
+        imageStore.saveThumbnail(imageId, 64, new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB));
+        Files.setLastModifiedTime(imageStore.find(imageId).orElseThrow(), FileTime.from(Instant.now().minusSeconds(120)));
+        assertThat(imageStore.sweep()).isEqualTo(1);
+        assertThat(imageStore.findThumbnail(imageId, 64)).isEmpty();
+    }
+
+    @Test
+    void save_ofOldUnreferencedContent_shouldProtectItFromSweep() throws Exception {
+        byte[] content = "content".getBytes();
+        String imageId = imageStore.save(new ByteArrayInputStream(content), IMAGE_JPEG_VALUE);
+        Files.setLastModifiedTime(imageStore.find(imageId).orElseThrow(), FileTime.from(Instant.now().minusSeconds(120)));
+        imageStore.save(new ByteArrayInputStream(content), IMAGE_JPEG_VALUE);
+        assertThat(imageStore.sweep()).isZero();
+        assertThat(imageStore.find(imageId)).isPresent();
+    }
+
+    @Test
+    void open_shouldDeleteIncompleteUploads() throws Exception {
+        Path leftover = Files.write(directory.resolve("0123456789abcdef0123456789abcdef.tmp"), new byte[]{1, 2, 3});
+        imageStore.open();
+        assertThat(leftover).doesNotExist();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void save_withConcurrentLargeUploads_shouldStreamThemToDisk() throws Exception {
+        int uploads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        List<Future<String>> imageIds = new ArrayList<>();
+        long begin = System.nanoTime();
+        for(int i = 0; i < uploads; i++) {
+            imageIds.add(executor.submit(() -> imageStore.save(new GeneratedInputStream(LARGE_IMAGE_SIZE), IMAGE_JPEG_VALUE)));
+        }
+        for(Future<String> imageId : imageIds) {
+            assertThat(Files.size(imageStore.find(imageId.get(1, TimeUnit.MINUTES)).orElseThrow())).isEqualTo(LARGE_IMAGE_SIZE);
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        log.info("ImageStore: {} concurrent uploads of {} MB in {} ms", uploads, LARGE_IMAGE_SIZE >> 20, TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * Produces the given number of bytes without holding them, like a request body arriving over the network.
+     */
+    private static final class GeneratedInputStream extends InputStream {
+
+        private long remaining;
+
+        GeneratedInputStream(long size) {
+            remaining = size;
+        }
+
+        @Override
+        public int read() {
+            return remaining-- > 0 ? 'x' : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if(remaining <= 0) {
+                return -1;
+            }
+            int count = (int) Math.min(length, remaining);
+            for(int i = 0; i < count; i++) {
+                buffer[offset + i] = 'x';
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+}
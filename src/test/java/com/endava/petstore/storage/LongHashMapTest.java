@@ -0,0 +1,138 @@
+package com.endava.petstore.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Slf4j
+class LongHashMapTest {
+
+    private LongHashMap<String> map;
+
+    @BeforeEach
+    void setUp() {
+        map = new LongHashMap<>(4);
+    }
+
+    static IntStream mapSizes() {
+        return IntStream.of(100_000, 1_000_000, 10_000_000);
+    }
+
+    @Test
+    void put_shouldReturnPreviousValue() {
+        assertThat(map.put(1L, "a")).isNull();
+        assertThat(map.put(1L, "b")).isEqualTo("a");
+        assertThat(map.get(1L)).isEqualTo("b");
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void remove_shouldLeaveOtherKeysReachable() {
+        for(long key = -50; key < 1_000; key++) {
+            map.put(key, Long.toString(key));
+        }
+        for(long key = -50; key < 1_000; key += 2) {
+            assertThat(map.remove(key)).isEqualTo(Long.toString(key));
+        }
+        assertThat(map.remove(-50L)).isNull();
+        assertThat(map.size()).isEqualTo(525);
+        assertThat(map.get(-49L)).isEqualTo("-49");
+        assertThat(map.get(999L)).isEqualTo("999");
+        assertThat(map.get(998L)).isNull();
+    }
+
+    @Test
+    void keys_shouldReturnLiveKeysInAscendingOrder() {
+        map.put(3L, "c");
+        map.put(1L, "a");
+        map.put(2L, "b");
+        map.remove(2L);
+        assertThat(map.keys()).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void get_duringConcurrentWrites_shouldNeverSeeAnotherKeysValue() throws Exception {
+        int keys = 100_000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<?> writer = executor.submit(() -> {
+            for(int round = 0; round < 5; round++) {
+                for(long key = 0; key < keys; key++) {
+                    map.put(key, Long.toString(key));
+                }
+                for(long key = 0; key < keys; key += 3) {
+                    map.remove(key);
+                }
+            }
+            writing.set(false);
+        });
+        Future<Long> reader = executor.submit(() -> {
+            long mismatches = 0;
+            while(writing.get()) {
+                for(long key = 0; key < keys; key += 7) {
+                    String value = map.get(key);
+                    if(value != null && !value.equals(Long.toString(key))) {
+                        mismatches++;
+                    }
+                }
+            }
+            return mismatches;
+        });
+        writer.get(1, TimeUnit.MINUTES);
+        assertThat(reader.get(1, TimeUnit.MINUTES)).isZero();
+        executor.shutdown();
+    }
+
+    /**
+     * Reports the heap taken per entry by a HashMap and by a LongHashMap. Heap use is only as exact as the collections before
+     * each reading, so the numbers are logged rather than compared.
+     */
+    @ParameterizedTest
+    @MethodSource("mapSizes")
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void footprint_comparedWithHashMap(int size) {
+        assumeTrue(Runtime.getRuntime().maxMemory() > size * 160L, "not enough heap for " + size + " entries");
+        Object value = new Object();
+        long baseline = usedHeap();
+        Map<Long, Object> hashMap = new HashMap<>();
+        for(long key = 0; key < size; key++) {
+            hashMap.put(key, value);
+        }
+        long hashMapBytes = usedHeap() - baseline;
+        assertThat(hashMap).hasSize(size);
+        hashMap = null;
+
+        baseline = usedHeap();
+        LongHashMap<Object> longHashMap = new LongHashMap<>(EntityStore.DEFAULT_STRIPES);
+        for(long key = 0; key < size; key++) {
+            longHashMap.put(key, value);
+        }
+        long longHashMapBytes = usedHeap() - baseline;
+        assertThat(longHashMap.size()).isEqualTo(size);
+
+        log.info("LongHashMap: {} entries, HashMap {} bytes/entry, LongHashMap {} bytes/entry",
+              size, String.format("%.1f", (double) hashMapBytes / size), String.format("%.1f", (double) longHashMapBytes / size));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
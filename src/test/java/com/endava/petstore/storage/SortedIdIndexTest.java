@@ -0,0 +1,41 @@
+package com.endava.petstore.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedIdIndexTest {
+
+    private EntityStore<String> store;
+    private SortedIdIndex<String> index;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+        index = new SortedIdIndex<>();
+        store.addListener(index);
+    }
+
+    @Test
+    void page_shouldWalkIdsInAscendingOrder() {
+        store.put(30L, "c");
+        store.put(10L, "a");
+        store.put(20L, "b");
+        store.put(40L, "d");
+        assertThat(index.page(store, null, 2)).containsExactly("a", "b");
+        assertThat(index.page(store, 20L, 2)).containsExactly("c", "d");
+        assertThat(index.page(store, 25L, 2)).containsExactly("c", "d");
+        assertThat(index.page(store, 40L, 2)).isEmpty();
+    }
+
+    @Test
+    void page_shouldSkipRemovedIdsAndKeepUpdatedOnes() {
+        store.put(1L, "a");
+        store.put(2L, "b");
+        store.put(3L, "c");
+        store.remove(2L);
+        store.put(3L, "C");
+        assertThat(index.page(store, null, 2)).containsExactly("a", "C");
+    }
+}
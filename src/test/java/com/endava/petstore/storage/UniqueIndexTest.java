@@ -0,0 +1,65 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.endava.petstore.mock.UserMock.getMockedUser1;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UniqueIndexTest {
+
+    private EntityStore<User> store;
+    private UniqueIndex<User, String> usernameIndex;
+
+    @BeforeEach
+    void setUp() {
+        store = new EntityStore<>();
+        usernameIndex = new UniqueIndex<>(User::getUsername);
+        store.addListener(usernameIndex);
+    }
+
+    @Test
+    void reserve_withKeyOwnedByAnotherId_shouldFail() {
+        store.put(1L, getMockedUser1());
+        assertThat(usernameIndex.reserve("test_username1", 1L)).isTrue();
+        assertThat(usernameIndex.reserve("test_username1", 2L)).isFalse();
+    }
+
+    @Test
+    void update_withNewKey_shouldReleaseOldKey() {
+        store.put(1L, getMockedUser1());
+        store.update(1L, user -> user.toBuilder().username("renamed_user").build());
+        assertThat(usernameIndex.getId("test_username1")).isEmpty();
+        assertThat(usernameIndex.getId("renamed_user")).contains(1L);
+    }
+
+    @Test
+    void reserve_underConcurrentWriters_shouldGrantKeyToExactlyOneId() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for(long id = 1; id <= threads; id++) {
+            Long userId = id;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return usernameIndex.reserve("shared_username", userId);
+            }));
+        }
+        start.countDown();
+        int granted = 0;
+        for(Future<Boolean> future : futures) {
+            granted += future.get(1, TimeUnit.MINUTES) ? 1 : 0;
+        }
+        executor.shutdown();
+        assertThat(granted).isEqualTo(1);
+    }
+}
@@ -0,0 +1,164 @@
+package com.endava.petstore.storage;
+
+import com.endava.petstore.model.Order;
+import com.endava.petstore.model.Pet;
+import com.endava.petstore.model.Status;
+import com.endava.petstore.model.User;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.endava.petstore.mock.PetMock.getMockedPet1;
+import static com.endava.petstore.mock.PetMock.getMockedPet2;
+import static com.endava.petstore.mock.StoreMock.getMockedOrder1;
+import static com.endava.petstore.mock.UserMock.getMockedUser1;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Slf4j
+class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final EntityStore<Pet> petStore = new EntityStore<>();
+    private final EntityStore<Order> orderStore = new EntityStore<>();
+    private final EntityStore<User> userStore = new EntityStore<>();
+
+    @Test
+    void open_shouldReplayLoggedWritesIntoEmptyStores() throws Exception {
+        WriteAheadLog writeAheadLog = openLog(petStore, orderStore, userStore);
+        petStore.put(1L, getMockedPet1());
+        petStore.put(2L, getMockedPet2());
+        petStore.update(1L, pet -> pet.toBuilder().status(Status.SOLD).build());
+        petStore.remove(2L);
+        orderStore.put(1L, getMockedOrder1());
+        userStore.put(1L, getMockedUser1());
+        writeAheadLog.close();
+
+        EntityStore<Pet> recoveredPets = new EntityStore<>();
+        EntityStore<Order> recoveredOrders = new EntityStore<>();
+        EntityStore<User> recoveredUsers = new EntityStore<>();
+        openLog(recoveredPets, recoveredOrders, recoveredUsers).close();
+
+        assertThat(recoveredPets.values()).containsExactly(getMockedPet1().toBuilder().status(Status.SOLD).build());
+        assertThat(recoveredOrders.values()).containsExactly(getMockedOrder1());
+        assertThat(recoveredUsers.values()).containsExactly(getMockedUser1());
+    }
+
+    @Test
+    void open_withTornTail_shouldDiscardIncompleteRecord() throws Exception {
+        WriteAheadLog writeAheadLog = openLog(petStore, orderStore, userStore);
+        petStore.put(1L, getMockedPet1());
+        writeAheadLog.close();
+        appendGarbage();
+
+        EntityStore<Pet> recoveredPets = new EntityStore<>();
+        openLog(recoveredPets, new EntityStore<>(), new EntityStore<>()).close();
+
+        assertThat(recoveredPets.values()).containsExactly(getMockedPet1());
+    }
+
+    @Test
+    void open_withSnapshot_shouldLoadSnapshotAndReplayOnlyTheTail() throws Exception {
+        WriteAheadLog writeAheadLog = openLog(petStore, orderStore, userStore);
+        petStore.put(1L, getMockedPet1());
+        petStore.put(2L, getMockedPet2());
+        orderStore.put(1L, getMockedOrder1());
+        writeAheadLog.snapshot();
+        petStore.remove(2L);
+        userStore.put(1L, getMockedUser1());
+        writeAheadLog.close();
+
+        try(var files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString()))
+                  .containsExactlyInAnyOrder("snapshot-0000000002.bin", "wal-0000000002.log");
+        }
+        EntityStore<Pet> recoveredPets = new EntityStore<>();
+        EntityStore<Order> recoveredOrders = new EntityStore<>();
+        EntityStore<User> recoveredUsers = new EntityStore<>();
+        recoveredPets.put(3L, getMockedPet2());
+        openLog(recoveredPets, recoveredOrders, recoveredUsers).close();
+
+        assertThat(recoveredPets.values()).containsExactly(getMockedPet1());
+        assertThat(recoveredOrders.values()).containsExactly(getMockedOrder1());
+        assertThat(recoveredUsers.values()).containsExactly(getMockedUser1());
+    }
+
+    @Test
+    void open_withFilesOfAnotherFormatVersion_shouldRefuseToRecover() throws Exception {
+        WriteAheadLog writeAheadLog = openLog(petStore, orderStore, userStore);
+        petStore.put(1L, getMockedPet1());
+        writeAheadLog.snapshot();
+        petStore.put(2L, getMockedPet2());
+        writeAheadLog.close();
+
+        Path logFile = directory.resolve("wal-0000000002.log");
+        byte[] log = Files.readAllBytes(logFile);
+        log[Integer.BYTES] = WriteAheadLog.FORMAT_VERSION + 1;
+        Files.write(logFile, log);
+        assertThatThrownBy(() -> openLog(new EntityStore<>(), new EntityStore<>(), new EntityStore<>()))
+              .isInstanceOf(IOException.class)
+              .hasMessageContaining("wal-0000000002.log has format version " + (WriteAheadLog.FORMAT_VERSION + 1));
+
+        Path snapshotFile = directory.resolve("snapshot-0000000002.bin");
+        byte[] snapshot = Files.readAllBytes(snapshotFile);
+        snapshot[Integer.BYTES] = WriteAheadLog.FORMAT_VERSION + 1;
+        Files.write(snapshotFile, snapshot);
+        assertThatThrownBy(() -> openLog(new EntityStore<>(), new EntityStore<>(), new EntityStore<>()))
+              .isInstanceOf(IOException.class)
+              .hasMessageContaining("snapshot-0000000002.bin has format version " + (WriteAheadLog.FORMAT_VERSION + 1));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "petstore.benchmark", matches = "true")
+    void open_startupTime_coldReplayVersusSnapshotPlusTail() throws Exception {
+        int entities = Integer.getInteger("petstore.benchmark.entities", 100_000);
+        WriteAheadLog writeAheadLog = openLog(petStore, orderStore, userStore);
+        LongStream.range(0, entities).parallel().forEach(id -> petStore.put(id, getMockedPet1().toBuilder().id(id).build()));
+        writeAheadLog.close();
+
+        EntityStore<Pet> replayedPets = new EntityStore<>();
+        long begin = System.nanoTime();
+        writeAheadLog = openLog(replayedPets, new EntityStore<>(), new EntityStore<>());
+        long coldReplay = System.nanoTime() - begin;
+        assertThat(replayedPets.size()).isEqualTo(entities);
+        writeAheadLog.snapshot();
+        LongStream.range(0, entities / 100).parallel().forEach(id -> replayedPets.remove(id));
+        writeAheadLog.close();
+
+        EntityStore<Pet> restoredPets = new EntityStore<>();
+        begin = System.nanoTime();
+        openLog(restoredPets, new EntityStore<>(), new EntityStore<>()).close();
+        long snapshotPlusTail = System.nanoTime() - begin;
+
+        log.info("WriteAheadLog: {} entities, cold replay {} ms, snapshot plus tail {} ms",
+              entities, TimeUnit.NANOSECONDS.toMillis(coldReplay), TimeUnit.NANOSECONDS.toMillis(snapshotPlusTail));
+        assertThat(restoredPets.size()).isEqualTo(entities - entities / 100);
+    }
+
+    private WriteAheadLog openLog(EntityStore<Pet> pets, EntityStore<Order> orders, EntityStore<User> users) throws IOException {
+        WriteAheadLog writeAheadLog = new WriteAheadLog(pets, orders, users);
+        ReflectionTestUtils.setField(writeAheadLog, "directory", directory.toString());
+        ReflectionTestUtils.setField(writeAheadLog, "fsync", true);
+        ReflectionTestUtils.setField(writeAheadLog, "batchSize", 16);
+        ReflectionTestUtils.setField(writeAheadLog, "queueCapacity", 1024);
+        writeAheadLog.open();
+        return writeAheadLog;
+    }
+
+    private void appendGarbage() throws IOException {
+        try(var files = Files.list(directory)) {
+            Path logFile = files.findFirst().orElseThrow();
+            Files.write(logFile, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        }
+    }
+}